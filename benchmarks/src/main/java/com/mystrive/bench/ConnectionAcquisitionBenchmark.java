@@ -0,0 +1,63 @@
+package com.mystrive.bench;
+
+import com.mystrive.util.DBConnection;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip of {@link DBConnection#getConnection()} and {@link DBConnection#closeConnection(Connection)}
+ * against the pool, with {@link FakeDriver} connections so only the pool's own work is measured.
+ * The contended variant runs more threads than the default pool size of 10.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+    "-DDB_URL=" + FakeDriver.URL, "-DDB_DRIVER=com.mystrive.bench.FakeDriver",
+    "-Djava.util.logging.config.file=/dev/null"})
+public class ConnectionAcquisitionBenchmark {
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DBConnection.getPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DBConnection.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Connection borrowAndReturn() {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Connection borrowAndReturnContended() {
+        return roundTrip();
+    }
+
+    private static Connection roundTrip() {
+        Connection connection = DBConnection.getConnection();
+        DBConnection.closeConnection(connection);
+        return connection;
+    }
+}
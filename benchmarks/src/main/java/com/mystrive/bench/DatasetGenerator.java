@@ -0,0 +1,382 @@
+package com.mystrive.bench;
+
+import com.mystrive.model.Category;
+import com.mystrive.model.Goal;
+import com.mystrive.model.Milestone;
+import com.mystrive.model.User;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.PasswordHasher;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fills users, categories, goals and milestones with synthetic data at production scale.
+ * Rows are built as model objects a thousand users at a time and written with multi-row
+ * INSERT statements, one transaction per chunk. Ids are assigned explicitly, continuing
+ * after the current maximum, so the generator can append to an existing database.
+ * Works against MySQL/MariaDB and H2. The schema must be migrated to the current version
+ * (start the application against it once): each goal is written with its milestone counters
+ * (milestone_total, milestone_done) filled in, as the application keeps them.
+ *
+ * <p>Options (as -name=value):
+ * <ul>
+ * <li>url / user / password: target database (default: the application's DB_URL, DB_USER, DB_PASS)</li>
+ * <li>users: number of users to create (default 100000)</li>
+ * <li>maxGoals / zipf: goals per user follow a Zipf distribution over 0..maxGoals with exponent zipf (200 / 1.2)</li>
+ * <li>maxCategories: categories per user, uniform over 0..maxCategories (8)</li>
+ * <li>minMilestones / maxMilestones: milestones per goal, uniform (0 / 50)</li>
+ * <li>batchRows: rows per INSERT statement (1000)</li>
+ * <li>seed: random seed, for reproducible datasets (42)</li>
+ * </ul>
+ * Every generated user can log in as user_&lt;id&gt; with password {@link #PASSWORD}. The password
+ * is stored as a PBKDF2 hash, as the application stores it; all users share one hash (and so
+ * one salt), because hashing each user's password separately would take longer than the rest
+ * of the generation.
+ */
+public final class DatasetGenerator {
+
+    public static final String PASSWORD = "password123";
+
+    private static final String[] GOAL_STATUSES = {"Not Started", "In Progress", "Completed"};
+    // Share of goals per status, matching GOAL_STATUSES.
+    private static final double[] GOAL_STATUS_WEIGHTS = {0.40, 0.35, 0.25};
+    private static final String[] CATEGORY_NAMES = {
+        "Study", "Fitness", "Swimming", "Hiking", "Career", "Finance", "Reading", "Music",
+        "Cooking", "Travel", "Family", "Health", "Languages", "Side Project", "Pet Care", "Garden"
+    };
+    private static final String[] WORDS = {
+        "finish", "complete", "practice", "learn", "read", "write", "run", "save", "plan", "build",
+        "the", "a", "new", "weekly", "final", "project", "chapter", "course", "marathon", "budget",
+        "guitar", "recipe", "trip", "report", "exam", "portfolio", "garden", "language", "routine", "habit"
+    };
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    // Users generated, written and committed together; parents are written before children.
+    private static final int USERS_PER_CHUNK = 1000;
+
+    private final int users;
+    private final int maxGoals;
+    private final double zipfExponent;
+    private final int maxCategories;
+    private final int minMilestones;
+    private final int maxMilestones;
+    private final int batchRows;
+    private final Random random;
+    private final double[] goalCountCdf;
+    private final long now = System.currentTimeMillis();
+
+    private long goalCount;
+    private long milestoneCount;
+    private long categoryCount;
+
+    public DatasetGenerator(Map<String, String> options) {
+        this.users = LoadHarness.intOption(options, "users", 100000);
+        this.maxGoals = LoadHarness.intOption(options, "maxGoals", 200);
+        this.zipfExponent = Double.parseDouble(options.getOrDefault("zipf", "1.2"));
+        this.maxCategories = LoadHarness.intOption(options, "maxCategories", 8);
+        this.minMilestones = LoadHarness.intOption(options, "minMilestones", 0);
+        this.maxMilestones = LoadHarness.intOption(options, "maxMilestones", 50);
+        this.batchRows = LoadHarness.intOption(options, "batchRows", 1000);
+        this.random = new Random(Long.parseLong(options.getOrDefault("seed", "42")));
+        this.goalCountCdf = zipfCdf(maxGoals + 1, zipfExponent);
+    }
+
+    public static void main(String[] args) throws SQLException {
+        Map<String, String> options = LoadHarness.parseOptions(args);
+        String url = options.getOrDefault("url", DBConnection.config("DB_URL", null));
+        if (url == null) {
+            throw new IllegalArgumentException("Give the target database with -url=... or DB_URL.");
+        }
+        try (Connection connection = DriverManager.getConnection(url,
+                options.getOrDefault("user", DBConnection.config("DB_USER", null)),
+                options.getOrDefault("password", DBConnection.config("DB_PASS", null)))) {
+            new DatasetGenerator(options).generate(connection);
+        }
+    }
+
+    /**
+     * Generates the dataset into the given database.
+     *
+     * @param connection A direct connection; its auto-commit mode is restored afterwards.
+     * @return The ids of the generated users (first and last, inclusive).
+     * @throws SQLException If an insert fails.
+     */
+    public int[] generate(Connection connection) throws SQLException {
+        long started = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            String passwordHash = PasswordHasher.get().hash(PASSWORD);
+            int firstUserId = nextId(connection, "users", "user_id");
+            int nextCategoryId = nextId(connection, "categories", "category_id");
+            int nextGoalId = nextId(connection, "goals", "goal_id");
+            int nextMilestoneId = nextId(connection, "milestones", "milestone_id");
+
+            try (RowWriter userWriter = new RowWriter(connection, "users",
+                    "user_id, username, password, email, created_at", 5);
+                    RowWriter categoryWriter = new RowWriter(connection, "categories",
+                            "category_id, user_id, category_name, created_at", 4);
+                    RowWriter goalWriter = new RowWriter(connection, "goals",
+                            "goal_id, user_id, category_id, goal_description, target_date, status, created_at, updated_at,"
+                            + " milestone_total, milestone_done", 10);
+                    RowWriter milestoneWriter = new RowWriter(connection, "milestones",
+                            "milestone_id, goal_id, milestone_description, due_date, status, created_at, updated_at", 7)) {
+
+                for (int userId = firstUserId; userId < firstUserId + users; userId++) {
+                    User user = new User(userId, "user_" + userId, passwordHash, "user_" + userId + "@example.com",
+                            new Timestamp(now - randomMillis(730)));
+                    userWriter.add(user.getUserId(), user.getUsername(), user.getPassword(), user.getEmail(), user.getCreatedAt());
+
+                    List<Category> categories = new ArrayList<>();
+                    int categoryTotal = random.nextInt(maxCategories + 1);
+                    for (int c = 0; c < categoryTotal; c++) {
+                        Category category = new Category();
+                        category.setCategoryId(nextCategoryId++);
+                        category.setUserId(userId);
+                        category.setCategoryName(CATEGORY_NAMES[(c + userId) % CATEGORY_NAMES.length]);
+                        category.setCreatedAt(user.getCreatedAt());
+                        categoryWriter.add(category.getCategoryId(), category.getUserId(), category.getCategoryName(), category.getCreatedAt());
+                        categories.add(category);
+                    }
+                    categoryCount += categoryTotal;
+
+                    int goalTotal = sampleGoalCount();
+                    for (int g = 0; g < goalTotal; g++) {
+                        Goal goal = newGoal(nextGoalId++, userId, categories, user.getCreatedAt());
+                        int milestoneTotal = minMilestones + random.nextInt(maxMilestones - minMilestones + 1);
+                        int milestoneDone = 0;
+                        for (int m = 0; m < milestoneTotal; m++) {
+                            Milestone milestone = newMilestone(nextMilestoneId++, goal);
+                            if ("Completed".equals(milestone.getStatus())) {
+                                milestoneDone++;
+                            }
+                            milestoneWriter.add(milestone.getMilestoneId(), milestone.getGoalId(), milestone.getMilestoneDescription(),
+                                    milestone.getDueDate(), milestone.getStatus(), milestone.getCreatedAt(), milestone.getUpdatedAt());
+                        }
+                        milestoneCount += milestoneTotal;
+                        // Goals are flushed before milestones, so the counters can be known only now.
+                        goalWriter.add(goal.getGoalId(), goal.getUserId(), goal.getCategoryId(), goal.getGoalDescription(),
+                                goal.getTargetDate(), goal.getStatus(), goal.getCreatedAt(), goal.getUpdatedAt(),
+                                milestoneTotal, milestoneDone);
+                    }
+                    goalCount += goalTotal;
+
+                    int done = userId - firstUserId + 1;
+                    if (done % USERS_PER_CHUNK == 0 || done == users) {
+                        userWriter.flush();
+                        categoryWriter.flush();
+                        goalWriter.flush();
+                        milestoneWriter.flush();
+                        connection.commit();
+                    }
+                    if (done % 10000 == 0) {
+                        System.out.printf("%d users, %d goals, %d milestones...%n", done, goalCount, milestoneCount);
+                    }
+                }
+            }
+            connection.commit();
+
+            // Explicit ids bypass AUTO_INCREMENT; move the counters past them for rows the app inserts later.
+            restartIdentity(connection, "users", "user_id", firstUserId + users);
+            restartIdentity(connection, "categories", "category_id", nextCategoryId);
+            restartIdentity(connection, "goals", "goal_id", nextGoalId);
+            restartIdentity(connection, "milestones", "milestone_id", nextMilestoneId);
+            connection.commit();
+
+            System.out.printf("Generated %d users, %d categories, %d goals and %d milestones in %.1f s.%n",
+                    users, categoryCount, goalCount, milestoneCount, (System.nanoTime() - started) / 1e9);
+            return new int[]{firstUserId, firstUserId + users - 1};
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Goal newGoal(int goalId, int userId, List<Category> categories, Timestamp userCreatedAt) {
+        Goal goal = new Goal();
+        goal.setGoalId(goalId);
+        goal.setUserId(userId);
+        // One goal in five has no category, as does every goal of a user without categories.
+        if (!categories.isEmpty() && random.nextInt(5) != 0) {
+            goal.setCategoryId(categories.get(random.nextInt(categories.size())).getCategoryId());
+        }
+        goal.setGoalDescription(sentence(3, 12));
+        long createdAt = userCreatedAt.getTime() + (long) (random.nextDouble() * (now - userCreatedAt.getTime()));
+        goal.setCreatedAt(new Timestamp(createdAt));
+        goal.setUpdatedAt(new Timestamp(createdAt + (long) (random.nextDouble() * (now - createdAt))));
+        goal.setStatus(weightedStatus());
+        // 10% undated; the rest from six months ago to a year ahead.
+        if (random.nextInt(10) != 0) {
+            goal.setTargetDate(Date.valueOf(LocalDate.now().plusDays(random.nextInt(545) - 180)));
+        }
+        return goal;
+    }
+
+    private Milestone newMilestone(int milestoneId, Goal goal) {
+        Milestone milestone = new Milestone();
+        milestone.setMilestoneId(milestoneId);
+        milestone.setGoalId(goal.getGoalId());
+        milestone.setMilestoneDescription(sentence(2, 8));
+        long start = goal.getCreatedAt().getTime();
+        long end = goal.getTargetDate() != null ? Math.max(goal.getTargetDate().getTime(), start) : start + 365 * DAY_MILLIS;
+        if (random.nextInt(20) != 0) {
+            milestone.setDueDate(new Date(start + (long) (random.nextDouble() * (end - start))));
+        }
+        // Milestones of completed goals are completed; otherwise the usual mix.
+        milestone.setStatus("Completed".equals(goal.getStatus()) ? "Completed" : weightedStatus());
+        milestone.setCreatedAt(goal.getCreatedAt());
+        milestone.setUpdatedAt(goal.getUpdatedAt());
+        return milestone;
+    }
+
+    private int sampleGoalCount() {
+        int index = Arrays.binarySearch(goalCountCdf, random.nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Cumulative probabilities of k = 0..size-1 with P(k) proportional to 1 / (k + 1)^exponent.
+    static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double total = 0;
+        for (int k = 0; k < size; k++) {
+            total += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = total;
+        }
+        for (int k = 0; k < size; k++) {
+            cdf[k] /= total;
+        }
+        cdf[size - 1] = 1.0;
+        return cdf;
+    }
+
+    private String weightedStatus() {
+        double r = random.nextDouble();
+        for (int i = 0; i < GOAL_STATUSES.length - 1; i++) {
+            r -= GOAL_STATUS_WEIGHTS[i];
+            if (r < 0) {
+                return GOAL_STATUSES[i];
+            }
+        }
+        return GOAL_STATUSES[GOAL_STATUSES.length - 1];
+    }
+
+    private String sentence(int minWords, int maxWords) {
+        int count = minWords + random.nextInt(maxWords - minWords + 1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setCharAt(0, Character.toUpperCase(text.charAt(0)));
+        return text.toString();
+    }
+
+    private long randomMillis(int days) {
+        return (long) (random.nextDouble() * days * DAY_MILLIS);
+    }
+
+    private static int nextId(Connection connection, String table, String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) + 1 FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static void restartIdentity(Connection connection, String table, String column, int next) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        String sql = product.contains("H2")
+                ? "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + next
+                : "ALTER TABLE " + table + " AUTO_INCREMENT = " + next;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Buffers rows of one table and writes them batchRows at a time with a single multi-row INSERT.
+     */
+    private final class RowWriter implements AutoCloseable {
+        private final Connection connection;
+        private final String table;
+        private final String columns;
+        private final int width;
+        private final List<Object[]> pending = new ArrayList<>();
+        private PreparedStatement fullBatch;
+
+        RowWriter(Connection connection, String table, String columns, int width) {
+            this.connection = connection;
+            this.table = table;
+            this.columns = columns;
+            this.width = width;
+        }
+
+        void add(Object... values) {
+            pending.add(values);
+        }
+
+        void flush() throws SQLException {
+            int offset = 0;
+            while (pending.size() - offset >= batchRows) {
+                if (fullBatch == null) {
+                    fullBatch = connection.prepareStatement(insertSql(batchRows));
+                }
+                write(fullBatch, offset, batchRows);
+                offset += batchRows;
+            }
+            int remaining = pending.size() - offset;
+            if (remaining > 0) {
+                try (PreparedStatement tail = connection.prepareStatement(insertSql(remaining))) {
+                    write(tail, offset, remaining);
+                }
+            }
+            pending.clear();
+        }
+
+        private void write(PreparedStatement statement, int offset, int count) throws SQLException {
+            int index = 1;
+            for (int r = offset; r < offset + count; r++) {
+                for (Object value : pending.get(r)) {
+                    statement.setObject(index++, value);
+                }
+            }
+            statement.executeUpdate();
+        }
+
+        private String insertSql(int rowCount) {
+            StringBuilder row = new StringBuilder("(");
+            for (int i = 0; i < width; i++) {
+                row.append(i == 0 ? "?" : ", ?");
+            }
+            row.append(')');
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(columns).append(") VALUES ");
+            for (int r = 0; r < rowCount; r++) {
+                sql.append(r == 0 ? "" : ", ").append(row);
+            }
+            return sql.toString();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (fullBatch != null) {
+                fullBatch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.mystrive.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory H2 database in MySQL mode, loaded from the phpMyAdmin dump mystrive_db.sql.
+ * H2 accepts the dump's CREATE TABLE and INSERT statements as they are; the session SETs,
+ * the multi-clause ALTER TABLE statements and the AUTO_INCREMENT counters are rewritten
+ * into forms H2 understands.
+ */
+public final class EmbeddedDatabase {
+
+    public static final String DRIVER = "org.h2.Driver";
+    public static final String USER = "sa";
+    public static final String PASSWORD = "";
+
+    private static final Pattern ALTER_TABLE = Pattern.compile("(?is)ALTER TABLE\\s+`?(\\w+)`?\\s+(.*)");
+    private static final Pattern ADD_KEY = Pattern.compile("(?is)ADD\\s+(UNIQUE\\s+)?KEY\\s+`?(\\w+)`?\\s*(\\(.*\\))");
+    private static final Pattern MODIFY = Pattern.compile("(?is)MODIFY\\s+`?(\\w+)`?\\s+.*");
+    private static final Pattern AUTO_INCREMENT = Pattern.compile("(?is)AUTO_INCREMENT\\s*=\\s*(\\d+)");
+
+    private final String url;
+    // Keeps the in-memory database alive for the lifetime of this object.
+    private final Connection keepAlive;
+
+    private EmbeddedDatabase(String url, Connection keepAlive) {
+        this.url = url;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Creates a fresh in-memory database and loads the dump into it.
+     *
+     * @param name The database name (distinct names give independent databases).
+     * @param dump Path of mystrive_db.sql.
+     * @return The loaded database.
+     * @throws SQLException If a statement of the dump fails.
+     * @throws IOException If the dump cannot be read.
+     */
+    public static EmbeddedDatabase create(String name, Path dump) throws SQLException, IOException {
+        String url = "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        Connection connection = DriverManager.getConnection(url, USER, PASSWORD);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : translate(new String(Files.readAllBytes(dump), StandardCharsets.UTF_8))) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Failed to load dump statement: " + sql, e);
+                }
+            }
+        }
+        return new EmbeddedDatabase(url, connection);
+    }
+
+    /**
+     * Points the application's DBConnection at this database. Must run before DBConnection is first used.
+     */
+    public void configureApplication() {
+        System.setProperty("DB_URL", url);
+        System.setProperty("DB_USER", USER);
+        System.setProperty("DB_PASS", PASSWORD);
+        System.setProperty("DB_DRIVER", DRIVER);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Opens a direct (unpooled) connection, e.g. for seeding data.
+     *
+     * @return A new connection.
+     * @throws SQLException If the connection fails.
+     */
+    public Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, USER, PASSWORD);
+    }
+
+    /**
+     * Drops the database.
+     */
+    public void close() {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            // Already gone.
+        }
+    }
+
+    /**
+     * Splits the dump into statements and rewrites the MySQL-only ones.
+     *
+     * @param dump The dump text.
+     * @return Statements H2 can execute, in order.
+     */
+    static List<String> translate(String dump) {
+        String text = dump.replaceAll("(?s)/\\*.*?\\*/", "");
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                current.setLength(0);
+                translateStatement(sql.substring(0, sql.length() - 1).trim(), statements);
+            }
+        }
+        return statements;
+    }
+
+    private static void translateStatement(String sql, List<String> out) {
+        String upper = sql.toUpperCase();
+        if (upper.startsWith("SET ") || upper.equals("START TRANSACTION") || upper.equals("COMMIT")) {
+            return;
+        }
+        Matcher alter = ALTER_TABLE.matcher(sql);
+        if (!alter.matches()) {
+            out.add(sql);
+            return;
+        }
+        String table = alter.group(1);
+        String column = null;
+        for (String clause : splitTopLevel(alter.group(2))) {
+            Matcher key = ADD_KEY.matcher(clause);
+            Matcher modify = MODIFY.matcher(clause);
+            Matcher counter = AUTO_INCREMENT.matcher(clause);
+            if (key.matches()) {
+                // H2 index names are schema-wide, the dump reuses names like user_id across tables.
+                String name = table + "_" + key.group(2);
+                if (key.group(1) != null) {
+                    out.add("ALTER TABLE `" + table + "` ADD CONSTRAINT `" + name + "` UNIQUE " + key.group(3));
+                } else {
+                    out.add("CREATE INDEX `" + name + "` ON `" + table + "` " + key.group(3));
+                }
+            } else if (modify.matches()) {
+                column = modify.group(1);
+                out.add("ALTER TABLE `" + table + "` " + clause);
+            } else if (counter.matches() && column != null) {
+                out.add("ALTER TABLE `" + table + "` ALTER COLUMN `" + column + "` RESTART WITH " + counter.group(1));
+            } else {
+                out.add("ALTER TABLE `" + table + "` " + clause);
+            }
+        }
+    }
+
+    // Splits on commas that are not inside parentheses.
+    private static List<String> splitTopLevel(String clauses) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < clauses.length(); i++) {
+            char c = clauses.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(clauses.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        parts.add(clauses.substring(start).trim());
+        return parts;
+    }
+}
@@ -0,0 +1,66 @@
+package com.mystrive.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * Runs the webapp (src/main/webapp with its web.xml, JSPs and listener) in an embedded Tomcat.
+ * The application classes are not copied into WEB-INF/classes; the webapp class loader
+ * finds them on the harness classpath.
+ */
+public final class EmbeddedServer {
+
+    private final Tomcat tomcat;
+    private final String baseUrl;
+
+    private EmbeddedServer(Tomcat tomcat, String baseUrl) {
+        this.tomcat = tomcat;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Starts Tomcat on a free local port.
+     *
+     * @param webappDir The webapp directory (src/main/webapp).
+     * @param contextPath The context path, e.g. "/MyStrive".
+     * @param maxThreads Size of the connector's request thread pool.
+     * @return The running server.
+     * @throws LifecycleException If Tomcat or the webapp fails to start.
+     * @throws IOException If the work directory cannot be created.
+     */
+    public static EmbeddedServer start(File webappDir, String contextPath, int maxThreads) throws LifecycleException, IOException {
+        if (!new File(webappDir, "WEB-INF/web.xml").isFile()) {
+            throw new IOException("Not a webapp directory: " + webappDir.getAbsolutePath());
+        }
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("mystrive-tomcat").toString());
+        tomcat.setPort(0);
+        tomcat.getConnector().setProperty("maxThreads", Integer.toString(maxThreads));
+        tomcat.getConnector().setProperty("address", "127.0.0.1");
+        StandardContext context = (StandardContext) tomcat.addWebapp(contextPath, webappDir.getAbsolutePath());
+        // These leak checks need --add-opens on Java 9+ and only matter for redeploys, which the harness never does.
+        context.setClearReferencesObjectStreamClassCaches(false);
+        context.setClearReferencesRmiTargets(false);
+        context.setClearReferencesThreadLocals(false);
+        tomcat.start();
+        if (!tomcat.getHost().findChild(contextPath).getState().isAvailable()) {
+            tomcat.stop();
+            throw new LifecycleException("The webapp failed to start; see the log above.");
+        }
+        String baseUrl = "http://127.0.0.1:" + tomcat.getConnector().getLocalPort() + contextPath;
+        return new EmbeddedServer(tomcat, baseUrl);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
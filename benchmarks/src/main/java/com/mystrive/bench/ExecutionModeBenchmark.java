@@ -0,0 +1,81 @@
+package com.mystrive.bench;
+
+import com.mystrive.dao.GoalDAO;
+import com.mystrive.model.GoalPage;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.DbExecutor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the two {@link DbExecutor} modes under the same concurrent load: 64 callers,
+ * standing in for request threads, each hand a dashboard page query to the executor and
+ * wait for it. The fake driver adds a 1 ms round trip per query, so the connection pool
+ * (10 connections) is the bottleneck, as it is in production.
+ * Throughput gives requests per second; sample time gives the latency percentiles.
+ * The virtual mode needs the benchmark to run on Java 21 or later; on an older JVM both
+ * parameters measure platform threads (the executor logs a warning).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+    "-DDB_URL=" + FakeDriver.URL, "-DDB_DRIVER=com.mystrive.bench.FakeDriver",
+    "-Djava.util.logging.config.file=/dev/null"})
+public class ExecutionModeBenchmark {
+
+    @Param({DbExecutor.MODE_PLATFORM, DbExecutor.MODE_VIRTUAL})
+    public String mode;
+
+    private DbExecutor executor;
+    private GoalDAO goalDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Each parameter value runs in its own fork, so the executor is created with this mode.
+        System.setProperty("DB_EXECUTION_MODE", mode);
+        FakeDriver.queryDelayMicros = 1000;
+        DBConnection.getPool();
+        executor = DbExecutor.get();
+        if (!mode.equals(executor.getMode())) {
+            System.err.println("Requested " + mode + " mode but running " + executor.getMode()
+                    + " (java.version " + System.getProperty("java.version") + ").");
+        }
+        goalDAO = new GoalDAO();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DbExecutor.shutdown();
+        DBConnection.shutdown();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void dashboardQuery(Blackhole blackhole) throws InterruptedException, ExecutionException {
+        Future<?> future = executor.submit(() -> {
+            GoalPage page = goalDAO.getGoalsPage(1, 0, null, 50);
+            blackhole.consume(page);
+        });
+        future.get();
+    }
+}
@@ -0,0 +1,149 @@
+package com.mystrive.bench;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver that answers the DAOs' queries from {@link SampleData} without any I/O,
+ * so servlet and connection-pool benchmarks measure the application code only.
+ * Select it with DB_DRIVER=com.mystrive.bench.FakeDriver and DB_URL=jdbc:mystrive-fake:
+ * (as system properties; an exported DB_URL environment variable takes precedence).
+ */
+public class FakeDriver implements Driver {
+
+    public static final String URL = "jdbc:mystrive-fake:";
+
+    // Rows returned by goal and category queries; set before the first connection is opened.
+    public static volatile int goalRows = 50;
+    public static volatile int categoryRows = 6;
+    // Simulated database round trip added to every query and update, in microseconds (0 = none).
+    public static volatile long queryDelayMicros = 0;
+
+    static {
+        try {
+            DriverManager.registerDriver(new FakeDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        boolean[] autoCommit = {true};
+        boolean[] closed = {false};
+        return Fakes.proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement((String) args[0]);
+                case "isValid":
+                    return !closed[0];
+                case "isClosed":
+                    return closed[0];
+                case "close":
+                    closed[0] = true;
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit[0];
+                case "setAutoCommit":
+                    autoCommit[0] = (Boolean) args[0];
+                    return null;
+                case "getMetaData":
+                    return Fakes.proxy(DatabaseMetaData.class, (p, m, a) ->
+                            "getDatabaseProductName".equals(m.getName()) ? "MyStrive fake" : Fakes.zero(m.getReturnType()));
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return Fakes.zero(method.getReturnType());
+            }
+        });
+    }
+
+    private static PreparedStatement statement(String sql) {
+        return Fakes.proxy(PreparedStatement.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "executeQuery":
+                    simulateRoundTrip();
+                    return resultFor(sql);
+                case "executeUpdate":
+                    simulateRoundTrip();
+                    return 1;
+                case "getGeneratedKeys":
+                    return FakeResultSet.of(new String[]{"GENERATED_KEY"}, List.<Object[]>of(new Object[]{1}));
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return Fakes.zero(method.getReturnType());
+            }
+        });
+    }
+
+    // Parks rather than spins, like a thread blocked on a socket read.
+    private static void simulateRoundTrip() {
+        long delay = queryDelayMicros;
+        if (delay > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(delay));
+        }
+    }
+
+    private static ResultSet resultFor(String sql) {
+        if (sql.contains("FROM categories")) {
+            return FakeResultSet.of(SampleData.CATEGORY_COLUMNS, SampleData.categories(categoryRows));
+        }
+        if (sql.contains("FROM milestones")) {
+            return FakeResultSet.of(SampleData.MILESTONE_COLUMNS, SampleData.milestones(10));
+        }
+        if (sql.contains("FROM goals")) {
+            return FakeResultSet.of(SampleData.GOAL_COLUMNS, SampleData.goals(goalRows));
+        }
+        return FakeResultSet.of(new String[0], List.of());
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,97 @@
+package com.mystrive.bench;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory, forward-only ResultSet over a fixed list of rows, so DAO mapping code
+ * can be measured without a driver or network in the way. Columns are looked up by
+ * label (case-insensitive, like MySQL Connector/J) or by 1-based index; findColumn
+ * turns a label into its index.
+ */
+public final class FakeResultSet {
+
+    private FakeResultSet() {
+    }
+
+    /**
+     * Creates a result set; every row must have one value per column.
+     *
+     * @param columns The column labels.
+     * @param rows The row values.
+     * @return A fresh result set positioned before the first row.
+     */
+    public static ResultSet of(String[] columns, List<Object[]> rows) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            index.put(columns[i].toLowerCase(), i);
+        }
+        int[] position = {-1};
+        boolean[] lastWasNull = {false};
+        return Fakes.proxy(ResultSet.class, (proxy, method, args) -> {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    return ++position[0] < rows.size();
+                case "wasNull":
+                    return lastWasNull[0];
+                case "close":
+                case "isClosed":
+                    return name.equals("isClosed") ? Boolean.FALSE : null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeResultSet" + index.keySet();
+                case "findColumn":
+                    Integer found = index.get(((String) args[0]).toLowerCase());
+                    if (found == null) {
+                        throw new java.sql.SQLException("Column '" + args[0] + "' not found.");
+                    }
+                    return found + 1;
+                default:
+                    break;
+            }
+            if (!name.startsWith("get") || args == null || args.length != 1) {
+                return Fakes.zero(method.getReturnType());
+            }
+            int column;
+            if (args[0] instanceof String) {
+                Integer found = index.get(((String) args[0]).toLowerCase());
+                if (found == null) {
+                    throw new java.sql.SQLException("Column '" + args[0] + "' not found.");
+                }
+                column = found;
+            } else {
+                column = ((Integer) args[0]) - 1;
+            }
+            Object value = rows.get(position[0])[column];
+            lastWasNull[0] = value == null;
+            return convert(value, method.getReturnType());
+        });
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null) {
+            return Fakes.zero(type);
+        }
+        if (type == int.class) {
+            return ((Number) value).intValue();
+        }
+        if (type == long.class) {
+            return ((Number) value).longValue();
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (type == Date.class && value instanceof Timestamp) {
+            return new Date(((Timestamp) value).getTime());
+        }
+        return value;
+    }
+}
@@ -0,0 +1,428 @@
+package com.mystrive.bench;
+
+import com.mystrive.util.SchemaMigrator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end load test that needs no MySQL: loads mystrive_db.sql into an in-memory H2
+ * database, runs the webapp in an embedded Tomcat and drives concurrent user sessions
+ * through login, dashboard, goal details and milestone add/update over HTTP.
+ * Prints p50/p95/p99 latency and throughput per endpoint for the measured phase.
+ *
+ * <p>Options (all optional, as -name=value):
+ * <ul>
+ * <li>users: concurrent sessions (default 20)</li>
+ * <li>warmup / duration: seconds of warm-up and of measurement (10 / 60)</li>
+ * <li>goalsPerUser: goals created for each session before the run (5)</li>
+ * <li>datasetUsers: if set, first generate this many users with {@link DatasetGenerator} (which also takes
+ * its maxGoals, zipf, maxCategories, minMilestones, maxMilestones and seed options) and run the sessions as
+ * randomly chosen generated users instead of freshly registered ones</li>
+ * <li>milestoneCap: milestones kept per goal; beyond this the oldest is deleted (50)</li>
+ * <li>thinkTime: pause between requests in milliseconds (0)</li>
+ * <li>serverThreads: Tomcat request threads (200)</li>
+ * <li>webapp / dump: paths of src/main/webapp and mystrive_db.sql (relative to benchmarks/)</li>
+ * <li>appLogLevel: log level of the application and Tomcat (WARNING)</li>
+ * <li>out: also write the summary as JSON to this file</li>
+ * </ul>
+ * Application settings such as DB_POOL_MAX_SIZE can be given as -D system properties.
+ * Every session logs in once per iteration, so with the default PBKDF2 cost login throughput is
+ * bounded by PASSWORD_HASH_THREADS; pass e.g. -DPASSWORD_HASH_ITERATIONS=1000 to measure the
+ * other endpoints without that bound.
+ */
+public final class LoadHarness {
+
+    static final String CONTEXT_PATH = "/MyStrive";
+    static final String PASSWORD = "loadtest-password";
+
+    private static final Pattern GOAL_LINK = Pattern.compile("milestones\\?goalId=(\\d+)");
+    private static final Pattern MILESTONE_LINK = Pattern.compile("milestoneId=(\\d+)");
+    private static final String[] STATUSES = {"Not Started", "In Progress", "Completed"};
+
+    // Keeps the loggers configured below from being garbage collected (and reset).
+    private static final List<Logger> QUIETED = new ArrayList<>();
+
+    private final Map<String, String> options;
+    private final HttpClient client;
+    private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private String baseUrl;
+    // First and last id of users made by DatasetGenerator, or null to register users instead.
+    private int[] generatedUsers;
+    private volatile long measureStartNanos;
+    private volatile long endNanos;
+
+    LoadHarness(Map<String, String> options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        for (String endpoint : new String[]{"POST /login", "GET /goals", "GET /milestones", "POST /milestones add",
+            "POST /milestones update", "GET /milestones delete", "GET /logout"}) {
+            recorders.put(endpoint, new LatencyRecorder(endpoint));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        quietLogging(Level.parse(options.getOrDefault("appLogLevel", "WARNING")));
+
+        EmbeddedDatabase database = EmbeddedDatabase.create("mystrive_load",
+                Paths.get(options.getOrDefault("dump", "../mystrive_db.sql")));
+        database.configureApplication();
+        int[] generatedUsers = null;
+        if (options.containsKey("datasetUsers")) {
+            // The generator writes the current schema, which the dump alone predates.
+            SchemaMigrator.migrate();
+            Map<String, String> datasetOptions = new HashMap<>(options);
+            datasetOptions.put("users", options.get("datasetUsers"));
+            try (Connection connection = database.connect()) {
+                generatedUsers = new DatasetGenerator(datasetOptions).generate(connection);
+            }
+        }
+        EmbeddedServer server = EmbeddedServer.start(new File(options.getOrDefault("webapp", "../src/main/webapp")),
+                CONTEXT_PATH, intOption(options, "serverThreads", 200));
+        try {
+            LoadHarness harness = new LoadHarness(options);
+            harness.baseUrl = server.getBaseUrl();
+            harness.generatedUsers = generatedUsers;
+            List<LatencyRecorder.Summary> summaries = harness.run();
+            print(summaries, System.out);
+            String out = options.get("out");
+            if (out != null) {
+                Files.write(Paths.get(out), toJson(summaries, options).getBytes(StandardCharsets.UTF_8));
+                System.out.println("Results written to " + out);
+            }
+        } finally {
+            server.stop();
+            database.close();
+        }
+    }
+
+    /**
+     * Creates the sessions' accounts and goals, then runs warm-up and measurement.
+     *
+     * @return One summary per endpoint, for the measured phase only.
+     * @throws InterruptedException If interrupted while waiting for the sessions.
+     */
+    List<LatencyRecorder.Summary> run() throws InterruptedException {
+        int users = intOption(options, "users", 20);
+        long warmupNanos = Duration.ofSeconds(intOption(options, "warmup", 10)).toNanos();
+        long durationNanos = Duration.ofSeconds(intOption(options, "duration", 60)).toNanos();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+
+        CountDownLatch seeded = new CountDownLatch(users);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        List<Integer> generatedIds = new ArrayList<>();
+        if (generatedUsers != null) {
+            for (int id = generatedUsers[0]; id <= generatedUsers[1]; id++) {
+                generatedIds.add(id);
+            }
+            Collections.shuffle(generatedIds, new Random(7));
+            if (generatedIds.size() < users) {
+                throw new IllegalArgumentException("datasetUsers must be at least the number of sessions.");
+            }
+        }
+        for (int i = 0; i < users; i++) {
+            boolean generated = generatedUsers != null;
+            Session session = generated
+                    ? new Session("user_" + generatedIds.get(i), DatasetGenerator.PASSWORD)
+                    : new Session("load_" + runId + "_" + i, PASSWORD);
+            Thread thread = new Thread(() -> {
+                try {
+                    if (generated) {
+                        session.login(false);
+                        session.logout();
+                    } else {
+                        session.seed(intOption(options, "goalsPerUser", 5));
+                    }
+                    seeded.countDown();
+                    go.await();
+                    session.loop();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    seeded.countDown();
+                }
+            }, "load-session-" + i);
+            // Daemon, so sessions parked on the start latch do not keep the JVM alive when seeding fails.
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        System.out.println("Preparing " + users + " sessions...");
+        seeded.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Seeding failed", failure.get());
+        }
+        long start = System.nanoTime();
+        measureStartNanos = start + warmupNanos;
+        endNanos = measureStartNanos + durationNanos;
+        System.out.println("Running " + users + " sessions: " + options.getOrDefault("warmup", "10")
+                + " s warm-up, " + options.getOrDefault("duration", "60") + " s measured...");
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("A session failed", failure.get());
+        }
+        double seconds = durationNanos / 1e9;
+        List<LatencyRecorder.Summary> summaries = new ArrayList<>();
+        for (LatencyRecorder recorder : recorders.values()) {
+            summaries.add(recorder.summarize(seconds));
+        }
+        return summaries;
+    }
+
+    /**
+     * One simulated user with its own login cookie (session or auth token, depending on AUTH_MODE).
+     */
+    private final class Session {
+        private final String username;
+        private final String password;
+        private String cookie;
+
+        Session(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        void seed(int goals) throws IOException, InterruptedException {
+            Map<String, String> form = new LinkedHashMap<>();
+            form.put("username", username);
+            form.put("password", password);
+            form.put("confirmPassword", password);
+            form.put("email", username + "@example.com");
+            expectRedirect(send(post("/register", form)), "/login", "register");
+            login(false);
+            for (int g = 0; g < goals; g++) {
+                Map<String, String> goal = new LinkedHashMap<>();
+                goal.put("action", "add");
+                goal.put("goalDescription", "Load test goal " + g + " of " + username);
+                goal.put("categoryId", "");
+                goal.put("targetDate", LocalDate.now().plusDays(30 + g).toString());
+                goal.put("status", STATUSES[g % STATUSES.length]);
+                expectRedirect(send(post("/goals", goal)), "/goals", "add goal");
+            }
+            logout();
+        }
+
+        void logout() throws IOException, InterruptedException {
+            send(get("/logout"));
+            cookie = null;
+        }
+
+        void loop() throws IOException, InterruptedException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < endNanos) {
+                if (!login(true)) {
+                    continue;
+                }
+                HttpResponse<String> dashboard = timed("GET /goals", get("/goals"), 200, null);
+                List<String> goalIds = ids(dashboard, GOAL_LINK);
+                if (!goalIds.isEmpty()) {
+                    String goalId = goalIds.get(random.nextInt(goalIds.size()));
+                    HttpResponse<String> details = timed("GET /milestones", get("/milestones?goalId=" + goalId), 200, null);
+                    List<String> milestoneIds = ids(details, MILESTONE_LINK);
+
+                    Map<String, String> milestone = new LinkedHashMap<>();
+                    milestone.put("action", "add");
+                    milestone.put("goalId", goalId);
+                    milestone.put("milestoneDescription", "Step " + random.nextInt(1000));
+                    milestone.put("dueDate", LocalDate.now().plusDays(random.nextInt(1, 60)).toString());
+                    milestone.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+                    timed("POST /milestones add", post("/milestones", milestone), 302, "/milestones");
+
+                    if (!milestoneIds.isEmpty()) {
+                        milestone.put("action", "update");
+                        milestone.put("milestoneId", milestoneIds.get(random.nextInt(milestoneIds.size())));
+                        milestone.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+                        timed("POST /milestones update", post("/milestones", milestone), 302, "/milestones");
+                    }
+                    // Keep the details page at a steady size over long runs.
+                    if (milestoneIds.size() >= intOption(options, "milestoneCap", 50)) {
+                        timed("GET /milestones delete", get("/milestones?action=delete&goalId=" + goalId
+                                + "&milestoneId=" + milestoneIds.get(0)), 302, "/milestones");
+                    }
+                }
+                timed("GET /logout", get("/logout"), 302, "/login.jsp");
+                cookie = null;
+            }
+        }
+
+        private boolean login(boolean record) throws IOException, InterruptedException {
+            Map<String, String> form = new LinkedHashMap<>();
+            form.put("username", username);
+            form.put("password", password);
+            HttpRequest request = post("/login", form);
+            HttpResponse<String> response = record
+                    ? timed("POST /login", request, 302, "/goals")
+                    : expectRedirect(send(request), "/goals", "login");
+            Optional<String> setCookie = response.headers().firstValue("Set-Cookie");
+            setCookie.ifPresent(value -> cookie = value.split(";", 2)[0]);
+            return response.statusCode() == 302;
+        }
+
+        private HttpResponse<String> timed(String endpoint, HttpRequest request, int expectedStatus, String expectedLocation)
+                throws IOException, InterruptedException {
+            pause();
+            long start = System.nanoTime();
+            HttpResponse<String> response = send(request);
+            long elapsed = System.nanoTime() - start;
+            boolean ok = response.statusCode() == expectedStatus
+                    && (expectedLocation == null || response.headers().firstValue("Location").orElse("").contains(expectedLocation));
+            if (start >= measureStartNanos && start < endNanos) {
+                recorders.get(endpoint).record(elapsed, ok);
+            }
+            return response;
+        }
+
+        private HttpRequest get(String path) {
+            return withCookie(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET()).build();
+        }
+
+        private HttpRequest post(String path, Map<String, String> form) {
+            StringBuilder body = new StringBuilder();
+            for (Map.Entry<String, String> field : form.entrySet()) {
+                if (body.length() > 0) {
+                    body.append('&');
+                }
+                body.append(URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8)).append('=')
+                        .append(URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
+            }
+            return withCookie(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))).build();
+        }
+
+        private HttpRequest.Builder withCookie(HttpRequest.Builder builder) {
+            builder.timeout(Duration.ofSeconds(30));
+            return cookie == null ? builder : builder.header("Cookie", cookie);
+        }
+
+        private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+
+        private void pause() throws InterruptedException {
+            int thinkTime = intOption(options, "thinkTime", 0);
+            if (thinkTime > 0) {
+                Thread.sleep(thinkTime);
+            }
+        }
+    }
+
+    private static HttpResponse<String> expectRedirect(HttpResponse<String> response, String location, String step) {
+        if (response.statusCode() != 302 || !response.headers().firstValue("Location").orElse("").contains(location)) {
+            throw new UncheckedIOException(new IOException("Seeding step '" + step + "' failed with HTTP "
+                    + response.statusCode() + " " + response.headers().firstValue("Location").orElse("")));
+        }
+        return response;
+    }
+
+    private static List<String> ids(HttpResponse<String> response, Pattern pattern) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (response.statusCode() == 200) {
+            Matcher matcher = pattern.matcher(response.body());
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    static void print(List<LatencyRecorder.Summary> summaries, PrintStream out) {
+        out.println();
+        out.printf(Locale.ROOT, "%-26s %9s %7s %10s %9s %9s %9s %9s%n",
+                "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        long requests = 0;
+        double throughput = 0;
+        for (LatencyRecorder.Summary s : summaries) {
+            out.printf(Locale.ROOT, "%-26s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", s.name, s.requests, s.errors,
+                    s.throughput, s.p50Nanos / 1e6, s.p95Nanos / 1e6, s.p99Nanos / 1e6, s.maxNanos / 1e6);
+            requests += s.requests;
+            throughput += s.throughput;
+        }
+        out.printf(Locale.ROOT, "%-26s %9d %7s %10.1f%n", "Total", requests, "", throughput);
+    }
+
+    static String toJson(List<LatencyRecorder.Summary> summaries, Map<String, String> options) {
+        StringBuilder json = new StringBuilder("{\n  \"options\": {");
+        String separator = "";
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            json.append(separator).append('"').append(option.getKey()).append("\": \"")
+                    .append(option.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            separator = ", ";
+        }
+        json.append("},\n  \"endpoints\": [\n");
+        for (int i = 0; i < summaries.size(); i++) {
+            LatencyRecorder.Summary s = summaries.get(i);
+            json.append(String.format(Locale.ROOT,
+                    "    {\"endpoint\": \"%s\", \"requests\": %d, \"errors\": %d, \"throughput\": %.2f, "
+                    + "\"p50Ms\": %.3f, \"p95Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}%s%n",
+                    s.name, s.requests, s.errors, s.throughput, s.p50Nanos / 1e6, s.p95Nanos / 1e6,
+                    s.p99Nanos / 1e6, s.maxNanos / 1e6, i < summaries.size() - 1 ? "," : ""));
+        }
+        return json.append("  ]\n}\n").toString();
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("-") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected -name=value but got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(arg.startsWith("--") ? 2 : 1, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static void quietLogging(Level level) {
+        for (String name : new String[]{"com.mystrive", "com.mystrive.sampled", "org.apache"}) {
+            Logger logger = Logger.getLogger(name);
+            logger.setLevel(level);
+            QUIETED.add(logger);
+        }
+    }
+}
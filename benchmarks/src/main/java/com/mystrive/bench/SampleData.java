@@ -0,0 +1,83 @@
+package com.mystrive.bench;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canned rows shaped like the results of the DAO queries.
+ */
+public final class SampleData {
+
+    public static final String[] GOAL_COLUMNS = {
+        "goal_id", "user_id", "category_id", "goal_description", "target_date", "status",
+        "milestone_total", "milestone_done", "created_at", "updated_at", "category_name"
+    };
+
+    public static final String[] MILESTONE_COLUMNS = {
+        "milestone_id", "goal_id", "milestone_description", "due_date", "status", "created_at", "updated_at"
+    };
+
+    public static final String[] CATEGORY_COLUMNS = {
+        "category_id", "user_id", "category_name", "created_at"
+    };
+
+    private static final String[] STATUSES = {"Not Started", "In Progress", "Completed"};
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long BASE_MILLIS = Timestamp.valueOf("2025-06-01 09:00:00").getTime();
+
+    private SampleData() {
+    }
+
+    /**
+     * Goal rows for one user; every fifth goal has no category and every seventh no target date.
+     *
+     * @param count Number of rows.
+     * @return The rows, in GOAL_COLUMNS order.
+     */
+    public static List<Object[]> goals(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            boolean hasCategory = i % 5 != 0;
+            rows.add(new Object[]{
+                i, 1, hasCategory ? (i % 4) + 1 : null, "Goal number " + i + " with a typical description",
+                i % 7 == 0 ? null : new Date(BASE_MILLIS + i * DAY_MILLIS), STATUSES[i % 3],
+                i % 11, (i % 11) / 2, new Timestamp(BASE_MILLIS - i * 3600_000L), new Timestamp(BASE_MILLIS),
+                hasCategory ? "Category " + ((i % 4) + 1) : null
+            });
+        }
+        return rows;
+    }
+
+    /**
+     * Milestone rows for one goal.
+     *
+     * @param count Number of rows.
+     * @return The rows, in MILESTONE_COLUMNS order.
+     */
+    public static List<Object[]> milestones(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rows.add(new Object[]{
+                i, 1, "Milestone " + i, new Date(BASE_MILLIS + i * DAY_MILLIS), STATUSES[i % 3],
+                new Timestamp(BASE_MILLIS - i * 60_000L), new Timestamp(BASE_MILLIS)
+            });
+        }
+        return rows;
+    }
+
+    /**
+     * Category rows for one user.
+     *
+     * @param count Number of rows.
+     * @return The rows, in CATEGORY_COLUMNS order.
+     */
+    public static List<Object[]> categories(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rows.add(new Object[]{i, 1, "Category " + i, new Timestamp(BASE_MILLIS)});
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,145 @@
+package com.mystrive.bench;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Minimal in-memory stand-ins for the servlet API objects a servlet touches while handling
+ * a request. Forwards and redirects are recorded rather than performed.
+ */
+public final class ServletFakes {
+
+    private ServletFakes() {
+    }
+
+    /**
+     * Creates a session holding the given attributes.
+     *
+     * @param attributes Initial attributes, e.g. "currentUser".
+     * @return The session.
+     */
+    public static HttpSession session(Map<String, Object> attributes) {
+        Map<String, Object> values = new HashMap<>(attributes);
+        return Fakes.proxy(HttpSession.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAttribute":
+                    return values.get((String) args[0]);
+                case "setAttribute":
+                    values.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    values.remove((String) args[0]);
+                    return null;
+                case "getId":
+                    return "bench-session";
+                default:
+                    return Fakes.zero(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a request with the given parameters and session.
+     * The name of the last forward target is stored in the "forwardedTo" attribute.
+     *
+     * @param method The HTTP method.
+     * @param parameters Request parameters (single-valued).
+     * @param session The session returned by getSession, or null.
+     * @return The request.
+     */
+    public static HttpServletRequest request(String method, Map<String, String> parameters, HttpSession session) {
+        Map<String, Object> attributes = new HashMap<>();
+        return Fakes.proxy(HttpServletRequest.class, (proxy, m, args) -> {
+            switch (m.getName()) {
+                case "getMethod":
+                    return method;
+                case "getParameter":
+                    return parameters.get((String) args[0]);
+                case "getParameterValues": {
+                    String value = parameters.get((String) args[0]);
+                    return value == null ? null : new String[]{value};
+                }
+                case "getParameterMap":
+                    return Collections.unmodifiableMap(parameters);
+                case "getSession":
+                    return session;
+                case "getAttribute":
+                    return attributes.get((String) args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    attributes.remove((String) args[0]);
+                    return null;
+                case "getContextPath":
+                    return "/mystrive";
+                case "getRequestURI":
+                    return "/mystrive";
+                case "getCharacterEncoding":
+                    return "UTF-8";
+                case "getRequestDispatcher": {
+                    String path = (String) args[0];
+                    return Fakes.proxy(RequestDispatcher.class, (p, dm, da) -> {
+                        attributes.put("forwardedTo", path);
+                        return null;
+                    });
+                }
+                default:
+                    return Fakes.zero(m.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a response that discards everything; the redirect target is kept in the returned holder.
+     *
+     * @param redirect A one-element array receiving the last sendRedirect location.
+     * @return The response.
+     */
+    public static HttpServletResponse response(String[] redirect) {
+        return Fakes.proxy(HttpServletResponse.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "sendRedirect":
+                    redirect[0] = (String) args[0];
+                    return null;
+                case "encodeRedirectURL":
+                case "encodeURL":
+                    return args[0];
+                default:
+                    return Fakes.zero(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates a servlet config with the given init parameters.
+     *
+     * @param name The servlet name.
+     * @param initParameters The init-params.
+     * @return The config.
+     */
+    public static ServletConfig config(String name, Map<String, String> initParameters) {
+        ServletContext context = Fakes.proxy(ServletContext.class, (proxy, method, args) -> Fakes.zero(method.getReturnType()));
+        return Fakes.proxy(ServletConfig.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getServletName":
+                    return name;
+                case "getInitParameter":
+                    return initParameters.get((String) args[0]);
+                case "getInitParameterNames":
+                    return Collections.enumeration(initParameters.keySet());
+                case "getServletContext":
+                    return context;
+                default:
+                    return Fakes.zero(method.getReturnType());
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.mystrive.bench;
+
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Measures what a logged-in user costs in the session: the heap retained per session and the
+ * bytes Tomcat writes per session when it saves sessions on shutdown (SESSIONS.ser) or
+ * replicates them. Each simulated session is an attribute map like StandardSession's, holding
+ * the "currentUser" attribute as
+ * <ul>
+ * <li>user: the full User entity loaded at login (password hash, email, creation time), as
+ * stored before the session principal was introduced</li>
+ * <li>principal: the {@link SessionPrincipal} stored now</li>
+ * </ul>
+ * Strings are built per session, as they would be when read from the database at each login.
+ *
+ * <p>Options (all optional, as -name=value): sessions (default 100000).
+ * Run with a fixed heap (e.g. -Xms512m -Xmx512m) for steadier numbers.
+ */
+public final class SessionFootprint {
+
+    private static final String HASH_PREFIX = "pbkdf2-sha256$210000$";
+
+    private SessionFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("-") || eq < 0) {
+                throw new IllegalArgumentException("Expected -name=value, got " + arg);
+            }
+            options.put(arg.substring(1, eq), arg.substring(eq + 1));
+        }
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "100000"));
+
+        System.out.printf(Locale.ROOT, "%-10s %14s %16s%n", "attribute", "heap B/session", "serialized B/session");
+        report("user", sessions, SessionFootprint::fullUser);
+        report("principal", sessions, i -> new SessionPrincipal(i, "user" + i));
+    }
+
+    private static void report(String name, int sessions, IntFunction<Object> currentUser) throws IOException {
+        // One untimed round so that classes are loaded before the baseline is taken.
+        session(currentUser.apply(0));
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedAfterGc(memory);
+        Object[] retained = new Object[sessions];
+        for (int i = 0; i < sessions; i++) {
+            retained[i] = session(currentUser.apply(i));
+        }
+        long after = usedAfterGc(memory);
+        double heapPerSession = (after - before) / (double) sessions;
+        String serialized = serializedSize(retained[sessions / 2]);
+        System.out.printf(Locale.ROOT, "%-10s %14.1f %16s%n", name, heapPerSession, serialized);
+        // Keeps the sessions reachable until the second measurement.
+        if (retained[sessions - 1] == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static Map<String, Object> session(Object currentUser) {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        attributes.put("currentUser", currentUser);
+        return attributes;
+    }
+
+    private static User fullUser(int i) {
+        String hash = HASH_PREFIX + String.format(Locale.ROOT, "%022d", i) + "$" + String.format(Locale.ROOT, "%043d", i);
+        return new User(i, "user" + i, hash, "user" + i + "@example.com", new Timestamp(1_700_000_000_000L + i));
+    }
+
+    // Tomcat writes each attribute value with ObjectOutputStream; values that are not Serializable are dropped.
+    private static String serializedSize(Object session) throws IOException {
+        Object value = ((Map<?, ?>) session).get("currentUser");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            return "not serializable";
+        }
+        return Integer.toString(bytes.size());
+    }
+
+    private static long usedAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
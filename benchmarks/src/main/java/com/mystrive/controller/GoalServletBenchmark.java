@@ -0,0 +1,112 @@
+package com.mystrive.controller;
+
+import com.mystrive.bench.FakeDriver;
+import com.mystrive.bench.ServletFakes;
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.util.DBConnection;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request handling cost of {@link GoalServlet} for the dashboard list and the add-goal form
+ * post, with fake request/response objects and the in-memory {@link FakeDriver} behind the
+ * connection pool. Forwards to JSPs are recorded, not rendered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+    "-DDB_URL=" + FakeDriver.URL, "-DDB_DRIVER=com.mystrive.bench.FakeDriver",
+    "-DDB_MIGRATE_ON_STARTUP=false", "-Djava.util.logging.config.file=/dev/null"})
+public class GoalServletBenchmark {
+
+    private GoalServlet servlet;
+    private HttpSession session;
+    private Map<String, String> listParams;
+    private Map<String, String> listByCategoryParams;
+    private Map<String, String> addParams;
+    private Map<String, String> addPastDateParams;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ServletException {
+        servlet = new GoalServlet();
+        Map<String, String> initParameters = new HashMap<>();
+        initParameters.put("pageSize", "50");
+        servlet.init(ServletFakes.config("GoalServlet", initParameters));
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("currentUser", new SessionPrincipal(1, "bench"));
+        session = ServletFakes.session(attributes);
+
+        listParams = new HashMap<>();
+        listByCategoryParams = new HashMap<>();
+        listByCategoryParams.put("categoryId", "2");
+
+        addParams = new HashMap<>();
+        addParams.put("action", "add");
+        addParams.put("goalDescription", "Run a half marathon");
+        addParams.put("categoryId", "3");
+        addParams.put("targetDate", LocalDate.now().plusMonths(3).toString());
+        addParams.put("status", "Not Started");
+
+        addPastDateParams = new HashMap<>(addParams);
+        addPastDateParams.put("targetDate", "2020-01-01");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        servlet.destroy();
+        DBConnection.shutdown();
+    }
+
+    @Benchmark
+    public Object doGetDashboard() throws ServletException, IOException {
+        return get(listParams);
+    }
+
+    @Benchmark
+    public Object doGetDashboardByCategory() throws ServletException, IOException {
+        return get(listByCategoryParams);
+    }
+
+    @Benchmark
+    public String doPostAddGoal() throws ServletException, IOException {
+        String[] redirect = new String[1];
+        servlet.doPost(ServletFakes.request("POST", addParams, session), ServletFakes.response(redirect));
+        return redirect[0];
+    }
+
+    @Benchmark
+    public Object doPostAddGoalValidationError() throws ServletException, IOException {
+        HttpServletRequest request = ServletFakes.request("POST", addPastDateParams, session);
+        servlet.doPost(request, ServletFakes.response(new String[1]));
+        return request.getAttribute("errorMessage");
+    }
+
+    private Object get(Map<String, String> parameters) throws ServletException, IOException {
+        HttpServletRequest request = ServletFakes.request("GET", parameters, session);
+        servlet.doGet(request, ServletFakes.response(new String[1]));
+        return request.getAttribute("goals");
+    }
+}
@@ -0,0 +1,63 @@
+package com.mystrive.controller;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The target date checks of {@link GoalServlet#doPost}: parsing the submitted value and
+ * rejecting past dates. The malformed case includes the cost of the IllegalArgumentException
+ * thrown by Date.valueOf.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetDateValidationBenchmark {
+
+    private String futureDate;
+    private String pastDate;
+    private String malformedDate;
+
+    @Setup
+    public void setUp() {
+        futureDate = LocalDate.now().plusDays(30).toString();
+        pastDate = "2020-01-01";
+        malformedDate = "31/12/2030";
+    }
+
+    @Benchmark
+    public boolean validFutureDate() {
+        return validate(futureDate);
+    }
+
+    @Benchmark
+    public boolean pastDate() {
+        return validate(pastDate);
+    }
+
+    @Benchmark
+    public boolean malformedDate() {
+        return validate(malformedDate);
+    }
+
+    private static boolean validate(String value) {
+        try {
+            return !GoalServlet.isInPast(Date.valueOf(value));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.mystrive.dao;
+
+import com.mystrive.bench.FakeResultSet;
+import com.mystrive.bench.SampleData;
+import com.mystrive.model.Goal;
+import com.mystrive.model.Milestone;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning result-set rows into Goal and Milestone objects: by column label, as the
+ * DAOs did before {@link JdbcTemplate} (one label lookup per column and row), against the
+ * index-based {@link RowMapper}s they use now ({@link GoalDAO#GOAL}, {@link MilestoneDAO#MILESTONE}),
+ * which look the labels up once per result set. The fake result set is proxy-based, so absolute
+ * numbers include a fixed per-call dispatch cost; compare runs against each other rather than
+ * against a real driver.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int rows;
+
+    private List<Object[]> goalRows;
+    private List<Object[]> milestoneRows;
+
+    @Setup
+    public void setUp() {
+        goalRows = SampleData.goals(rows);
+        milestoneRows = SampleData.milestones(rows);
+    }
+
+    @Benchmark
+    public List<Goal> mapGoalsByLabel() throws SQLException {
+        ResultSet resultSet = FakeResultSet.of(SampleData.GOAL_COLUMNS, goalRows);
+        List<Goal> goals = new ArrayList<>();
+        while (resultSet.next()) {
+            goals.add(goalByLabel(resultSet));
+        }
+        return goals;
+    }
+
+    @Benchmark
+    public List<Goal> mapGoalsByIndex() throws SQLException {
+        return GoalDAO.GOAL.readAll(FakeResultSet.of(SampleData.GOAL_COLUMNS, goalRows));
+    }
+
+    @Benchmark
+    public List<Milestone> mapMilestonesByLabel() throws SQLException {
+        ResultSet resultSet = FakeResultSet.of(SampleData.MILESTONE_COLUMNS, milestoneRows);
+        List<Milestone> milestones = new ArrayList<>();
+        while (resultSet.next()) {
+            milestones.add(milestoneByLabel(resultSet));
+        }
+        return milestones;
+    }
+
+    @Benchmark
+    public List<Milestone> mapMilestonesByIndex() throws SQLException {
+        return MilestoneDAO.MILESTONE.readAll(FakeResultSet.of(SampleData.MILESTONE_COLUMNS, milestoneRows));
+    }
+
+    // The former GoalDAO.mapGoal.
+    private static Goal goalByLabel(ResultSet resultSet) throws SQLException {
+        Goal goal = new Goal();
+        goal.setGoalId(resultSet.getInt("goal_id"));
+        goal.setUserId(resultSet.getInt("user_id"));
+        if (resultSet.getObject("category_id") != null) {
+            goal.setCategoryId(resultSet.getInt("category_id"));
+        } else {
+            goal.setCategoryId(null);
+        }
+        goal.setGoalDescription(resultSet.getString("goal_description"));
+        goal.setTargetDate(resultSet.getDate("target_date"));
+        goal.setStatus(resultSet.getString("status"));
+        goal.setMilestoneTotal(resultSet.getInt("milestone_total"));
+        goal.setMilestoneDone(resultSet.getInt("milestone_done"));
+        goal.setCreatedAt(resultSet.getTimestamp("created_at"));
+        goal.setUpdatedAt(resultSet.getTimestamp("updated_at"));
+        goal.setCategoryName(resultSet.getString("category_name"));
+        return goal;
+    }
+
+    // The former MilestoneDAO.mapMilestone.
+    private static Milestone milestoneByLabel(ResultSet resultSet) throws SQLException {
+        Milestone milestone = new Milestone();
+        milestone.setMilestoneId(resultSet.getInt("milestone_id"));
+        milestone.setGoalId(resultSet.getInt("goal_id"));
+        milestone.setMilestoneDescription(resultSet.getString("milestone_description"));
+        milestone.setDueDate(resultSet.getDate("due_date"));
+        milestone.setStatus(resultSet.getString("status"));
+        milestone.setCreatedAt(resultSet.getTimestamp("created_at"));
+        milestone.setUpdatedAt(resultSet.getTimestamp("updated_at"));
+        return milestone;
+    }
+}
@@ -0,0 +1,331 @@
+package com.mystrive.controller;
+
+import com.mystrive.dao.CategoryDAO;
+import com.mystrive.dao.GoalDAO;
+import com.mystrive.dao.MilestoneDAO;
+import com.mystrive.model.Category;
+import com.mystrive.model.Goal;
+import com.mystrive.model.GoalPage;
+import com.mystrive.model.Milestone;
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.util.JsonReader;
+import com.mystrive.util.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * JSON API over the same data as the JSP pages, mapped to /api/v1/*. It uses the login
+ * of the web pages (session or token cookie, see CurrentUser), so a page's script can call
+ * it directly. Responses are written straight to the response writer with {@link JsonWriter}.
+ * <pre>
+ * GET   /api/v1/goals?categoryId=&amp;cursor=&amp;limit=   one page of goals, same order and cursor as the dashboard
+ * GET   /api/v1/goals/{goalId}                   a goal with its milestones
+ * GET   /api/v1/goals/{goalId}/milestones        the milestones of a goal
+ * PATCH /api/v1/goals/{goalId}                   {"status": "..."}
+ * PATCH /api/v1/milestones/{milestoneId}         {"status": "..."}
+ * GET   /api/v1/categories                       the user's categories
+ * </pre>
+ * PATCH answers 204 No Content. Errors are {"error": "..."} with a 400, 401, 404 or 405 status.
+ */
+public class ApiServlet extends AsyncDbServlet {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(ApiServlet.class.getName());
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 200;
+    // PATCH bodies are a single small object.
+    private static final int MAX_BODY_CHARS = 4096;
+
+    // The statuses offered by the goal and milestone forms.
+    static final Set<String> STATUSES = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "Not Started", "In Progress", "Completed", "On Hold", "Cancelled")));
+
+    private GoalDAO goalDAO;
+    private MilestoneDAO milestoneDAO;
+    private CategoryDAO categoryDAO;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        goalDAO = new GoalDAO();
+        milestoneDAO = new MilestoneDAO();
+        categoryDAO = new CategoryDAO();
+    }
+
+    /**
+     * Handles HTTP GET requests: goal pages, single goals, milestones and categories.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @throws ServletException If a servlet-specific error occurs.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SessionPrincipal currentUser = currentUser(request, response);
+        if (currentUser == null) {
+            return;
+        }
+        int userId = currentUser.getUserId();
+        String[] path = pathSegments(request);
+        if (!isGetRoute(path)) {
+            if (isPatchRoute(path)) {
+                sendMethodNotAllowed(response, "PATCH");
+            } else {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "Unknown API resource.");
+            }
+            return;
+        }
+
+        try {
+            if (path.length == 1 && "goals".equals(path[0])) {
+                writeGoalPage(request, response, userId);
+            } else if (path.length == 2 && "goals".equals(path[0])) {
+                Goal goal = goalDAO.getGoalWithMilestones(Integer.parseInt(path[1]), userId);
+                if (goal == null) {
+                    sendError(response, HttpServletResponse.SC_NOT_FOUND, "Goal not found.");
+                    return;
+                }
+                JsonWriter json = startJson(response);
+                writeGoal(json, goal, true);
+                json.flush();
+            } else if (path.length == 3 && "goals".equals(path[0]) && "milestones".equals(path[2])) {
+                Goal goal = goalDAO.getGoalWithMilestones(Integer.parseInt(path[1]), userId);
+                if (goal == null) {
+                    sendError(response, HttpServletResponse.SC_NOT_FOUND, "Goal not found.");
+                    return;
+                }
+                JsonWriter json = startJson(response);
+                json.beginObject().name("milestones");
+                writeMilestones(json, goal.getMilestones());
+                json.endObject().flush();
+            } else {
+                List<Category> categories = categoryDAO.getAllCategoriesByUserId(userId);
+                JsonWriter json = startJson(response);
+                json.beginObject().name("categories").beginArray();
+                for (Category category : categories) {
+                    json.beginObject()
+                            .name("categoryId").value(category.getCategoryId())
+                            .name("categoryName").value(category.getCategoryName())
+                            .endObject();
+                }
+                json.endArray().endObject().flush();
+            }
+        } catch (NumberFormatException e) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid ID or number in request.");
+        }
+    }
+
+    /**
+     * Handles HTTP PATCH requests: status changes of goals and milestones.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @throws ServletException If a servlet-specific error occurs.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    protected void doPatch(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SessionPrincipal currentUser = currentUser(request, response);
+        if (currentUser == null) {
+            return;
+        }
+        int userId = currentUser.getUserId();
+        String[] path = pathSegments(request);
+        if (!isPatchRoute(path)) {
+            if (isGetRoute(path)) {
+                sendMethodNotAllowed(response, "GET");
+            } else {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "Unknown API resource.");
+            }
+            return;
+        }
+
+        int id;
+        String status;
+        try {
+            id = Integer.parseInt(path[1]);
+            Map<String, String> body = JsonReader.readObject(request.getReader(), MAX_BODY_CHARS);
+            status = body.get("status");
+        } catch (NumberFormatException e) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid ID in request.");
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Malformed JSON body: " + e.getMessage());
+            return;
+        }
+        if (status == null || !STATUSES.contains(status)) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "\"status\" must be one of " + STATUSES + ".");
+            return;
+        }
+
+        boolean updated = "goals".equals(path[0])
+                ? goalDAO.updateGoalStatus(id, userId, status)
+                : milestoneDAO.updateMilestoneStatus(id, userId, status);
+        if (updated) {
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } else {
+            // Missing, owned by someone else, or the database failed; the log tells which.
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "goals".equals(path[0]) ? "Goal not found." : "Milestone not found.");
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        sendError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Use the web pages to create or delete data.");
+    }
+
+    private void writeGoalPage(HttpServletRequest request, HttpServletResponse response, int userId) throws IOException {
+        int categoryId = 0;
+        String categoryIdParam = request.getParameter("categoryId");
+        if (categoryIdParam != null && !categoryIdParam.isEmpty()) {
+            categoryId = Integer.parseInt(categoryIdParam);
+            if (categoryDAO.getCategoryByIdForUser(categoryId, userId) == null) {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "Category not found.");
+                return;
+            }
+        }
+        int limit = DEFAULT_LIMIT;
+        String limitParam = request.getParameter("limit");
+        if (limitParam != null && !limitParam.isEmpty()) {
+            limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam)));
+        }
+
+        GoalPage page = goalDAO.getGoalsPage(userId, categoryId, request.getParameter("cursor"), limit);
+        JsonWriter json = startJson(response);
+        json.beginObject().name("goals").beginArray();
+        for (Goal goal : page.getGoals()) {
+            writeGoal(json, goal, false);
+        }
+        json.endArray().name("nextCursor").value(page.getNextCursor()).endObject().flush();
+    }
+
+    private static void writeGoal(JsonWriter json, Goal goal, boolean withMilestones) throws IOException {
+        json.beginObject();
+        writeGoalFields(json, goal);
+        if (withMilestones) {
+            json.name("milestones");
+            writeMilestones(json, goal.getMilestones());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes the members of a goal's JSON object, without its milestones.
+     *
+     * @param json The writer, inside the goal's object.
+     * @param goal The goal.
+     * @throws IOException If writing fails.
+     */
+    static void writeGoalFields(JsonWriter json, Goal goal) throws IOException {
+        json.name("goalId").value(goal.getGoalId())
+                .name("categoryId").value(goal.getCategoryId())
+                .name("categoryName").value(goal.getCategoryName())
+                .name("goalDescription").value(goal.getGoalDescription())
+                .name("targetDate").value(goal.getTargetDate())
+                .name("status").value(goal.getStatus())
+                .name("milestoneTotal").value(goal.getMilestoneTotal())
+                .name("milestoneDone").value(goal.getMilestoneDone())
+                .name("createdAt").value(goal.getCreatedAt())
+                .name("updatedAt").value(goal.getUpdatedAt());
+    }
+
+    private static void writeMilestones(JsonWriter json, List<Milestone> milestones) throws IOException {
+        json.beginArray();
+        if (milestones != null) {
+            for (Milestone milestone : milestones) {
+                writeMilestone(json, milestone);
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * Writes a milestone as a JSON object.
+     *
+     * @param json The writer, where a value may follow.
+     * @param milestone The milestone.
+     * @throws IOException If writing fails.
+     */
+    static void writeMilestone(JsonWriter json, Milestone milestone) throws IOException {
+        json.beginObject()
+                .name("milestoneId").value(milestone.getMilestoneId())
+                .name("milestoneDescription").value(milestone.getMilestoneDescription())
+                .name("dueDate").value(milestone.getDueDate())
+                .name("status").value(milestone.getStatus())
+                .name("createdAt").value(milestone.getCreatedAt())
+                .name("updatedAt").value(milestone.getUpdatedAt())
+                .endObject();
+    }
+
+    // GET resources: /goals, /goals/{id}, /goals/{id}/milestones and /categories.
+    private static boolean isGetRoute(String[] path) {
+        if (path.length == 0) {
+            return false;
+        }
+        if (path.length == 1) {
+            return "goals".equals(path[0]) || "categories".equals(path[0]);
+        }
+        return "goals".equals(path[0]) && (path.length == 2 || path.length == 3 && "milestones".equals(path[2]));
+    }
+
+    // PATCH resources: /goals/{id} and /milestones/{id}.
+    private static boolean isPatchRoute(String[] path) {
+        return path.length == 2 && ("goals".equals(path[0]) || "milestones".equals(path[0]));
+    }
+
+    private static String[] pathSegments(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null || pathInfo.equals("/")) {
+            return new String[0];
+        }
+        String trimmed = pathInfo.startsWith("/") ? pathInfo.substring(1) : pathInfo;
+        if (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed.split("/");
+    }
+
+    // Returns the logged-in user, or answers 401 and returns null.
+    private static SessionPrincipal currentUser(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
+            LOGGER.log(Level.WARNING, "Unauthorized API request {0} {1}.", new Object[]{request.getMethod(), request.getRequestURI()});
+            sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Not logged in.");
+        }
+        return currentUser;
+    }
+
+    private static JsonWriter startJson(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        return new JsonWriter(response.getWriter());
+    }
+
+    private static void sendMethodNotAllowed(HttpServletResponse response, String allowed) throws IOException {
+        response.setHeader("Allow", allowed);
+        sendError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed; use " + allowed + ".");
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        JsonWriter json = startJson(response);
+        json.beginObject().name("error").value(message).endObject().flush();
+    }
+}
@@ -0,0 +1,72 @@
+package com.mystrive.controller;
+
+import com.mystrive.dao.MilestoneCounterRepair;
+import com.mystrive.dao.QueryPlanCheck;
+import com.mystrive.util.AsyncLogHandler;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.DbExecutor;
+import com.mystrive.util.JmxSupport;
+import com.mystrive.util.PasswordHasher;
+import com.mystrive.util.SchemaMigrator;
+
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Starts and stops application-wide resources together with the web application.
+ */
+public class AppLifecycleListener implements ServletContextListener {
+
+    private static final Logger LOGGER = Logger.getLogger(AppLifecycleListener.class.getName());
+
+    /**
+     * Switches the application to asynchronous logging (unless LOG_ASYNC=false), then
+     * creates the connection pool, the database executor and the password hasher up front so the first request
+     * does not pay for them, then brings the schema up to date (unless DB_MIGRATE_ON_STARTUP=false)
+     * and schedules the milestone counter repair.
+     * A failed migration stops the deployment rather than serving from a half-migrated schema.
+     *
+     * @param event The servlet context event.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        AsyncLogHandler.install();
+        DBConnection.getPool();
+        if (Boolean.parseBoolean(DBConnection.config("DB_MIGRATE_ON_STARTUP", "true"))) {
+            try {
+                SchemaMigrator.migrate();
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Schema migration failed: " + e.getMessage(), e);
+                throw new IllegalStateException("Schema migration failed", e);
+            }
+        }
+        if (Boolean.parseBoolean(DBConnection.config("DB_EXPLAIN_CHECK", "false"))) {
+            QueryPlanCheck.runAndLog();
+        }
+        DbExecutor.get();
+        PasswordHasher.get();
+        MilestoneCounterRepair.start();
+        LOGGER.log(Level.INFO, "MyStrive started.");
+    }
+
+    /**
+     * Stops the database executor and the password hashing threads, closes pooled connections and drops the statistics MBeans so a redeploy
+     * leaks neither sockets to MySQL nor the web application's class loader. The log is written out last.
+     *
+     * @param event The servlet context event.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        MilestoneCounterRepair.shutdown();
+        DbExecutor.shutdown();
+        PasswordHasher.shutdown();
+        DBConnection.shutdown();
+        JmxSupport.unregister("CategoryCache");
+        JmxSupport.unregister("DashboardSummaryCache");
+        LOGGER.log(Level.INFO, "MyStrive stopped.");
+        AsyncLogHandler.uninstall();
+    }
+}
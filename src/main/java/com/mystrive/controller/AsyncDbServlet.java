@@ -0,0 +1,250 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.DbExecutor;
+import com.mystrive.util.LogContext;
+import com.mystrive.util.Metrics;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Base class for servlets whose requests are mostly database work.
+ * Instead of running doGet/doPost on the Tomcat request thread, the request is put into
+ * asynchronous mode and handed to the {@link DbExecutor}; the request thread goes back to
+ * the connector straight away. Subclasses are written like any other HttpServlet:
+ * <ul>
+ * <li>PATCH requests are routed to {@link #doPatch}.</li>
+ * <li>Redirects and sendError work as usual; the request is completed when doGet/doPost returns.</li>
+ * <li>RequestDispatcher.forward becomes AsyncContext.dispatch, so the JSP is rendered on a
+ * container thread and the executor thread is free for the next request's queries.</li>
+ * <li>When the executor queue is full the request is answered with 503 at once; a request
+ * that is not finished within DB_REQUEST_TIMEOUT_MS is answered with 503 as well.</li>
+ * </ul>
+ * Falls back to ordinary synchronous processing when DB_ASYNC=false or when something in
+ * the filter chain does not support async. Servlets extending this class must be declared
+ * with &lt;async-supported&gt;true&lt;/async-supported&gt; in web.xml.
+ */
+public abstract class AsyncDbServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(AsyncDbServlet.class.getName());
+
+    // Seconds a client is asked to wait before retrying after a 503.
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        DbExecutor executor = DbExecutor.get();
+        if (executor == null || !request.isAsyncSupported() || request.getDispatcherType() != DispatcherType.REQUEST) {
+            handle(request, response);
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(executor.getRequestTimeoutMillis());
+        AsyncRequest task = new AsyncRequest(asyncContext, request, response, executor);
+        asyncContext.addListener(task);
+        try {
+            task.future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Database executor saturated; rejecting {0} {1} with 503.",
+                    new Object[]{request.getMethod(), request.getRequestURI()});
+            task.fail("The server is busy. Please try again in a moment.");
+        }
+    }
+
+    /**
+     * Handles HTTP PATCH requests, which HttpServlet does not route. Answers 405 unless overridden.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @throws ServletException If a servlet-specific error occurs.
+     * @throws IOException If an I/O error occurs.
+     */
+    protected void doPatch(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+    }
+
+    // Calls doGet/doPost/... as HttpServlet.service does, plus doPatch.
+    private void handle(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if ("PATCH".equals(request.getMethod())) {
+            doPatch(request, response);
+        } else {
+            super.service(request, response);
+        }
+    }
+
+    /**
+     * One request on its way through the executor. The state decides who finishes the
+     * request: the worker when the servlet returns or forwards to a view, or the timeout
+     * listener if it fires first. Whoever moves it out of RUNNING finishes it alone.
+     */
+    private final class AsyncRequest implements Runnable, AsyncListener {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final AsyncContext asyncContext;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final DbExecutor executor;
+        private volatile Future<?> future;
+        private volatile boolean dispatched;
+
+        AsyncRequest(AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response, DbExecutor executor) {
+            this.asyncContext = asyncContext;
+            this.request = new DispatchingRequest(request, this);
+            this.response = response;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return; // Timed out while queued and already answered
+            }
+            Metrics.beginDbTiming();
+            Object logContext = request.getAttribute(LogContext.ATTRIBUTE);
+            LogContext.attach(logContext instanceof LogContext ? (LogContext) logContext : null);
+            try {
+                handle(request, response);
+            } catch (ServletException | IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Unhandled error processing " + request.getRequestURI() + ": " + e.getMessage(), e);
+                if (state.get() == RUNNING && !dispatched && !response.isCommitted()) {
+                    try {
+                        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    } catch (IOException | IllegalStateException ignored) {
+                        // The client is gone; nothing more to send.
+                    }
+                }
+            } finally {
+                LogContext.detach();
+                long dbNanos = Metrics.endDbTiming();
+                if (state.compareAndSet(RUNNING, FINISHED) && !dispatched) {
+                    // For MetricsFilter, which records the request when it completes.
+                    request.setAttribute(MetricsFilter.DB_NANOS_ATTRIBUTE, dbNanos);
+                    asyncContext.complete();
+                }
+            }
+        }
+
+        /**
+         * Replaces RequestDispatcher.forward for the wrapped request. Does nothing once the
+         * request has timed out or failed: the 503 has been sent and the context completed.
+         */
+        void dispatch(String path) {
+            if (!state.compareAndSet(RUNNING, FINISHED)) {
+                return;
+            }
+            dispatched = true;
+            // Set before the dispatch: afterwards the request belongs to the container thread rendering the view.
+            request.setAttribute(MetricsFilter.DB_NANOS_ATTRIBUTE, Metrics.endDbTiming());
+            asyncContext.dispatch(path);
+        }
+
+        /**
+         * Answers the request with 503 and completes it.
+         */
+        void fail(String message) {
+            try {
+                if (!response.isCommitted()) {
+                    response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, message);
+                }
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.log(Level.FINE, "Could not send 503: " + e.getMessage(), e);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            int previous = state.getAndSet(FINISHED);
+            if (previous == FINISHED) {
+                return;
+            }
+            executor.recordTimeout();
+            if (future != null) {
+                // A running task is interrupted; it may still be inside a JDBC call, but anything it
+                // touches afterwards belongs to a finished request and fails instead of writing to it.
+                future.cancel(true);
+            }
+            LOGGER.log(Level.WARNING, "Request {0} {1} timed out {2} after {3} ms.", new Object[]{
+                request.getMethod(), request.getRequestURI(), previous == QUEUED ? "in the queue" : "while running",
+                executor.getRequestTimeoutMillis()});
+            fail("The request took too long. Please try again.");
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            state.set(FINISHED);
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // Nothing to clean up.
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted.
+        }
+    }
+
+    /**
+     * Hands out dispatchers whose forward() continues the request on a container thread.
+     */
+    private static final class DispatchingRequest extends HttpServletRequestWrapper {
+
+        private final AsyncRequest owner;
+
+        DispatchingRequest(HttpServletRequest request, AsyncRequest owner) {
+            super(request);
+            this.owner = owner;
+        }
+
+        @Override
+        public RequestDispatcher getRequestDispatcher(String path) {
+            RequestDispatcher target = super.getRequestDispatcher(path);
+            if (target == null || path == null || !path.startsWith("/")) {
+                return target;
+            }
+            return new RequestDispatcher() {
+                @Override
+                public void forward(ServletRequest request, ServletResponse response) {
+                    owner.dispatch(path);
+                }
+
+                @Override
+                public void include(ServletRequest request, ServletResponse response) throws ServletException, IOException {
+                    target.include(request, response);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.DataVersions;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Conditional GET for pages that show only the current user's own data (the dashboard
+ * and the goal details page). The ETag and Last-Modified come from {@link DataVersions},
+ * so a repeat view of an unchanged page is answered with 304 before any query runs.
+ * The current date is part of both, because the dashboard's overdue and due-soon counts
+ * change at midnight without any write. Pages carrying a one-time success or error message
+ * are always rendered in full.
+ * Disabled with HTTP_CONDITIONAL_GET=false, and always with AUTH_MODE=token: the versions are
+ * kept per node, so a node that did not see a write would answer 304 for a page that changed.
+ */
+final class ConditionalGet {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(DBConnection.config("HTTP_CONDITIONAL_GET", "true"))
+            && !CurrentUser.isStateless();
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Sets the validators on the response and answers 304 if the client's copy is current.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @param userId The current user.
+     * @return True if a 304 was sent and the caller must not render the page.
+     */
+    static boolean notModified(HttpServletRequest request, HttpServletResponse response, int userId) {
+        if (!ENABLED || Flash.pending(request)) {
+            return false;
+        }
+        DataVersions.Version version = DataVersions.current(userId);
+        LocalDate today = LocalDate.now();
+        long lastModified = Math.max(version.getLastModified(),
+                today.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        // The user ID is included because a browser shared by two users keeps one cached copy per URL.
+        String etag = "W/\"" + userId + "-" + DataVersions.instanceId() + "-" + version.getCounter()
+                + "-" + today.toEpochDay() + "\"";
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        // Let the browser keep the page but check back every time.
+        response.setHeader("Cache-Control", "private, no-cache");
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        boolean current;
+        if (ifNoneMatch != null) {
+            current = matches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince = -1;
+            try {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                // Unparseable date: treat as absent.
+            }
+            current = ifModifiedSince >= lastModified;
+        }
+        if (current) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return current;
+    }
+
+    // Weak comparison against a comma-separated If-None-Match list.
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
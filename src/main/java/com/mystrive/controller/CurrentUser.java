@@ -0,0 +1,198 @@
+package com.mystrive.controller;
+
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.model.User;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.SignedTokens;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Who is logged in. With AUTH_MODE=session (the default) the user is kept in the HttpSession
+ * as before. With AUTH_MODE=token nothing is kept on the server: login sets a cookie holding
+ * a {@link SignedTokens signed} token with the user ID, username and expiry, and every node
+ * sharing AUTH_TOKEN_SECRET accepts it, so the application can run on several Tomcat nodes
+ * behind a load balancer without sticky sessions or session replication.
+ * <ul>
+ * <li>A token is valid for AUTH_TOKEN_TTL_MINUTES (default 30, like the session timeout).</li>
+ * <li>It is replaced by a fresh one on a request made AUTH_TOKEN_REFRESH_SECONDS (default 300)
+ * or more after it was issued, so an active user stays logged in.</li>
+ * <li>Logging out deletes the cookie. A copied token stays valid until it expires; there
+ * is no server-side list of revoked tokens.</li>
+ * </ul>
+ * Either way the principal is a {@link SessionPrincipal}, and it is also set as the
+ * "currentUser" request attribute for the JSPs.
+ * <p>
+ * Several nodes only share what is in the database. The per-node data versions behind
+ * conditional GET cannot see writes made on another node, so {@link ConditionalGet} is off in
+ * token mode, and the category and dashboard summary caches keep entries for at most
+ * CATEGORY_CACHE_TTL_SECONDS and SUMMARY_CACHE_TTL_SECONDS (default 5 each in token mode), which
+ * is how stale a page served by one node can be after a write on another.
+ */
+final class CurrentUser {
+
+    private static final Logger LOGGER = Logger.getLogger(CurrentUser.class.getName());
+
+    /**
+     * Session and request attribute holding the logged-in user.
+     */
+    static final String ATTRIBUTE = "currentUser";
+
+    private static final String COOKIE = "MYSTRIVE_AUTH";
+
+    private static final boolean STATELESS = DBConnection.isTokenAuth();
+    private static final long TTL_SECONDS = TimeUnit.MINUTES.toSeconds(DBConnection.configLong("AUTH_TOKEN_TTL_MINUTES", 30));
+    private static final long REFRESH_SECONDS = DBConnection.configLong("AUTH_TOKEN_REFRESH_SECONDS", 300);
+
+    private CurrentUser() {
+    }
+
+    /**
+     * @return True if logins are signed tokens rather than sessions.
+     */
+    static boolean isStateless() {
+        return STATELESS;
+    }
+
+    /**
+     * Returns the logged-in user, renewing the token cookie when it is due.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object, for the renewed cookie.
+     * @return The user, or null if nobody is logged in.
+     */
+    static SessionPrincipal get(HttpServletRequest request, HttpServletResponse response) {
+        Object resolved = request.getAttribute(ATTRIBUTE);
+        if (resolved instanceof SessionPrincipal) {
+            return (SessionPrincipal) resolved;
+        }
+        SessionPrincipal user;
+        if (STATELESS) {
+            user = fromToken(request, response);
+        } else {
+            HttpSession session = request.getSession(false);
+            user = session == null ? null : (SessionPrincipal) session.getAttribute(ATTRIBUTE);
+        }
+        if (user != null) {
+            request.setAttribute(ATTRIBUTE, user);
+        }
+        return user;
+    }
+
+    /**
+     * Logs a user in: stores the user in a new session, or sets the token cookie.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @param user The authenticated user; the password is not kept.
+     */
+    static void login(HttpServletRequest request, HttpServletResponse response, User user) {
+        SessionPrincipal principal = SessionPrincipal.of(user);
+        if (STATELESS) {
+            issue(request, response, principal, System.currentTimeMillis() / 1000);
+        } else {
+            HttpSession session = request.getSession();
+            session.setAttribute(ATTRIBUTE, principal);
+            session.setMaxInactiveInterval((int) TTL_SECONDS);
+        }
+        request.setAttribute(ATTRIBUTE, principal);
+    }
+
+    /**
+     * Logs the current user out: invalidates the session, or deletes the token cookie.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @return The username of the user who was logged in, or null if there was none.
+     */
+    static String logout(HttpServletRequest request, HttpServletResponse response) {
+        SessionPrincipal user;
+        if (STATELESS) {
+            user = fromToken(request, null);
+            response.addCookie(cookie(request, COOKIE, "", 0));
+        } else {
+            HttpSession session = request.getSession(false);
+            user = session == null ? null : (SessionPrincipal) session.getAttribute(ATTRIBUTE);
+            if (session != null) {
+                session.invalidate();
+            }
+        }
+        request.removeAttribute(ATTRIBUTE);
+        return user != null ? user.getUsername() : null;
+    }
+
+    // Token payload: userId:issuedAt:expiresAt:username, times in epoch seconds. No renewal without a response.
+    private static SessionPrincipal fromToken(HttpServletRequest request, HttpServletResponse response) {
+        String payload = SignedTokens.AUTH.verify(cookieValue(request, COOKIE));
+        if (payload == null) {
+            return null;
+        }
+        String[] fields = payload.split(":", 4);
+        long now = System.currentTimeMillis() / 1000;
+        SessionPrincipal user;
+        long issuedAt;
+        try {
+            if (fields.length != 4 || Long.parseLong(fields[2]) <= now) {
+                return null;
+            }
+            user = new SessionPrincipal(Integer.parseInt(fields[0]), fields[3]);
+            issuedAt = Long.parseLong(fields[1]);
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Ignoring a signed auth token with a malformed payload.");
+            return null;
+        }
+        if (response != null && now - issuedAt >= REFRESH_SECONDS && !response.isCommitted()) {
+            issue(request, response, user, now);
+        }
+        return user;
+    }
+
+    private static void issue(HttpServletRequest request, HttpServletResponse response, SessionPrincipal user, long now) {
+        String token = SignedTokens.AUTH.sign(user.getUserId() + ":" + now + ":" + (now + TTL_SECONDS) + ":" + user.getUsername());
+        response.addCookie(cookie(request, COOKIE, token, (int) TTL_SECONDS));
+    }
+
+    /**
+     * Builds an HttpOnly cookie scoped to the application.
+     *
+     * @param request The request, for the context path and whether it came over HTTPS.
+     * @param name The cookie name.
+     * @param value The value; must be a valid cookie value, e.g. a signed token.
+     * @param maxAge The lifetime in seconds; 0 deletes the cookie.
+     * @return The cookie.
+     */
+    static Cookie cookie(HttpServletRequest request, String name, String value, int maxAge) {
+        Cookie cookie = new Cookie(name, value);
+        String path = request.getContextPath();
+        cookie.setPath(path.isEmpty() ? "/" : path);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setMaxAge(maxAge);
+        return cookie;
+    }
+
+    /**
+     * Returns the value of a request cookie.
+     *
+     * @param request The HttpServletRequest object.
+     * @param name The cookie name.
+     * @return The value, or null if the request has no such cookie.
+     */
+    static String cookieValue(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (name.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,274 @@
+package com.mystrive.controller;
+
+import com.mystrive.dao.GoalDAO;
+import com.mystrive.model.Goal;
+import com.mystrive.model.Milestone;
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Downloads all goals and milestones of the logged-in user, mapped to /export.
+ * <pre>
+ * GET /export?format=csv      one line per milestone, with its goal's columns; a goal without milestones has one line
+ * GET /export?format=ndjson   one JSON object per goal and line, as in the JSON API, with its milestones
+ * </pre>
+ * The rows are read with one streamed query (see {@link GoalDAO#exportGoalsWithMilestones}) and
+ * written to the response as they arrive, so memory use is the same for ten goals or a million.
+ * The response is gzip-compressed when the client accepts it. If the database fails after part
+ * of the file has been sent, the connection is dropped so the client sees an incomplete download
+ * rather than a short file.
+ * <p>
+ * This is not an {@link AsyncDbServlet}: an export takes as long as the client needs to download
+ * it, which would tie up a DB executor thread and run into DB_REQUEST_TIMEOUT_MS. Each export
+ * holds a pooled connection while it runs, so at most EXPORT_MAX_CONCURRENT (default 2) run at
+ * once; further requests are answered with 503.
+ */
+public class ExportServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(ExportServlet.class.getName());
+
+    private static final Semaphore RUNNING = new Semaphore(Math.max(1, DBConnection.configInt("EXPORT_MAX_CONCURRENT", 2)));
+    private static final String RETRY_AFTER_SECONDS = "10";
+    // Written in chunks of this size, before compression.
+    private static final int BUFFER_CHARS = 8192;
+
+    private static final String[] CSV_HEADER = {
+        "goal_id", "category_id", "category_name", "goal_description", "target_date", "goal_status",
+        "goal_created_at", "goal_updated_at", "milestone_id", "milestone_description", "milestone_due_date",
+        "milestone_status", "milestone_created_at", "milestone_updated_at"};
+
+    private GoalDAO goalDAO;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        goalDAO = new GoalDAO();
+    }
+
+    /**
+     * Handles HTTP GET requests: streams the export in the requested format.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @throws ServletException If the database fails after the response was committed.
+     * @throws IOException If an I/O error occurs, e.g. the client went away.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
+            LOGGER.log(Level.WARNING, "Unauthorized access to ExportServlet. Redirecting to login.jsp.");
+            response.sendRedirect(request.getContextPath() + "/login.jsp");
+            return;
+        }
+        String format = request.getParameter("format");
+        boolean ndjson = "ndjson".equals(format);
+        if (format != null && !ndjson && !"csv".equals(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown export format; use csv or ndjson.");
+            return;
+        }
+        if (!RUNNING.tryAcquire()) {
+            LOGGER.log(Level.WARNING, "Export for user ID {0} rejected: too many exports running.", currentUser.getUserId());
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many exports are running. Please try again shortly.");
+            return;
+        }
+        try {
+            export(request, response, currentUser.getUserId(), ndjson);
+        } finally {
+            RUNNING.release();
+        }
+    }
+
+    private void export(HttpServletRequest request, HttpServletResponse response, int userId, boolean ndjson)
+            throws ServletException, IOException {
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.setHeader("Content-Disposition", "attachment; filename=\"mystrive-export-"
+                + LocalDate.now() + (ndjson ? ".ndjson" : ".csv") + "\"");
+        response.setHeader("Vary", "Accept-Encoding");
+        OutputStream body = response.getOutputStream();
+        if (acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            body = new GZIPOutputStream(body, BUFFER_CHARS);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), BUFFER_CHARS);
+
+        GoalDAO.ExportHandler handler = ndjson ? new NdjsonExport(out) : new CsvExport(out);
+        if (!goalDAO.exportGoalsWithMilestones(userId, handler)) {
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "The export failed. Please try again.");
+                return;
+            }
+            // Not closing the writer: a complete gzip trailer or chunked ending would make the file look whole.
+            throw new ServletException("Export for user ID " + userId + " failed after the response was committed.");
+        }
+        out.close(); // Finishes the gzip stream
+    }
+
+    // True unless the client does not list gzip or refuses it with q=0.
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+                    if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * CSV as in RFC 4180: a header line, then one line per milestone repeating its goal's
+     * columns; a goal without milestones gets one line with empty milestone columns.
+     */
+    private static final class CsvExport implements GoalDAO.ExportHandler {
+
+        private final Writer out;
+        private Goal goal;
+        private boolean hasMilestones;
+
+        CsvExport(Writer out) throws IOException {
+            this.out = out;
+            for (int i = 0; i < CSV_HEADER.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(CSV_HEADER[i]);
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        public void startGoal(Goal goal) {
+            this.goal = goal;
+            hasMilestones = false;
+        }
+
+        @Override
+        public void milestone(Milestone milestone) throws IOException {
+            hasMilestones = true;
+            writeGoal();
+            field(Integer.toString(milestone.getMilestoneId()));
+            field(milestone.getMilestoneDescription());
+            field(text(milestone.getDueDate()));
+            field(milestone.getStatus());
+            field(text(milestone.getCreatedAt()));
+            field(text(milestone.getUpdatedAt()));
+            out.write("\r\n");
+        }
+
+        @Override
+        public void endGoal() throws IOException {
+            if (!hasMilestones) {
+                writeGoal();
+                out.write(",,,,,,\r\n");
+            }
+        }
+
+        private void writeGoal() throws IOException {
+            out.write(Integer.toString(goal.getGoalId()));
+            field(goal.getCategoryId() != null ? goal.getCategoryId().toString() : null);
+            field(goal.getCategoryName());
+            field(goal.getGoalDescription());
+            field(text(goal.getTargetDate()));
+            field(goal.getStatus());
+            field(text(goal.getCreatedAt()));
+            field(text(goal.getUpdatedAt()));
+        }
+
+        // Writes a comma and the value, quoted if it contains a delimiter, quote or line break.
+        private void field(String value) throws IOException {
+            out.write(',');
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (quote) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(value);
+            }
+        }
+
+        // Dates as "yyyy-MM-dd", timestamps as "yyyy-MM-dd HH:mm:ss", like the JSON API.
+        private static String text(java.util.Date value) {
+            if (value == null) {
+                return null;
+            }
+            String text = value.toString();
+            int dot = value instanceof java.sql.Timestamp ? text.indexOf('.') : -1;
+            return dot > 0 ? text.substring(0, dot) : text;
+        }
+    }
+
+    /**
+     * Newline-delimited JSON: each goal is one line holding the goal's members, as in the JSON
+     * API, and its milestones, written as they are read.
+     */
+    private static final class NdjsonExport implements GoalDAO.ExportHandler {
+
+        private final Writer out;
+        private final JsonWriter json;
+
+        NdjsonExport(Writer out) {
+            this.out = out;
+            this.json = new JsonWriter(out);
+        }
+
+        @Override
+        public void startGoal(Goal goal) throws IOException {
+            json.beginObject();
+            ApiServlet.writeGoalFields(json, goal);
+            json.name("milestones").beginArray();
+        }
+
+        @Override
+        public void milestone(Milestone milestone) throws IOException {
+            ApiServlet.writeMilestone(json, milestone);
+        }
+
+        @Override
+        public void endGoal() throws IOException {
+            json.endArray().endObject();
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.SignedTokens;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * One-time success and error messages for the Post-Redirect-Get pattern: set before the
+ * redirect, shown by the page the browser is redirected to. They are kept in the session,
+ * or with AUTH_MODE=token in a short-lived signed cookie, so no node needs to remember them.
+ * The page's servlet moves them into the "successMessage" and "errorMessage" request attributes
+ * with {@link #consume}.
+ */
+final class Flash {
+
+    static final String SUCCESS = "successMessage";
+    static final String ERROR = "errorMessage";
+
+    // Long enough for the browser to follow the redirect.
+    private static final int COOKIE_MAX_AGE_SECONDS = 60;
+    private static final String COOKIE_PREFIX = "flash_";
+
+    private Flash() {
+    }
+
+    /**
+     * Sets the success message for the next page.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @param message The message.
+     */
+    static void success(HttpServletRequest request, HttpServletResponse response, String message) {
+        put(request, response, SUCCESS, message);
+    }
+
+    /**
+     * Sets the error message for the next page.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @param message The message.
+     */
+    static void error(HttpServletRequest request, HttpServletResponse response, String message) {
+        put(request, response, ERROR, message);
+    }
+
+    private static void put(HttpServletRequest request, HttpServletResponse response, String name, String message) {
+        if (CurrentUser.isStateless()) {
+            // The name is signed along with the message so one cannot be passed off as the other.
+            response.addCookie(CurrentUser.cookie(request, COOKIE_PREFIX + name,
+                    SignedTokens.FLASH.sign(name + ":" + message), COOKIE_MAX_AGE_SECONDS));
+        } else {
+            request.getSession().setAttribute(name, message);
+        }
+    }
+
+    /**
+     * Tells whether a message is waiting to be shown, without consuming it.
+     *
+     * @param request The HttpServletRequest object.
+     * @return True if the next page shown carries a message.
+     */
+    static boolean pending(HttpServletRequest request) {
+        if (CurrentUser.isStateless()) {
+            return CurrentUser.cookieValue(request, COOKIE_PREFIX + SUCCESS) != null
+                    || CurrentUser.cookieValue(request, COOKIE_PREFIX + ERROR) != null;
+        }
+        HttpSession session = request.getSession(false);
+        return session != null && (session.getAttribute(SUCCESS) != null || session.getAttribute(ERROR) != null);
+    }
+
+    /**
+     * Moves waiting messages into request attributes for the page being rendered.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object, for deleting the message cookies.
+     */
+    static void consume(HttpServletRequest request, HttpServletResponse response) {
+        consume(request, response, SUCCESS);
+        consume(request, response, ERROR);
+    }
+
+    private static void consume(HttpServletRequest request, HttpServletResponse response, String name) {
+        String message = null;
+        if (CurrentUser.isStateless()) {
+            String token = CurrentUser.cookieValue(request, COOKIE_PREFIX + name);
+            if (token != null) {
+                response.addCookie(CurrentUser.cookie(request, COOKIE_PREFIX + name, "", 0));
+                String payload = SignedTokens.FLASH.verify(token);
+                if (payload != null && payload.startsWith(name + ":")) {
+                    message = payload.substring(name.length() + 1);
+                }
+            }
+        } else {
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                message = (String) session.getAttribute(name);
+                session.removeAttribute(name);
+            }
+        }
+        if (message != null) {
+            request.setAttribute(name, message);
+        }
+    }
+}
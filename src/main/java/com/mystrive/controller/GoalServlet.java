@@ -2,11 +2,11 @@ package com.mystrive.controller;
 
 import com.mystrive.dao.GoalDAO;
 import com.mystrive.dao.CategoryDAO;
-import com.mystrive.dao.MilestoneDAO;
 import com.mystrive.model.Goal;
+import com.mystrive.model.GoalPage;
 import com.mystrive.model.Category;
-import com.mystrive.model.Milestone;
-import com.mystrive.model.User;
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.util.LogContext;
 
 import java.io.IOException;
 import java.sql.Date;
@@ -15,16 +15,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
 /**
  * Servlet for handling all Goal Management operations (CRUD).
  * This updated version also supports filtering goals by category.
  */
-public class GoalServlet extends HttpServlet {
+public class GoalServlet extends AsyncDbServlet {
 
     // --- Added: Serial Version UID ---
     // This is recommended for all Servlets (classes that implement Serializable)
@@ -32,9 +30,11 @@ public class GoalServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = Logger.getLogger(GoalServlet.class.getName());
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     private GoalDAO goalDAO;
     private CategoryDAO categoryDAO;
-    private MilestoneDAO milestoneDAO;
+    private int pageSize;
 
     /**
      * Initializes the servlet.
@@ -46,7 +46,17 @@ public class GoalServlet extends HttpServlet {
         // It's good practice to call the parent class's init() method.
         goalDAO = new GoalDAO();
         categoryDAO = new CategoryDAO();
-        milestoneDAO = new MilestoneDAO();
+
+        // Number of goals per dashboard page, configurable through the "pageSize" init-param in web.xml.
+        pageSize = DEFAULT_PAGE_SIZE;
+        String pageSizeParam = getInitParameter("pageSize");
+        if (pageSizeParam != null && !pageSizeParam.trim().isEmpty()) {
+            try {
+                pageSize = Math.max(1, Integer.parseInt(pageSizeParam.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid pageSize init-param ''{0}''; using {1}.", new Object[]{pageSizeParam, DEFAULT_PAGE_SIZE});
+            }
+        }
         LOGGER.log(Level.INFO, "GoalServlet initialized. DAOs instances created.");
     }
 
@@ -67,19 +77,17 @@ public class GoalServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        LOGGER.log(Level.INFO, "Received GET request for /goals.");
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Received GET request for /goals.");
+        }
 
-        HttpSession session = request.getSession(false);
-        // --- Updated: Check for "currentUser" attribute ---
-        // Consistency with LoginServlet where "currentUser" is set in session.
-        if (session == null || session.getAttribute("currentUser") == null) {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
             LOGGER.log(Level.WARNING, "Unauthorized access to GoalServlet (GET). Redirecting to login.jsp.");
             response.sendRedirect(request.getContextPath() + "/login.jsp");
             return;
         }
 
-        // --- Updated: Retrieve "currentUser" attribute from session ---
-        User currentUser = (User) session.getAttribute("currentUser");
         int userId = currentUser.getUserId();
 
         String action = request.getParameter("action");
@@ -93,9 +101,15 @@ public class GoalServlet extends HttpServlet {
             switch (action) {
                 case "list":
                     // --- Start of Modified "list" action logic ---
-                    LOGGER.log(Level.INFO, "Action: list goals for user ID: {0}", userId);
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Action: list goals for user ID: {0}", userId);
+                    }
+
+                    // Unchanged since the browser's copy: answer 304 without querying.
+                    if (ConditionalGet.notModified(request, response, userId)) {
+                        return;
+                    }
 
-                    List<Goal> goals; // Declare goals list.
                     // Retrieve a list of ALL categories for the current user.
                     // This list will be passed to dashboard.jsp to populate the category filter sidebar.
                     List<Category> categoriesForSidebar = categoryDAO.getAllCategoriesByUserId(userId);
@@ -109,9 +123,9 @@ public class GoalServlet extends HttpServlet {
                         try {
                             filterCategoryId = Integer.parseInt(filterCategoryIdParam);
                             // Important: Verify if this category actually belongs to the user.
-                            // If it doesn't, treat it as an invalid filter.
-                            Category selectedCategory = categoryDAO.getCategoryById(filterCategoryId);
-                            if (selectedCategory == null || selectedCategory.getUserId() != userId) {
+                            // If it doesn't, treat it as an invalid filter. (Answered from the category cache.)
+                            Category selectedCategory = categoryDAO.getCategoryByIdForUser(filterCategoryId, userId);
+                            if (selectedCategory == null) {
                                 LOGGER.log(Level.WARNING, "User {0} attempted to filter by unauthorized or non-existent category ID {1}.", new Object[]{userId, filterCategoryId});
                                 // Optionally, set an error message, but proceed to show all goals.
                                 request.setAttribute("errorMessage", "Invalid category selected for filtering. Showing all goals.");
@@ -124,33 +138,26 @@ public class GoalServlet extends HttpServlet {
                         }
                     }
 
-                    if (filterCategoryId > 0) {
-                        // If a valid category ID is provided, fetch goals specific to that category.
-                        LOGGER.log(Level.INFO, "Fetching goals for user {0} filtered by category ID {1}.", new Object[]{userId, filterCategoryId});
-                        goals = goalDAO.getAllGoalsByUserIdAndCategoryId(userId, filterCategoryId);
-                        // Also, pass the selected category ID to the JSP to highlight it in the sidebar.
-                        request.setAttribute("selectedCategoryId", filterCategoryId);
-                    } else {
-                        // If no category ID is provided, or it's invalid, fetch all goals for the user.
-                        LOGGER.log(Level.INFO, "Fetching all goals for user {0}.", userId);
-                        goals = goalDAO.getAllGoalsByUserId(userId);
-                        request.setAttribute("selectedCategoryId", 0); // Indicate no category is specifically selected.
+                    // Goals are listed one page at a time. The opaque "cursor" parameter marks where the
+                    // previous page ended; without it the first page is shown.
+                    String cursor = request.getParameter("cursor");
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Fetching goals for user {0} (category ID {1}).", userId, filterCategoryId);
                     }
+                    GoalPage goalPage = goalDAO.getGoalsPage(userId, filterCategoryId, cursor, pageSize);
+                    // Pass the selected category ID to the JSP to highlight it in the sidebar (0 = all goals).
+                    request.setAttribute("selectedCategoryId", filterCategoryId);
 
-                    // Set the list of goals as a request attribute.
-                    request.setAttribute("goals", goals);
+                    // Set the list of goals and the paging state as request attributes.
+                    request.setAttribute("goals", goalPage.getGoals());
+                    request.setAttribute("nextCursor", goalPage.getNextCursor());
+                    request.setAttribute("firstPage", cursor == null || cursor.isEmpty());
 
-                    // Check for success/error messages from session (Post-Redirect-Get pattern).
-                    String successMessage = (String) session.getAttribute("successMessage");
-                    if (successMessage != null) {
-                        request.setAttribute("successMessage", successMessage);
-                        session.removeAttribute("successMessage");
-                    }
-                    String errorMessage = (String) session.getAttribute("errorMessage");
-                    if (errorMessage != null) {
-                        request.setAttribute("errorMessage", errorMessage);
-                        session.removeAttribute("errorMessage");
-                    }
+                    // Counts for the summary panel, over all of the user's goals (not just this page).
+                    request.setAttribute("summary", goalDAO.getDashboardSummary(userId));
+
+                    // Success/error message from the redirect that brought the user here (Post-Redirect-Get).
+                    Flash.consume(request, response);
 
                     dispatcher = request.getRequestDispatcher("/dashboard.jsp");
                     dispatcher.forward(request, response);
@@ -158,7 +165,9 @@ public class GoalServlet extends HttpServlet {
                     break;
 
                 case "add":
-                    LOGGER.log(Level.INFO, "Action: display add goal form for user ID: {0}", userId);
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Action: display add goal form for user ID: {0}", userId);
+                    }
                     List<Category> categoriesForAdd = categoryDAO.getAllCategoriesByUserId(userId);
                     request.setAttribute("categories", categoriesForAdd);
                     request.setAttribute("goal", new Goal());
@@ -168,12 +177,14 @@ public class GoalServlet extends HttpServlet {
                     break;
 
                 case "edit":
-                    LOGGER.log(Level.INFO, "Action: display edit goal form.");
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Action: display edit goal form.");
+                    }
                     String goalIdParamEdit = request.getParameter("goalId");
                     if (goalIdParamEdit == null || goalIdParamEdit.isEmpty()) {
                         LOGGER.log(Level.WARNING, "Missing goalId parameter for edit action.");
-                        // --- Updated: Error message handling using session attribute and redirect to main goals ---
-                        session.setAttribute("errorMessage", "Goal ID is required for editing.");
+                        // --- Updated: Error message handling using a flash message and redirect to main goals ---
+                        Flash.error(request, response, "Goal ID is required for editing.");
                         response.sendRedirect(request.getContextPath() + "/goals");
                         return;
                     }
@@ -182,7 +193,9 @@ public class GoalServlet extends HttpServlet {
                     Goal existingGoal = goalDAO.getGoalById(goalIdToEdit);
 
                     if (existingGoal != null && existingGoal.getUserId() == userId) {
-                        LOGGER.log(Level.INFO, "Retrieving goal ID {0} for editing by user ID {1}.", new Object[]{goalIdToEdit, userId});
+                        if (LogContext.isDebugEnabled(LOGGER)) {
+                            LogContext.debug(LOGGER, "Retrieving goal ID {0} for editing by user ID {1}.", goalIdToEdit, userId);
+                        }
                         List<Category> categoriesForEdit = categoryDAO.getAllCategoriesByUserId(userId);
                         request.setAttribute("categories", categoriesForEdit);
                         request.setAttribute("goal", existingGoal);
@@ -191,89 +204,88 @@ public class GoalServlet extends HttpServlet {
                         dispatcher.forward(request, response);
                     } else {
                         LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for editing.", new Object[]{goalIdToEdit, userId});
-                        // --- Updated: Error message handling using session attribute and redirect to main goals ---
-                        session.setAttribute("errorMessage", "Goal not found or unauthorized access for editing.");
+                        // --- Updated: Error message handling using a flash message and redirect to main goals ---
+                        Flash.error(request, response, "Goal not found or unauthorized access for editing.");
                         response.sendRedirect(request.getContextPath() + "/goals");
                     }
                     break;
 
                 case "delete":
-                    LOGGER.log(Level.INFO, "Action: delete goal.");
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Action: delete goal.");
+                    }
                     String goalIdParamDelete = request.getParameter("goalId");
                     if (goalIdParamDelete == null || goalIdParamDelete.isEmpty()) {
                         LOGGER.log(Level.WARNING, "Missing goalId parameter for delete action.");
-                        session.setAttribute("errorMessage", "Goal ID is required for deletion.");
+                        Flash.error(request, response, "Goal ID is required for deletion.");
                         response.sendRedirect(request.getContextPath() + "/goals");
                         return;
                     }
                     int goalIdToDelete = Integer.parseInt(goalIdParamDelete);
 
-                    LOGGER.log(Level.INFO, "Attempting to delete goal ID: {0} for user ID: {1}", new Object[]{goalIdToDelete, userId});
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Attempting to delete goal ID: {0} for user ID: {1}", goalIdToDelete, userId);
+                    }
                     boolean deleted = goalDAO.deleteGoal(goalIdToDelete, userId);
                     if (deleted) {
-                        LOGGER.log(Level.INFO, "Goal ID {0} deleted successfully.", goalIdToDelete);
-                        session.setAttribute("successMessage", "Goal successfully deleted!");
+                        if (LogContext.isDebugEnabled(LOGGER)) {
+                            LogContext.debug(LOGGER, "Goal ID {0} deleted successfully.", goalIdToDelete);
+                        }
+                        Flash.success(request, response, "Goal successfully deleted!");
                     } else {
                         LOGGER.log(Level.WARNING, "Failed to delete goal ID {0} or unauthorized.", goalIdToDelete);
-                        session.setAttribute("errorMessage", "Failed to delete goal or unauthorized.");
+                        Flash.error(request, response, "Failed to delete goal or unauthorized.");
                     }
                     response.sendRedirect(request.getContextPath() + "/goals");
                     break;
 
                 case "view":
-                    LOGGER.log(Level.INFO, "Action: view goal details.");
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Action: view goal details.");
+                    }
                     String goalIdParamView = request.getParameter("goalId");
                     if (goalIdParamView == null || goalIdParamView.isEmpty()) {
                         LOGGER.log(Level.WARNING, "Missing goalId parameter for view action.");
-                        session.setAttribute("errorMessage", "Goal ID is required to view details.");
+                        Flash.error(request, response, "Goal ID is required to view details.");
                         response.sendRedirect(request.getContextPath() + "/goals");
                         return;
                     }
                     int goalIdToView = Integer.parseInt(goalIdParamView);
 
-                    Goal goalToView = goalDAO.getGoalById(goalIdToView);
+                    // One query loads the goal, its category name and its milestones; ownership is checked in SQL.
+                    Goal goalToView = goalDAO.getGoalWithMilestones(goalIdToView, userId);
 
-                    if (goalToView != null && goalToView.getUserId() == userId) {
-                        LOGGER.log(Level.INFO, "Retrieving details for goal ID {0} by user ID {1}.", new Object[]{goalIdToView, userId});
-                        List<Milestone> milestonesForGoal = milestoneDAO.getAllMilestonesByGoalId(goalIdToView);
-                        request.setAttribute("goal", goalToView);
-                        request.setAttribute("milestones", milestonesForGoal);
-
-                        // --- Added: Session message handling for MilestoneServlet messages ---
-                        // Transfer success/error messages from session to request scope for display on goalDetails.jsp
-                        String successMilestoneMsg = (String) session.getAttribute("successMessage");
-                        if (successMilestoneMsg != null) {
-                            request.setAttribute("successMessage", successMilestoneMsg);
-                            session.removeAttribute("successMessage");
-                        }
-                        String errorMilestoneMsg = (String) session.getAttribute("errorMessage");
-                        if (errorMilestoneMsg != null) {
-                            request.setAttribute("errorMessage", errorMilestoneMsg);
-                            session.removeAttribute("errorMessage");
+                    if (goalToView != null) {
+                        if (LogContext.isDebugEnabled(LOGGER)) {
+                            LogContext.debug(LOGGER, "Retrieving details for goal ID {0} by user ID {1}.", goalIdToView, userId);
                         }
-                        // --- End Added ---
+                        request.setAttribute("goal", goalToView);
+                        request.setAttribute("milestones", goalToView.getMilestones());
+
+                        // Success/error message from the redirect that brought the user here (Post-Redirect-Get).
+                        Flash.consume(request, response);
 
                         dispatcher = request.getRequestDispatcher("/goalDetails.jsp");
                         dispatcher.forward(request, response);
                     } else {
                         LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for viewing details.", new Object[]{goalIdToView, userId});
-                        // --- Updated: Error message handling using session attribute and redirect to main goals ---
-                        session.setAttribute("errorMessage", "Goal details not found or unauthorized access.");
+                        // --- Updated: Error message handling using a flash message and redirect to main goals ---
+                        Flash.error(request, response, "Goal details not found or unauthorized access.");
                         response.sendRedirect(request.getContextPath() + "/goals");
                     }
                     break;
 
                 default:
                     LOGGER.log(Level.WARNING, "Unknown action '{0}' requested in GoalServlet (GET). Redirecting to list.", action);
-                    // --- Updated: Error message handling using session attribute and redirect to main goals ---
-                    session.setAttribute("errorMessage", "Invalid action requested.");
+                    // --- Updated: Error message handling using a flash message and redirect to main goals ---
+                    Flash.error(request, response, "Invalid action requested.");
                     response.sendRedirect(request.getContextPath() + "/goals");
                     break;
             }
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Invalid ID parameter format in GoalServlet (GET): " + e.getMessage(), e);
-            // --- Updated: Error message handling using session attribute and redirect to main goals ---
-            session.setAttribute("errorMessage", "Invalid ID format provided.");
+            // --- Updated: Error message handling using a flash message and redirect to main goals ---
+            Flash.error(request, response, "Invalid ID format provided.");
             response.sendRedirect(request.getContextPath() + "/goals");
         }
     }
@@ -292,18 +304,17 @@ public class GoalServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        LOGGER.log(Level.INFO, "Received POST request for /goals. Processing goal data.");
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Received POST request for /goals. Processing goal data.");
+        }
 
-        HttpSession session = request.getSession(false);
-        // --- Updated: Check for "currentUser" attribute ---
-        if (session == null || session.getAttribute("currentUser") == null) {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
             LOGGER.log(Level.WARNING, "Unauthorized access to GoalServlet (POST). Redirecting to login.jsp.");
             response.sendRedirect(request.getContextPath() + "/login.jsp");
             return;
         }
 
-        // --- Updated: Retrieve "currentUser" attribute from session ---
-        User currentUser = (User) session.getAttribute("currentUser");
         int userId = currentUser.getUserId();
 
         String action = request.getParameter("action");
@@ -329,9 +340,9 @@ public class GoalServlet extends HttpServlet {
         if (errorMessage == null && categoryIdStr != null && !categoryIdStr.isEmpty()) {
             try {
                 categoryId = Integer.parseInt(categoryIdStr);
-                // Optional: Validate if categoryId belongs to the current user
-                Category selectedCategory = categoryDAO.getCategoryById(categoryId);
-                if (selectedCategory == null || selectedCategory.getUserId() != userId) {
+                // Validate that categoryId belongs to the current user (in-memory lookup via the category cache)
+                Category selectedCategory = categoryDAO.getCategoryByIdForUser(categoryId, userId);
+                if (selectedCategory == null) {
                     errorMessage = "Invalid category selected or unauthorized.";
                     categoryId = null; // Invalidate categoryId if it doesn't belong to the user
                     LOGGER.log(Level.WARNING, "User {0} tried to use unauthorized category ID {1}.", new Object[]{userId, categoryIdStr}); // --- Added logging ---
@@ -353,14 +364,7 @@ public class GoalServlet extends HttpServlet {
         if (errorMessage == null && targetDateStr != null && !targetDateStr.isEmpty()) {
             try {
                 targetDate = Date.valueOf(targetDateStr);
-                java.util.Date today = new java.util.Date(); // Current date (java.util.Date)
-                java.util.Date target = new java.util.Date(targetDate.getTime()); // Convert java.sql.Date to java.util.Date
-
-                // Clear time components for accurate date-only comparison
-                today = new Date(today.getTime()); // Truncate to day
-                target = new Date(target.getTime()); // Truncate to day
-
-                if (target.before(today)) { // Check if target date is before today
+                if (isInPast(targetDate)) { // Check if target date is before today
                     errorMessage = "Target Date cannot be in the past.";
                 }
             } catch (IllegalArgumentException e) {
@@ -406,27 +410,31 @@ public class GoalServlet extends HttpServlet {
         try {
             if ("add".equals(action)) {
                 // Add new goal
-                LOGGER.log(Level.INFO, "Adding new goal for user ID: {0}", userId);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Adding new goal for user ID: {0}", userId);
+                }
                 operationSuccess = goalDAO.addGoal(goal);
                 if (operationSuccess) {
-                    session.setAttribute("successMessage", "Goal successfully added!");
+                    Flash.success(request, response, "Goal successfully added!");
                 } else {
-                    session.setAttribute("errorMessage", "Failed to add new goal. Please try again.");
+                    Flash.error(request, response, "Failed to add new goal. Please try again.");
                 }
             } else if ("update".equals(action)) {
                 // Update existing goal
                 int goalId = Integer.parseInt(goalIdStr);
                 goal.setGoalId(goalId); // Set the goal ID for update
-                LOGGER.log(Level.INFO, "Updating goal ID: {0} for user ID: {1}", new Object[]{goalId, userId});
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Updating goal ID: {0} for user ID: {1}", goalId, userId);
+                }
                 operationSuccess = goalDAO.updateGoal(goal);
                 if (operationSuccess) {
-                    session.setAttribute("successMessage", "Goal successfully updated!");
+                    Flash.success(request, response, "Goal successfully updated!");
                 } else {
-                    session.setAttribute("errorMessage", "Failed to update goal. Goal not found or unauthorized."); // --- Improved error message ---
+                    Flash.error(request, response, "Failed to update goal. Goal not found or unauthorized."); // --- Improved error message ---
                 }
             } else {
                 LOGGER.log(Level.WARNING, "Unknown action '{0}' requested in GoalServlet (POST).", action);
-                session.setAttribute("errorMessage", "Invalid action for goal operation.");
+                Flash.error(request, response, "Invalid action for goal operation.");
             }
 
             // Redirect back to the goals list (dashboard) using Post-Redirect-Get pattern
@@ -434,7 +442,7 @@ public class GoalServlet extends HttpServlet {
 
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Invalid goalId parameter in GoalServlet (POST) for update: " + e.getMessage(), e);
-            session.setAttribute("errorMessage", "Invalid goal ID format for update."); // --- Consistency in error message ---
+            Flash.error(request, response, "Invalid goal ID format for update."); // --- Consistency in error message ---
             response.sendRedirect(request.getContextPath() + "/goals"); // --- Redirect to safe page ---
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "An unexpected error occurred during goal operation (POST): " + e.getMessage(), e);
@@ -443,4 +451,21 @@ public class GoalServlet extends HttpServlet {
             dispatcher.forward(request, response);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether a submitted target date lies before the current moment.
+     *
+     * @param targetDate The parsed target date.
+     * @return true if the date is in the past.
+     */
+    static boolean isInPast(Date targetDate) {
+        java.util.Date today = new java.util.Date(); // Current date (java.util.Date)
+        java.util.Date target = new java.util.Date(targetDate.getTime()); // Convert java.sql.Date to java.util.Date
+
+        // Clear time components for accurate date-only comparison
+        today = new Date(today.getTime()); // Truncate to day
+        target = new Date(target.getTime()); // Truncate to day
+
+        return target.before(today);
+    }
+}
@@ -0,0 +1,477 @@
+package com.mystrive.controller;
+
+import com.mystrive.dao.CategoryDAO;
+import com.mystrive.dao.GoalDAO;
+import com.mystrive.model.Category;
+import com.mystrive.model.Goal;
+import com.mystrive.model.Milestone;
+import com.mystrive.model.SessionPrincipal;
+import com.mystrive.util.CsvReader;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+
+/**
+ * Imports goals and milestones from an uploaded CSV file (multipart field "file"), mapped to
+ * /import. The columns are found by their header names, in any order:
+ * <ul>
+ * <li>goal_description (required), category_name, target_date, goal_status</li>
+ * <li>milestone_description, milestone_due_date, milestone_status: a row with a milestone
+ * description adds a milestone to its goal</li>
+ * <li>goal_id: rows with the same goal_id as the row before belong to one goal. Without the
+ * column, consecutive rows with the same goal columns do.</li>
+ * </ul>
+ * Other columns are ignored, so a file from /export?format=csv imports as is. Dates are
+ * yyyy-MM-dd; statuses are those of the forms and default to "Not Started". Categories are
+ * matched by name (ignoring case) and created when missing.
+ * <p>
+ * The file is read one row at a time. Goals are inserted in chunks of IMPORT_BATCH_SIZE
+ * (default 500) with their milestones, each chunk with two batched INSERTs in one transaction
+ * (see {@link GoalDAO#importGoals}). A row that does not validate is reported and skipped,
+ * together with the milestone rows of a skipped goal; if a chunk fails in the database, its
+ * goals are retried one by one so only the failing ones are reported. The rest of the file is
+ * imported either way.
+ * <p>
+ * The result is shown on the dashboard, with the first rejected rows. With ?format=json the
+ * response is a JSON report instead: {"goals": n, "milestones": n, "categoriesCreated": n,
+ * "rejectedRows": n, "errors": [{"line": n, "error": "..."}]}, listing up to 1000 errors.
+ */
+public class ImportServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(ImportServlet.class.getName());
+
+    private static final int BATCH_GOALS = Math.max(1, DBConnection.configInt("IMPORT_BATCH_SIZE", 500));
+    // A chunk is also flushed once it holds this many milestones, so a few large goals keep batches bounded.
+    private static final int BATCH_MILESTONES = BATCH_GOALS * 4;
+    // goal_description and milestone_description are TEXT columns.
+    private static final int MAX_FIELD_CHARS = 65535;
+    private static final int MAX_CATEGORY_NAME_CHARS = 100;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_FLASHED_ERRORS = 5;
+    private static final String DEFAULT_STATUS = "Not Started";
+
+    private GoalDAO goalDAO;
+    private CategoryDAO categoryDAO;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        goalDAO = new GoalDAO();
+        categoryDAO = new CategoryDAO();
+    }
+
+    /**
+     * Handles HTTP GET requests: the upload form is on the dashboard.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @throws ServletException If a servlet-specific error occurs.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.sendRedirect(request.getContextPath() + "/goals");
+    }
+
+    /**
+     * Handles HTTP POST requests: imports the uploaded file.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @throws ServletException If a servlet-specific error occurs.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
+            LOGGER.log(Level.WARNING, "Unauthorized access to ImportServlet. Redirecting to login.jsp.");
+            response.sendRedirect(request.getContextPath() + "/login.jsp");
+            return;
+        }
+        boolean json = "json".equals(request.getParameter("format"));
+
+        Part file;
+        try {
+            file = request.getPart("file");
+        } catch (IllegalStateException e) {
+            // Larger than the multipart-config limits in web.xml.
+            fail(request, response, json, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "The file is too large to import.");
+            return;
+        } catch (ServletException e) {
+            fail(request, response, json, HttpServletResponse.SC_BAD_REQUEST, "Upload the CSV file as multipart/form-data.");
+            return;
+        }
+        if (file == null || file.getSize() == 0) {
+            fail(request, response, json, HttpServletResponse.SC_BAD_REQUEST, "Choose a CSV file to import.");
+            return;
+        }
+
+        Import result = new Import(currentUser.getUserId());
+        long start = System.nanoTime();
+        try (Reader in = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            result.read(new CsvReader(in, MAX_FIELD_CHARS));
+        } catch (IllegalArgumentException e) {
+            // An unclosed quote: the file is not valid CSV from there on; what was read before is kept.
+            result.flush();
+            result.reject(0, e.getMessage() + " The rest of the file was not imported");
+        } finally {
+            file.delete();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.log(Level.INFO, "Import for user ID {0}: {1} goals, {2} milestones, {3} categories created, {4} rows rejected in {5} ms.",
+                new Object[]{currentUser.getUserId(), result.goals, result.milestones, result.categoriesCreated, result.rejectedRows, millis});
+        if (json) {
+            writeReport(response, result);
+            return;
+        }
+        if (result.goals > 0 || result.rejectedRows == 0) {
+            Flash.success(request, response, "Imported " + result.goals + " goals and " + result.milestones + " milestones"
+                    + (result.categoriesCreated > 0 ? ", with " + result.categoriesCreated + " new categories." : "."));
+        }
+        if (result.rejectedRows > 0) {
+            StringBuilder message = new StringBuilder();
+            message.append(result.rejectedRows).append(result.rejectedRows == 1 ? " row was" : " rows were").append(" not imported: ");
+            int shown = Math.min(MAX_FLASHED_ERRORS, result.errors.size());
+            for (int i = 0; i < shown; i++) {
+                message.append(i > 0 ? "; " : "").append(result.errors.get(i).describe());
+            }
+            if (result.rejectedRows > shown) {
+                message.append("; and ").append(result.rejectedRows - shown).append(" more");
+            }
+            message.append('.');
+            Flash.error(request, response, message.toString());
+        }
+        response.sendRedirect(request.getContextPath() + "/goals");
+    }
+
+    private static void fail(HttpServletRequest request, HttpServletResponse response, boolean json, int status, String message)
+            throws IOException {
+        if (json) {
+            response.setStatus(status);
+            JsonWriter out = startJson(response);
+            out.beginObject().name("error").value(message).endObject().flush();
+        } else {
+            Flash.error(request, response, message);
+            response.sendRedirect(request.getContextPath() + "/goals");
+        }
+    }
+
+    private static void writeReport(HttpServletResponse response, Import result) throws IOException {
+        JsonWriter out = startJson(response);
+        out.beginObject()
+                .name("goals").value(result.goals)
+                .name("milestones").value(result.milestones)
+                .name("categoriesCreated").value(result.categoriesCreated)
+                .name("rejectedRows").value(result.rejectedRows)
+                .name("errors").beginArray();
+        for (RowError error : result.errors) {
+            out.beginObject().name("line").value(error.line).name("error").value(error.message).endObject();
+        }
+        out.endArray().endObject().flush();
+    }
+
+    private static JsonWriter startJson(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        return new JsonWriter(response.getWriter());
+    }
+
+    /**
+     * A rejected row; line 0 stands for the file as a whole.
+     */
+    private static final class RowError {
+        final long line;
+        final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        String describe() {
+            return line > 0 ? "line " + line + ": " + message : message;
+        }
+    }
+
+    /**
+     * The state of one import: the column layout, the goal being read, the chunk waiting to be
+     * inserted and the counts for the report.
+     */
+    private final class Import {
+
+        private final int userId;
+        private final Map<String, Integer> categoryIds = new HashMap<>();
+
+        private int goalDescription = -1;
+        private int categoryName = -1;
+        private int targetDate = -1;
+        private int goalStatus = -1;
+        private int goalKey = -1;
+        private int milestoneDescription = -1;
+        private int milestoneDueDate = -1;
+        private int milestoneStatus = -1;
+
+        private final List<Goal> chunk = new ArrayList<>();
+        // The line of each goal of the chunk, for errors.
+        private final List<Long> chunkLines = new ArrayList<>();
+        private int chunkMilestones;
+
+        // The goal the previous row belonged to: its key, its line, and the goal (null if it was rejected).
+        private String currentKey;
+        private long currentLine;
+        private Goal current;
+
+        int goals;
+        int milestones;
+        int categoriesCreated;
+        int rejectedRows;
+        final List<RowError> errors = new ArrayList<>();
+
+        Import(int userId) {
+            this.userId = userId;
+        }
+
+        void read(CsvReader csv) throws IOException {
+            String[] header = csv.next();
+            if (header == null || !columns(header)) {
+                reject(0, "the first line must be a header naming the columns, including goal_description");
+                return;
+            }
+            for (Category category : categoryDAO.getAllCategoriesByUserId(userId)) {
+                categoryIds.putIfAbsent(category.getCategoryName().toLowerCase(Locale.ROOT), category.getCategoryId());
+            }
+            while (true) {
+                String[] row;
+                try {
+                    row = csv.next();
+                } catch (CsvReader.RecordTooLargeException e) {
+                    reject(e.getLine(), "the row " + e.getReason());
+                    continue;
+                }
+                if (row == null) {
+                    break;
+                }
+                if (row.length == 1 && row[0].trim().isEmpty()) {
+                    continue; // Blank line
+                }
+                row(csv.getLine(), row);
+            }
+            flush();
+        }
+
+        // Finds the columns by name; false if the required one is missing.
+        private boolean columns(String[] header) {
+            for (int i = 0; i < header.length; i++) {
+                switch (header[i].trim().toLowerCase(Locale.ROOT)) {
+                    case "goal_description":
+                        goalDescription = i;
+                        break;
+                    case "category_name":
+                        categoryName = i;
+                        break;
+                    case "target_date":
+                        targetDate = i;
+                        break;
+                    case "goal_status":
+                        goalStatus = i;
+                        break;
+                    case "goal_id":
+                        goalKey = i;
+                        break;
+                    case "milestone_description":
+                        milestoneDescription = i;
+                        break;
+                    case "milestone_due_date":
+                        milestoneDueDate = i;
+                        break;
+                    case "milestone_status":
+                        milestoneStatus = i;
+                        break;
+                    default:
+                        break; // Ignored, e.g. the IDs and timestamps of an export
+                }
+            }
+            return goalDescription >= 0;
+        }
+
+        private void row(long line, String[] row) {
+            String key = goalKey >= 0 && !field(row, goalKey).isEmpty()
+                    ? "#" + field(row, goalKey)
+                    : field(row, goalDescription) + '\u0000' + field(row, categoryName) + '\u0000'
+                    + field(row, targetDate) + '\u0000' + field(row, goalStatus);
+            if (!key.equals(currentKey)) {
+                currentKey = key;
+                currentLine = line;
+                current = goal(line, row);
+            } else if (current == null) {
+                reject(line, "its goal on line " + currentLine + " was not imported");
+                return;
+            }
+            if (current != null && !field(row, milestoneDescription).isEmpty()) {
+                Milestone milestone = milestone(line, row);
+                if (milestone != null) {
+                    current.getMilestones().add(milestone);
+                    chunkMilestones++;
+                }
+            }
+        }
+
+        // Validates the goal columns and adds the goal to the chunk; null if the row is rejected.
+        private Goal goal(long line, String[] row) {
+            String description = field(row, goalDescription);
+            if (description.isEmpty()) {
+                reject(line, "goal_description is empty");
+                return null;
+            }
+            Date date;
+            try {
+                date = date(field(row, targetDate));
+            } catch (DateTimeParseException e) {
+                reject(line, "target_date must be a date as yyyy-MM-dd");
+                return null;
+            }
+            String status = status(field(row, goalStatus));
+            if (status == null) {
+                reject(line, "goal_status must be one of " + ApiServlet.STATUSES);
+                return null;
+            }
+            Integer categoryId = null;
+            String category = field(row, categoryName);
+            if (!category.isEmpty()) {
+                if (category.length() > MAX_CATEGORY_NAME_CHARS) {
+                    reject(line, "category_name is longer than " + MAX_CATEGORY_NAME_CHARS + " characters");
+                    return null;
+                }
+                categoryId = category(category);
+                if (categoryId == null) {
+                    reject(line, "the category could not be created");
+                    return null;
+                }
+            }
+
+            if (chunk.size() >= BATCH_GOALS || chunkMilestones >= BATCH_MILESTONES) {
+                flush();
+            }
+            Goal goal = new Goal(userId, categoryId, description, date, status);
+            goal.setMilestones(new ArrayList<>());
+            chunk.add(goal);
+            chunkLines.add(line);
+            return goal;
+        }
+
+        private Milestone milestone(long line, String[] row) {
+            Date dueDate;
+            try {
+                dueDate = date(field(row, milestoneDueDate));
+            } catch (DateTimeParseException e) {
+                reject(line, "milestone_due_date must be a date as yyyy-MM-dd");
+                return null;
+            }
+            String status = status(field(row, milestoneStatus));
+            if (status == null) {
+                reject(line, "milestone_status must be one of " + ApiServlet.STATUSES);
+                return null;
+            }
+            return new Milestone(0, field(row, milestoneDescription), dueDate, status);
+        }
+
+        // Resolves a category by name, creating it on first use; null if it cannot be created.
+        private Integer category(String name) {
+            String key = name.toLowerCase(Locale.ROOT);
+            Integer categoryId = categoryIds.get(key);
+            if (categoryId == null) {
+                Category created = new Category(userId, name);
+                if (!categoryDAO.addCategory(created) || created.getCategoryId() == 0) {
+                    return null;
+                }
+                categoryId = created.getCategoryId();
+                categoryIds.put(key, categoryId);
+                categoriesCreated++;
+            }
+            return categoryId;
+        }
+
+        /**
+         * Inserts the chunk. If the database rejects it, retries its goals one at a time so
+         * one bad goal does not cost the others.
+         */
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            if (goalDAO.importGoals(userId, chunk)) {
+                imported(chunk);
+            } else {
+                LOGGER.log(Level.WARNING, "Import chunk of {0} goals failed for user ID {1}; retrying goal by goal.",
+                        new Object[]{chunk.size(), userId});
+                for (int i = 0; i < chunk.size(); i++) {
+                    List<Goal> single = Collections.singletonList(chunk.get(i));
+                    if (goalDAO.importGoals(userId, single)) {
+                        imported(single);
+                    } else {
+                        reject(chunkLines.get(i), "the goal could not be saved");
+                    }
+                }
+            }
+            chunk.clear();
+            chunkLines.clear();
+            chunkMilestones = 0;
+        }
+
+        private void imported(List<Goal> inserted) {
+            for (Goal goal : inserted) {
+                goals++;
+                milestones += goal.getMilestones().size();
+            }
+        }
+
+        void reject(long line, String message) {
+            rejectedRows++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        private String field(String[] row, int column) {
+            return column >= 0 && column < row.length ? row[column].trim() : "";
+        }
+
+        // Strict: Date.valueOf would turn 2030-02-30 into March 2.
+        private Date date(String value) {
+            return value.isEmpty() ? null : Date.valueOf(LocalDate.parse(value));
+        }
+
+        // The status, DEFAULT_STATUS if empty, or null if it is not one of the known statuses.
+        private String status(String value) {
+            if (value.isEmpty()) {
+                return DEFAULT_STATUS;
+            }
+            return ApiServlet.STATUSES.contains(value) ? value : null;
+        }
+    }
+}
@@ -2,34 +2,45 @@ package com.mystrive.controller;
 
 import com.mystrive.model.User;
 import com.mystrive.dao.UserDAO;
+import com.mystrive.util.LogContext;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import javax.servlet.RequestDispatcher;
 
 public class LoginServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = Logger.getLogger(LoginServlet.class.getName());
+    // Seconds a client is asked to wait before retrying while password hashing is saturated.
+    private static final String BUSY_RETRY_AFTER_SECONDS = "1";
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
     private UserDAO userDAO;
+    private LoginThrottle throttle;
 
     // Initialize DAO when servlet is created
     @Override
     public void init() throws ServletException {
         super.init();
         userDAO = new UserDAO();
+        throttle = new LoginThrottle();
     }
 
     /**
      * Handles HTTP POST requests for user login.
-     * Authenticates user credentials via UserDAO, sets up session if successful,
+     * Authenticates user credentials via UserDAO, logs the user in if successful,
      * and redirects to dashboard or back to login with error.
+     * Repeated failures for a username or from an address are answered with 429 before
+     * any password is hashed (see LoginThrottle), and a saturated hashing pool with 503.
+     * Each attempt takes its throttle tokens up front; they are given back unless the credentials
+     * were checked and found wrong, so a database outage or a busy server locks nobody out.
      *
      * @param request The HttpServletRequest object.
      * @param response The HttpServletResponse object.
@@ -44,7 +55,9 @@ public class LoginServlet extends HttpServlet {
         String username = request.getParameter("username");
         String password = request.getParameter("password");
 
-        LOGGER.log(Level.INFO, "Attempting login for user: {0}", username);
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Attempting login for user: {0}", username);
+        }
 
         String errorMessage = null;
 
@@ -62,31 +75,53 @@ public class LoginServlet extends HttpServlet {
             return;
         }
 
+        String ip = request.getRemoteAddr();
+        long retryAfter = throttle.tryAcquire(username, ip);
+        if (retryAfter > 0) {
+            LOGGER.log(Level.WARNING, "Login for user {0} from {1} throttled after repeated failures.", new Object[]{username, ip});
+            response.setStatus(SC_TOO_MANY_REQUESTS);
+            response.setHeader("Retry-After", Long.toString(retryAfter));
+            request.setAttribute("errorMessage", "Too many failed login attempts. Please try again in " + retryAfter + " seconds.");
+            request.getRequestDispatcher("/login.jsp").forward(request, response);
+            return;
+        }
+
         User authenticatedUser = null;
+        boolean wrongCredentials = false;
         try {
-            authenticatedUser = userDAO.loginUser(username, password); // In a real app, compare hashed passwords!
+            authenticatedUser = userDAO.loginUser(username, password); // Verifies against the stored PBKDF2 hash
 
             if (authenticatedUser != null) {
-                // Login successful, set user in session
-                HttpSession session = request.getSession();
-                session.setAttribute("currentUser", authenticatedUser);
-                session.setMaxInactiveInterval(30 * 60); // Session timeout in seconds (30 minutes)
-                LOGGER.log(Level.INFO, "User {0} successfully logged in and session created.", username);
+                // Login successful: a session, or a signed token cookie with AUTH_MODE=token
+                CurrentUser.login(request, response, authenticatedUser);
+                LOGGER.log(Level.INFO, "User {0} successfully logged in.", username);
 
                 // Redirect to the dashboard (Goal List Page)
                 response.sendRedirect(request.getContextPath() + "/goals"); // Will be handled by GoalServlet doGet
             } else {
-                // Authentication failed
+                // Authentication failed; the throttle tokens taken above stay taken
+                wrongCredentials = true;
                 request.setAttribute("errorMessage", "Invalid username or password.");
                 RequestDispatcher dispatcher = request.getRequestDispatcher("/login.jsp");
                 dispatcher.forward(request, response);
                 LOGGER.log(Level.WARNING, "Login failed for user {0}: Invalid credentials.", username);
             }
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Password hashing saturated; rejecting login for user {0} with 503.", username);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", BUSY_RETRY_AFTER_SECONDS);
+            request.setAttribute("errorMessage", "The server is busy. Please try again in a moment.");
+            request.getRequestDispatcher("/login.jsp").forward(request, response);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "An unexpected error occurred during login for user " + username + ": " + e.getMessage(), e);
             request.setAttribute("errorMessage", "An unexpected error occurred. Please try again later.");
             RequestDispatcher dispatcher = request.getRequestDispatcher("/error.jsp"); // Generic error page
             dispatcher.forward(request, response);
+        } finally {
+            if (!wrongCredentials) {
+                // Success, a busy hasher or a database error says nothing about the password.
+                throttle.refund(username, ip);
+            }
         }
     }
 
@@ -103,13 +138,11 @@ public class LoginServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         // If a success message exists from registration, display it.
-        String successMessage = (String) request.getSession().getAttribute("successMessage");
-        if (successMessage != null) {
-            request.setAttribute("successMessage", successMessage);
-            request.getSession().removeAttribute("successMessage"); // Consume the message
-        }
+        Flash.consume(request, response);
         RequestDispatcher dispatcher = request.getRequestDispatcher("/login.jsp");
         dispatcher.forward(request, response);
-        LOGGER.log(Level.INFO, "Displaying login page.");
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Displaying login page.");
+        }
     }
 }
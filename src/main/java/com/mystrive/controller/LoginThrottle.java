@@ -0,0 +1,153 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.DBConnection;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets limiting failed logins, one per username and one per client IP address.
+ * Every attempt takes a token from both buckets before any password hashing, and is refused
+ * when either is empty; a successful login gets its tokens back, so only guessing is slowed
+ * down. Taking the tokens up front means concurrent guesses cannot all pass the check before
+ * the first failure is counted, so a guessing client cannot make the server hash more than
+ * the refill rate allows.
+ * <ul>
+ * <li>Per username: LOGIN_USER_BURST failures (default 5), refilled at LOGIN_USER_PER_MINUTE (default 5).</li>
+ * <li>Per IP: LOGIN_IP_BURST failures (default 20), refilled at LOGIN_IP_PER_MINUTE (default 30).
+ * Behind a proxy the IP is only meaningful with Tomcat's RemoteIpValve configured.</li>
+ * </ul>
+ * At most LOGIN_THROTTLE_MAX_KEYS (default 10000) buckets are kept; the least recently used
+ * is dropped when another is needed. Counts are per node.
+ */
+final class LoginThrottle {
+
+    private static final int MAX_KEYS = Math.max(100, DBConnection.configInt("LOGIN_THROTTLE_MAX_KEYS", 10000));
+
+    private final Limit userLimit = new Limit(DBConnection.configInt("LOGIN_USER_BURST", 5),
+            DBConnection.configInt("LOGIN_USER_PER_MINUTE", 5));
+    private final Limit ipLimit = new Limit(DBConnection.configInt("LOGIN_IP_BURST", 20),
+            DBConnection.configInt("LOGIN_IP_PER_MINUTE", 30));
+
+    // Guards the map and every bucket in it; held only for a few arithmetic operations.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+
+    /**
+     * Takes a token for a login attempt from the username's and the address's bucket.
+     *
+     * @param username The username entered.
+     * @param ip The client address.
+     * @return 0 if the attempt may go ahead, otherwise the number of seconds until it may;
+     *         nothing is taken in that case.
+     */
+    long tryAcquire(String username, String ip) {
+        long now = System.nanoTime();
+        long waitNanos;
+        lock.lock();
+        try {
+            Bucket user = bucket(userKey(username), userLimit, now);
+            Bucket address = bucket(ipKey(ip), ipLimit, now);
+            waitNanos = Math.max(user.waitNanos(), address.waitNanos());
+            if (waitNanos == 0) {
+                user.tokens -= 1;
+                address.tokens -= 1;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return waitNanos == 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+    }
+
+    /**
+     * Gives back the tokens of an attempt that did not fail, e.g. a successful login.
+     *
+     * @param username The username passed to {@link #tryAcquire}.
+     * @param ip The address passed to {@link #tryAcquire}.
+     */
+    void refund(String username, String ip) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            refund(buckets.get(userKey(username)), now);
+            refund(buckets.get(ipKey(ip)), now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock.
+    private Bucket bucket(String key, Limit limit, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket(limit, now);
+            buckets.put(key, bucket);
+        } else {
+            bucket.refill(now);
+        }
+        return bucket;
+    }
+
+    // Caller holds the lock. The bucket may have been dropped since the tokens were taken.
+    private static void refund(Bucket bucket, long now) {
+        if (bucket != null) {
+            bucket.refill(now);
+            bucket.tokens = Math.min(bucket.limit.capacity, bucket.tokens + 1);
+        }
+    }
+
+    private static String userKey(String username) {
+        return "u:" + (username == null ? "" : username.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static String ipKey(String ip) {
+        return "i:" + ip;
+    }
+
+    /**
+     * Size and refill rate of a kind of bucket.
+     */
+    private static final class Limit {
+        private final double capacity;
+        private final double tokensPerNano;
+
+        Limit(int burst, int perMinute) {
+            this.capacity = Math.max(1, burst);
+            this.tokensPerNano = Math.max(1, perMinute) / (double) TimeUnit.MINUTES.toNanos(1);
+        }
+    }
+
+    /**
+     * Login allowance for one key. Guarded by the throttle's lock.
+     */
+    private static final class Bucket {
+        private final Limit limit;
+        private double tokens;
+        private long updatedAt;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tokens = limit.capacity;
+            this.updatedAt = now;
+        }
+
+        long waitNanos() {
+            return tokens >= 1 ? 0 : (long) ((1 - tokens) / limit.tokensPerNano);
+        }
+
+        void refill(long now) {
+            tokens = Math.min(limit.capacity, tokens + (now - updatedAt) * limit.tokensPerNano);
+            updatedAt = now;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.mystrive.controller;
 
+import com.mystrive.util.LogContext;
+
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -7,7 +9,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
 public class LogoutServlet extends HttpServlet {
 
@@ -16,7 +17,7 @@ public class LogoutServlet extends HttpServlet {
 
     /**
      * Handles HTTP GET requests for user logout.
-     * Invalidates the user's session and redirects them to the login page.
+     * Logs the user out (see CurrentUser) and redirects them to the login page.
      *
      * @param request The HttpServletRequest object.
      * @param response The HttpServletResponse object.
@@ -27,16 +28,11 @@ public class LogoutServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        HttpSession session = request.getSession(false); // Get existing session, don't create a new one
-        if (session != null) {
-            String username = null;
-            if (session.getAttribute("currentUser") != null) {
-                username = ((com.mystrive.model.User) session.getAttribute("currentUser")).getUsername();
-            }
-            session.invalidate(); // Invalidate the session
-            LOGGER.log(Level.INFO, "User {0} logged out and session invalidated.", username != null ? username : "unknown");
-        } else {
-            LOGGER.log(Level.INFO, "Attempted logout but no active session found.");
+        String username = CurrentUser.logout(request, response); // Invalidates the session or deletes the token cookie
+        if (username != null) {
+            LOGGER.log(Level.INFO, "User {0} logged out.", username);
+        } else if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Attempted logout but nobody was logged in.");
         }
 
         // Redirect to the login page after logout
@@ -0,0 +1,174 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.Metrics;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records request metrics (see {@link Metrics}):
+ * <ul>
+ * <li>On the original request: total latency, database time and status code, per servlet and
+ * "action" parameter. Requests that go asynchronous (AsyncDbServlet) are recorded when they
+ * complete, with the database time the executor thread reported.</li>
+ * <li>On forwards and async dispatches to a JSP: the rendering time of that view.</li>
+ * </ul>
+ * Must be mapped with the REQUEST, FORWARD and ASYNC dispatchers and be async-supported,
+ * otherwise the servlets behind it lose their asynchronous mode.
+ */
+public class MetricsFilter implements Filter {
+
+    /**
+     * Request attribute holding the database time, in nanoseconds, of work done off the request thread.
+     */
+    static final String DB_NANOS_ATTRIBUTE = MetricsFilter.class.getName() + ".dbNanos";
+
+    // Only plain action names become label values; anything else is reported as "other".
+    private static final Pattern ACTION = Pattern.compile("[A-Za-z]{1,32}");
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // Nothing to configure.
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        if (!Metrics.ENABLED || !(servletRequest instanceof HttpServletRequest)) {
+            chain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            timeRequest(request, response, chain);
+        } else {
+            timeView(request, response, chain);
+        }
+    }
+
+    private void timeRequest(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        // Taken now: after an async dispatch the request reports the JSP's path instead.
+        String servlet = servletLabel(request);
+        long start = System.nanoTime();
+        Metrics.requestStarted();
+        Metrics.beginDbTiming();
+        boolean deferred = false;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long dbNanos = Metrics.endDbTiming();
+            if (request.isAsyncStarted()) {
+                try {
+                    request.getAsyncContext().addListener(new Completion(servlet, start, dbNanos), request, response);
+                    deferred = true;
+                } catch (IllegalStateException e) {
+                    // Already completed; record now.
+                }
+            }
+            if (!deferred) {
+                record(request, response, servlet, start, dbNanos);
+            }
+        }
+    }
+
+    private void timeView(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String path = request.getServletPath();
+        if (path == null || !path.endsWith(".jsp")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Metrics.VIEW_RENDER_SECONDS.labels(path).record(System.nanoTime() - start);
+        }
+    }
+
+    private static void record(HttpServletRequest request, HttpServletResponse response, String servlet,
+            long start, long dbNanos) {
+        long elapsed = System.nanoTime() - start;
+        Object offThread = request.getAttribute(DB_NANOS_ATTRIBUTE);
+        if (offThread instanceof Long) {
+            dbNanos += (Long) offThread;
+        }
+        String action = actionLabel(request);
+        Metrics.HTTP_REQUEST_SECONDS.labels(servlet, action).record(elapsed);
+        Metrics.HTTP_DB_SECONDS.labels(servlet, action).record(dbNanos);
+        Metrics.HTTP_RESPONSES.labels(servlet, Integer.toString(response.getStatus())).increment();
+        Metrics.requestFinished();
+    }
+
+    // The URL pattern of the application servlet, "static" for files, or the page itself for JSPs requested directly.
+    private static String servletLabel(HttpServletRequest request) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        if (mapping != null && "default".equals(mapping.getServletName())) {
+            return "static";
+        }
+        return request.getServletPath();
+    }
+
+    private static String actionLabel(HttpServletRequest request) {
+        String action = request.getParameter("action");
+        if (action == null || action.isEmpty()) {
+            return "default";
+        }
+        return ACTION.matcher(action).matches() ? action : "other";
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to release.
+    }
+
+    /**
+     * Records an asynchronous request once the container has completed it.
+     */
+    private static final class Completion implements AsyncListener {
+        private final String servlet;
+        private final long start;
+        private final long dbNanos;
+
+        Completion(String servlet, long start, long dbNanos) {
+            this.servlet = servlet;
+            this.start = start;
+            this.dbNanos = dbNanos;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record((HttpServletRequest) event.getSuppliedRequest(), (HttpServletResponse) event.getSuppliedResponse(),
+                    servlet, start, dbNanos);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // AsyncDbServlet answers the timeout and completes the request; recorded in onComplete.
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // Recorded in onComplete, which follows.
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted.
+        }
+    }
+}
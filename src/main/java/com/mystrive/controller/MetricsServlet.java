@@ -0,0 +1,54 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.Metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the application metrics in the Prometheus text format.
+ * When METRICS_TOKEN is set, scrapers must send "Authorization: Bearer &lt;token&gt;";
+ * without it the endpoint is open, so keep it off the public network.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String TOKEN = DBConnection.config("METRICS_TOKEN", "");
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!Metrics.ENABLED) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!TOKEN.isEmpty() && !authorized(request.getHeader("Authorization"))) {
+            response.setHeader("WWW-Authenticate", "Bearer");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-store");
+        Writer out = response.getWriter();
+        Metrics.writePrometheus(out);
+        out.flush();
+    }
+
+    // Constant-time comparison, so the token cannot be guessed byte by byte from response times.
+    private static boolean authorized(String header) {
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        byte[] supplied = header.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(supplied, TOKEN.getBytes(StandardCharsets.UTF_8));
+    }
+}
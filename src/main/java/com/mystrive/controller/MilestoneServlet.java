@@ -2,26 +2,28 @@ package com.mystrive.controller;
 
 import com.mystrive.model.Milestone;
 import com.mystrive.model.Goal;
-import com.mystrive.model.User;
+import com.mystrive.model.SessionPrincipal;
 import com.mystrive.dao.MilestoneDAO;
 import com.mystrive.dao.GoalDAO; // Needed to verify goal ownership and retrieve goal details
+import com.mystrive.util.LogContext;
 
 import java.io.IOException;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import javax.servlet.RequestDispatcher;
 
-public class MilestoneServlet extends HttpServlet {
+public class MilestoneServlet extends AsyncDbServlet {
 
     private static final long serialVersionUID = 1L;
     private static final Logger LOGGER = Logger.getLogger(MilestoneServlet.class.getName());
+    // Upper limit on the rows accepted by one bulk add request.
+    private static final int MAX_BULK_MILESTONES = 50;
     private MilestoneDAO milestoneDAO;
     private GoalDAO goalDAO; // To check goal ownership
 
@@ -48,14 +50,13 @@ public class MilestoneServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("currentUser") == null) {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
             LOGGER.log(Level.WARNING, "Unauthorized access to MilestoneServlet (GET). Redirecting to login.");
             response.sendRedirect(request.getContextPath() + "/login.jsp");
             return;
         }
 
-        User currentUser = (User) session.getAttribute("currentUser");
         int userId = currentUser.getUserId();
         String action = request.getParameter("action");
         String goalIdParam = request.getParameter("goalId");
@@ -64,7 +65,7 @@ public class MilestoneServlet extends HttpServlet {
         // Ensure goalId is present and valid for all milestone operations
         if (goalIdParam == null || goalIdParam.trim().isEmpty()) {
             LOGGER.log(Level.WARNING, "Missing goalId parameter for milestone operation (GET).");
-            session.setAttribute("errorMessage", "Goal ID is required to manage milestones.");
+            Flash.error(request, response, "Goal ID is required to manage milestones.");
             response.sendRedirect(request.getContextPath() + "/goals"); // Redirect to dashboard
             return;
         }
@@ -73,16 +74,22 @@ public class MilestoneServlet extends HttpServlet {
             goalId = Integer.parseInt(goalIdParam);
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Invalid goalId parameter format: " + goalIdParam, e);
-            session.setAttribute("errorMessage", "Invalid goal ID format.");
+            Flash.error(request, response, "Invalid goal ID format.");
             response.sendRedirect(request.getContextPath() + "/goals"); // Redirect to dashboard
             return;
         }
 
-        // Verify that the goal belongs to the current user
-        Goal parentGoal = goalDAO.getGoalById(goalId);
-        if (parentGoal == null || parentGoal.getUserId() != userId) {
+        // The goal details page is unchanged since the browser's copy: answer 304 without querying
+        boolean listAction = action == null || action.isEmpty() || "list".equals(action);
+        if (listAction && ConditionalGet.notModified(request, response, userId)) {
+            return;
+        }
+
+        // Load the goal with its milestones in one query; the query only matches goals owned by the current user
+        Goal parentGoal = goalDAO.getGoalWithMilestones(goalId, userId);
+        if (parentGoal == null) {
             LOGGER.log(Level.WARNING, "Unauthorized access to goal ID {0} for user {1} to manage milestones.", new Object[]{goalId, userId});
-            session.setAttribute("errorMessage", "Goal not found or unauthorized access.");
+            Flash.error(request, response, "Goal not found or unauthorized access.");
             response.sendRedirect(request.getContextPath() + "/goals");
             return;
         }
@@ -94,13 +101,12 @@ public class MilestoneServlet extends HttpServlet {
         try {
             if ("addForm".equals(action)) {
                 // Action: Display form to add a new milestone
-                LOGGER.log(Level.INFO, "Displaying add milestone form for goal ID: {0}", goalId);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Displaying add milestone form for goal ID: {0}", goalId);
+                }
                 request.setAttribute("milestone", new Milestone()); // Empty milestone object for the form
                 request.setAttribute("formTitle", "Add New Milestone");
-                
-                // Re-fetch milestones for the list part of goalDetails.jsp
-                List<Milestone> milestones = milestoneDAO.getAllMilestonesByGoalId(goalId);
-                request.setAttribute("milestones", milestones);
+                request.setAttribute("milestones", parentGoal.getMilestones());
                 
                 dispatcher = request.getRequestDispatcher("/goalDetails.jsp"); // Forward to goal details page
                 dispatcher.forward(request, response);
@@ -109,28 +115,34 @@ public class MilestoneServlet extends HttpServlet {
                 String milestoneIdParam = request.getParameter("milestoneId");
                 if (milestoneIdParam == null || milestoneIdParam.trim().isEmpty()) {
                     LOGGER.log(Level.WARNING, "Missing milestoneId parameter for editForm action.");
-                    session.setAttribute("errorMessage", "Milestone ID is required for editing.");
+                    Flash.error(request, response, "Milestone ID is required for editing.");
                     response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId);
                     return;
                 }
                 int milestoneId = Integer.parseInt(milestoneIdParam);
-                LOGGER.log(Level.INFO, "Displaying edit milestone form for ID: {0}, goal ID: {1}", new Object[]{milestoneId, goalId});
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Displaying edit milestone form for ID: {0}, goal ID: {1}", milestoneId, goalId);
+                }
 
-                Milestone existingMilestone = milestoneDAO.getMilestoneById(milestoneId);
+                // The goal's milestones are already loaded, so the one being edited is looked up in memory
+                Milestone existingMilestone = null;
+                for (Milestone candidate : parentGoal.getMilestones()) {
+                    if (candidate.getMilestoneId() == milestoneId) {
+                        existingMilestone = candidate;
+                        break;
+                    }
+                }
 
-                if (existingMilestone != null && existingMilestone.getGoalId() == goalId) {
+                if (existingMilestone != null) {
                     request.setAttribute("milestone", existingMilestone);
                     request.setAttribute("formTitle", "Edit Milestone");
-
-                    // Re-fetch milestones for the list part of goalDetails.jsp
-                    List<Milestone> milestones = milestoneDAO.getAllMilestonesByGoalId(goalId);
-                    request.setAttribute("milestones", milestones);
+                    request.setAttribute("milestones", parentGoal.getMilestones());
 
                     dispatcher = request.getRequestDispatcher("/goalDetails.jsp"); // Forward to goal details page
                     dispatcher.forward(request, response);
                 } else {
                     LOGGER.log(Level.WARNING, "Milestone ID {0} not found or not belonging to goal {1} for editing.", new Object[]{milestoneId, goalId});
-                    session.setAttribute("errorMessage", "Milestone not found or unauthorized access.");
+                    Flash.error(request, response, "Milestone not found or unauthorized access.");
                     response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId);
                 }
             } else if ("delete".equals(action)) {
@@ -138,46 +150,42 @@ public class MilestoneServlet extends HttpServlet {
                 String milestoneIdParam = request.getParameter("milestoneId");
                 if (milestoneIdParam == null || milestoneIdParam.trim().isEmpty()) {
                     LOGGER.log(Level.WARNING, "Missing milestoneId parameter for delete action.");
-                    session.setAttribute("errorMessage", "Milestone ID is required for deletion.");
+                    Flash.error(request, response, "Milestone ID is required for deletion.");
                     response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId);
                     return;
                 }
                 int milestoneId = Integer.parseInt(milestoneIdParam);
-                LOGGER.log(Level.INFO, "Attempting to delete milestone ID: {0} for goal ID: {1}", new Object[]{milestoneId, goalId});
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Attempting to delete milestone ID: {0} for goal ID: {1}", milestoneId, goalId);
+                }
 
-                boolean deleted = milestoneDAO.deleteMilestone(milestoneId, goalId);
+                boolean deleted = milestoneDAO.deleteMilestone(milestoneId, goalId, userId);
                 if (deleted) {
-                    LOGGER.log(Level.INFO, "Milestone ID {0} deleted successfully.", milestoneId);
-                    session.setAttribute("successMessage", "Milestone successfully deleted!");
+                    if (LogContext.isDebugEnabled(LOGGER)) {
+                        LogContext.debug(LOGGER, "Milestone ID {0} deleted successfully.", milestoneId);
+                    }
+                    Flash.success(request, response, "Milestone successfully deleted!");
                 } else {
                     LOGGER.log(Level.WARNING, "Failed to delete milestone ID {0} or unauthorized (not belonging to goal {1}).", new Object[]{milestoneId, goalId});
-                    session.setAttribute("errorMessage", "Failed to delete milestone or unauthorized.");
+                    Flash.error(request, response, "Failed to delete milestone or unauthorized.");
                 }
                 response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId); // Redirect back to goal details
             } else {
                 // Default action: List all milestones for the given goal (Goal Details Page)
-                LOGGER.log(Level.INFO, "Retrieving all milestones for goal ID: {0}", goalId);
-                List<Milestone> milestones = milestoneDAO.getAllMilestonesByGoalId(goalId);
-                request.setAttribute("milestones", milestones);
-
-                // Check for success/error messages from session (from doPost redirect)
-                String successMessage = (String) session.getAttribute("successMessage");
-                if (successMessage != null) {
-                    request.setAttribute("successMessage", successMessage);
-                    session.removeAttribute("successMessage");
-                }
-                String errorMessage = (String) session.getAttribute("errorMessage");
-                if (errorMessage != null) {
-                    request.setAttribute("errorMessage", errorMessage);
-                    session.removeAttribute("errorMessage");
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Retrieving all milestones for goal ID: {0}", goalId);
                 }
+                request.setAttribute("milestones", parentGoal.getMilestones());
+
+                // Success/error message from the redirect that brought the user here (Post-Redirect-Get).
+                Flash.consume(request, response);
                 
                 dispatcher = request.getRequestDispatcher("/goalDetails.jsp");
                 dispatcher.forward(request, response);
             }
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Invalid milestoneId parameter in MilestoneServlet (GET): " + e.getMessage(), e);
-            session.setAttribute("errorMessage", "Invalid milestone ID format.");
+            Flash.error(request, response, "Invalid milestone ID format.");
             response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId); // Redirect back to goal details
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "An unexpected error occurred in MilestoneServlet (GET): " + e.getMessage(), e);
@@ -202,14 +210,13 @@ public class MilestoneServlet extends HttpServlet {
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("currentUser") == null) {
+        SessionPrincipal currentUser = CurrentUser.get(request, response);
+        if (currentUser == null) {
             LOGGER.log(Level.WARNING, "Unauthorized access to MilestoneServlet (POST). Redirecting to login.");
             response.sendRedirect(request.getContextPath() + "/login.jsp");
             return;
         }
 
-        User currentUser = (User) session.getAttribute("currentUser");
         int userId = currentUser.getUserId();
 
         String action = request.getParameter("action");
@@ -224,7 +231,7 @@ public class MilestoneServlet extends HttpServlet {
             goalId = Integer.parseInt(goalIdParam);
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Invalid goalId parameter in MilestoneServlet (POST): " + goalIdParam, e);
-            session.setAttribute("errorMessage", "Invalid goal ID format.");
+            Flash.error(request, response, "Invalid goal ID format.");
             response.sendRedirect(request.getContextPath() + "/goals");
             return;
         }
@@ -233,12 +240,17 @@ public class MilestoneServlet extends HttpServlet {
         Goal parentGoal = goalDAO.getGoalById(goalId);
         if (parentGoal == null || parentGoal.getUserId() != userId) {
             LOGGER.log(Level.WARNING, "Unauthorized attempt to manage milestones for goal ID {0} by user {1}.", new Object[]{goalId, userId});
-            session.setAttribute("errorMessage", "Goal not found or unauthorized access.");
+            Flash.error(request, response, "Goal not found or unauthorized access.");
             response.sendRedirect(request.getContextPath() + "/goals");
             return;
         }
         request.setAttribute("goal", parentGoal); // Ensure parent goal is available if forwarding back to JSP
 
+        if ("bulkAdd".equals(action)) {
+            handleBulkAdd(request, response, parentGoal);
+            return;
+        }
+
         String errorMessage = null;
 
         // Server-side validation
@@ -293,27 +305,31 @@ public class MilestoneServlet extends HttpServlet {
         try {
             if ("add".equals(action)) {
                 // Add new milestone
-                LOGGER.log(Level.INFO, "Adding new milestone for goal ID: {0}", goalId);
-                operationSuccess = milestoneDAO.addMilestone(milestone);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Adding new milestone for goal ID: {0}", goalId);
+                }
+                operationSuccess = milestoneDAO.addMilestone(milestone, userId);
                 if (operationSuccess) {
-                    session.setAttribute("successMessage", "Milestone successfully added!");
+                    Flash.success(request, response, "Milestone successfully added!");
                 } else {
-                    session.setAttribute("errorMessage", "Failed to add new milestone. Please try again.");
+                    Flash.error(request, response, "Failed to add new milestone. Please try again.");
                 }
             } else if ("update".equals(action)) {
                 // Update existing milestone
                 int milestoneId = Integer.parseInt(milestoneIdStr);
                 milestone.setMilestoneId(milestoneId); // Set the milestone ID for update
-                LOGGER.log(Level.INFO, "Updating milestone ID: {0} for goal ID: {1}", new Object[]{milestoneId, goalId});
-                operationSuccess = milestoneDAO.updateMilestone(milestone);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Updating milestone ID: {0} for goal ID: {1}", milestoneId, goalId);
+                }
+                operationSuccess = milestoneDAO.updateMilestone(milestone, userId);
                 if (operationSuccess) {
-                    session.setAttribute("successMessage", "Milestone successfully updated!");
+                    Flash.success(request, response, "Milestone successfully updated!");
                 } else {
-                    session.setAttribute("errorMessage", "Failed to update milestone. Milestone not found or unauthorized.");
+                    Flash.error(request, response, "Failed to update milestone. Milestone not found or unauthorized.");
                 }
             } else {
                 LOGGER.log(Level.WARNING, "Unknown action '{0}' requested in MilestoneServlet (POST).", action);
-                session.setAttribute("errorMessage", "Invalid action for milestone operation.");
+                Flash.error(request, response, "Invalid action for milestone operation.");
             }
 
             // Redirect back to the goal details page using Post-Redirect-Get pattern
@@ -321,7 +337,7 @@ public class MilestoneServlet extends HttpServlet {
 
         } catch (NumberFormatException e) {
             LOGGER.log(Level.SEVERE, "Invalid milestoneId parameter in MilestoneServlet (POST) for update: " + e.getMessage(), e);
-            session.setAttribute("errorMessage", "Invalid milestone ID format for update.");
+            Flash.error(request, response, "Invalid milestone ID format for update.");
             // To ensure the page displays correctly, redirect back to goal details or generic error
             response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId);
         } catch (Exception e) {
@@ -331,4 +347,86 @@ public class MilestoneServlet extends HttpServlet {
             dispatcher.forward(request, response);
         }
     }
+
+    /**
+     * Adds several milestones to one goal from a single form post ("bulkAdd" action).
+     * The form repeats milestoneDescription, dueDate and status once per row; rows left
+     * completely empty are ignored. All rows are validated before anything is stored, and
+     * the valid set is inserted in one transaction, so either every row is added or none.
+     *
+     * @param request The HttpServletRequest object.
+     * @param response The HttpServletResponse object.
+     * @param parentGoal The goal, already checked to belong to the current user.
+     * @throws ServletException If a servlet-specific error occurs.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void handleBulkAdd(HttpServletRequest request, HttpServletResponse response, Goal parentGoal)
+            throws ServletException, IOException {
+        int goalId = parentGoal.getGoalId();
+        String[] descriptions = request.getParameterValues("milestoneDescription");
+        String[] dueDates = request.getParameterValues("dueDate");
+        String[] statuses = request.getParameterValues("status");
+
+        String errorMessage = null;
+        List<Milestone> milestones = new ArrayList<>();
+        if (descriptions == null || dueDates == null || statuses == null
+                || descriptions.length != dueDates.length || descriptions.length != statuses.length) {
+            errorMessage = "Every milestone row needs a description, due date and status.";
+        } else {
+            for (int i = 0; i < descriptions.length; i++) {
+                String description = descriptions[i] == null ? "" : descriptions[i].trim();
+                String dueDateStr = dueDates[i] == null ? "" : dueDates[i].trim();
+                String status = statuses[i] == null ? "" : statuses[i].trim();
+                if (description.isEmpty() && dueDateStr.isEmpty()) {
+                    continue; // Unused row of the form
+                }
+
+                Milestone milestone = new Milestone();
+                milestone.setGoalId(goalId);
+                milestone.setMilestoneDescription(description);
+                milestone.setStatus(status);
+                milestones.add(milestone);
+
+                if (errorMessage != null) {
+                    continue; // Keep collecting rows so the form can be shown again as entered
+                }
+                if (description.isEmpty() || dueDateStr.isEmpty() || status.isEmpty()) {
+                    errorMessage = "Row " + (i + 1) + ": milestone description, due date, and status are required.";
+                    continue;
+                }
+                try {
+                    milestone.setDueDate(Date.valueOf(dueDateStr));
+                } catch (IllegalArgumentException e) {
+                    errorMessage = "Row " + (i + 1) + ": invalid due date format. Please use YYYY-MM-DD.";
+                }
+            }
+            if (errorMessage == null && milestones.isEmpty()) {
+                errorMessage = "Enter at least one milestone.";
+            } else if (errorMessage == null && milestones.size() > MAX_BULK_MILESTONES) {
+                errorMessage = "At most " + MAX_BULK_MILESTONES + " milestones can be added at once.";
+            }
+        }
+
+        if (errorMessage != null) {
+            request.setAttribute("errorMessage", errorMessage);
+            request.setAttribute("bulkMilestones", milestones); // So the bulk form can display what was entered
+            request.setAttribute("milestones", milestoneDAO.getAllMilestonesByGoalId(goalId));
+            RequestDispatcher dispatcher = request.getRequestDispatcher("/goalDetails.jsp");
+            dispatcher.forward(request, response);
+            LOGGER.log(Level.WARNING, "Bulk milestone POST failed due to validation errors for goal ID {0}: {1}", new Object[]{goalId, errorMessage});
+            return;
+        }
+
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Adding {0} milestones in bulk for goal ID: {1}", milestones.size(), goalId);
+        }
+        if (milestoneDAO.addMilestones(milestones, parentGoal.getUserId())) {
+            Flash.success(request, response, milestones.size() == 1
+                    ? "Milestone successfully added!"
+                    : milestones.size() + " milestones successfully added!");
+        } else {
+            Flash.error(request, response, "Failed to add milestones. Please try again.");
+        }
+        response.sendRedirect(request.getContextPath() + "/milestones?action=list&goalId=" + goalId);
+    }
 }
@@ -2,8 +2,10 @@ package com.mystrive.controller;
 
 import com.mystrive.model.User;
 import com.mystrive.dao.UserDAO;
+import com.mystrive.util.LogContext;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletException;
@@ -45,7 +47,9 @@ public class RegisterServlet extends HttpServlet {
         String confirmPassword = request.getParameter("confirmPassword");
         String email = request.getParameter("email");
 
-        LOGGER.log(Level.INFO, "Attempting to register user: {0} with email: {1}", new Object[]{username, email});
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Attempting to register user: {0} with email: {1}", username, email);
+        }
 
         String errorMessage = null;
 
@@ -71,17 +75,20 @@ public class RegisterServlet extends HttpServlet {
         }
 
         // Create a User object
-        User newUser = new User(username, password, email); // In a real app, hash the password before storing!
+        User newUser = new User(username, password, email); // UserDAO stores a hash of the password
 
         // Attempt to register the user using DAO
         try {
             boolean isRegistered = userDAO.registerUser(newUser);
 
             if (isRegistered) {
-                // Registration successful, redirect to login page with a success message
-                request.getSession().setAttribute("successMessage", "Registration successful! Please log in.");
-                response.sendRedirect(request.getContextPath() + "/login.jsp");
-                LOGGER.log(Level.INFO, "User {0} successfully registered and redirected to login.", username);
+                // Registration successful, redirect to login page with a success message.
+                // Through LoginServlet, which shows the message; login.jsp on its own would not.
+                Flash.success(request, response, "Registration successful! Please log in.");
+                response.sendRedirect(request.getContextPath() + "/login");
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "User {0} successfully registered and redirected to login.", username);
+                }
             } else {
                 // Registration failed (e.g., username/email already exists, DB error)
                 request.setAttribute("errorMessage", "Registration failed. Username or Email might already be taken.");
@@ -89,6 +96,13 @@ public class RegisterServlet extends HttpServlet {
                 dispatcher.forward(request, response);
                 LOGGER.log(Level.WARNING, "Registration failed for user {0}: possible duplicate username/email.", username);
             }
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Password hashing saturated; rejecting registration for user {0} with 503.", username);
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            request.setAttribute("errorMessage", "The server is busy. Please try again in a moment.");
+            RequestDispatcher dispatcher = request.getRequestDispatcher("/register.jsp");
+            dispatcher.forward(request, response);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "An unexpected error occurred during registration for user " + username + ": " + e.getMessage(), e);
             request.setAttribute("errorMessage", "An unexpected error occurred. Please try again later.");
@@ -111,6 +125,8 @@ public class RegisterServlet extends HttpServlet {
             throws ServletException, IOException {
         RequestDispatcher dispatcher = request.getRequestDispatcher("/register.jsp");
         dispatcher.forward(request, response);
-        LOGGER.log(Level.INFO, "Displaying registration page.");
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "Displaying registration page.");
+        }
     }
 }
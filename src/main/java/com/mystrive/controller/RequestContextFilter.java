@@ -0,0 +1,60 @@
+package com.mystrive.controller;
+
+import com.mystrive.util.LogContext;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Gives every request a correlation ID for its log lines (see {@link LogContext}).
+ * The ID comes from the X-Request-Id header when a proxy already set a sensible one,
+ * and is echoed in the response so a user's report can be matched to the log.
+ * Must be mapped with the REQUEST and ASYNC dispatchers and be async-supported.
+ */
+public class RequestContextFilter implements Filter {
+
+    // Accepted incoming IDs; anything else is replaced, so a client cannot inject text into the log.
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9._-]{8,64}");
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // Nothing to configure.
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        LogContext previous = LogContext.current();
+        if (servletRequest.getDispatcherType() == DispatcherType.REQUEST) {
+            String incoming = servletRequest instanceof HttpServletRequest
+                    ? ((HttpServletRequest) servletRequest).getHeader(LogContext.HEADER) : null;
+            LogContext context = LogContext.start(incoming != null && VALID_ID.matcher(incoming).matches() ? incoming : null);
+            servletRequest.setAttribute(LogContext.ATTRIBUTE, context);
+            if (servletResponse instanceof HttpServletResponse) {
+                ((HttpServletResponse) servletResponse).setHeader(LogContext.HEADER, context.getRequestId());
+            }
+        } else {
+            Object context = servletRequest.getAttribute(LogContext.ATTRIBUTE);
+            LogContext.attach(context instanceof LogContext ? (LogContext) context : null);
+        }
+        try {
+            chain.doFilter(servletRequest, servletResponse);
+        } finally {
+            LogContext.attach(previous);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to release.
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+import com.mystrive.model.Category;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process cache of each user's categories, used by {@link CategoryDAO}.
+ * An entry holds the user's category list (in display order) and an id index used for
+ * ownership checks. Entries are dropped by the DAO's write methods and evicted LRU once
+ * more than maxUsers users are cached. With a TTL an entry is also reloaded once it is that
+ * old, for when other nodes write the same users' categories (see CurrentUser).
+ * Cached Category objects are shared between requests and must be treated as read-only.
+ * Hit-rate statistics are published over JMX as "com.mystrive:type=CategoryCache".
+ */
+public class CategoryCache implements CategoryCacheMXBean {
+
+    private final int maxUsers;
+    // 0 keeps entries until they are invalidated or evicted.
+    private final long ttlNanos;
+    private final Map<Integer, UserCategories> entries;
+    // Guards entries; a lock rather than synchronized so a waiting virtual thread releases its carrier.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Bumped on every invalidation; a load that raced with a write is not cached.
+    private final AtomicLong invalidationStamp = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CategoryCache(int maxUsers, long ttlMillis) {
+        this.maxUsers = maxUsers;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.entries = new LinkedHashMap<Integer, UserCategories>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserCategories> eldest) {
+                if (size() > CategoryCache.this.maxUsers) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached categories for a user, or null on a miss.
+     *
+     * @param userId The user ID.
+     * @return The cached entry, or null.
+     */
+    UserCategories get(int userId) {
+        UserCategories cached;
+        lock.lock();
+        try {
+            cached = entries.get(userId);
+            if (cached != null && ttlNanos > 0 && System.nanoTime() - cached.loadedNanos >= ttlNanos) {
+                entries.remove(userId);
+                cached = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the stamp to pass to {@link #put(int, List, long)} for a load starting now.
+     *
+     * @return The current invalidation stamp.
+     */
+    long stamp() {
+        return invalidationStamp.get();
+    }
+
+    /**
+     * Caches a freshly loaded category list unless an invalidation happened since the load began.
+     *
+     * @param userId The user ID.
+     * @param categories The categories read from the database.
+     * @param stamp The value of {@link #stamp()} taken before the load.
+     * @return The entry wrapping the categories (cached or not).
+     */
+    UserCategories put(int userId, List<Category> categories, long stamp) {
+        UserCategories loaded = new UserCategories(categories);
+        lock.lock();
+        try {
+            if (invalidationStamp.get() == stamp) {
+                entries.put(userId, loaded);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops a user's entry after one of their categories was added, renamed or deleted.
+     *
+     * @param userId The user ID.
+     */
+    void invalidate(int userId) {
+        lock.lock();
+        try {
+            invalidationStamp.incrementAndGet();
+            entries.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+        invalidations.increment();
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * One user's categories plus an id index for in-memory ownership checks.
+     */
+    static final class UserCategories {
+        private final List<Category> categories;
+        private final Map<Integer, Category> byId;
+        private final long loadedNanos = System.nanoTime();
+
+        UserCategories(List<Category> categories) {
+            this.categories = Collections.unmodifiableList(categories);
+            Map<Integer, Category> index = new HashMap<>();
+            for (Category category : categories) {
+                index.put(category.getCategoryId(), category);
+            }
+            this.byId = index;
+        }
+
+        List<Category> getCategories() {
+            return categories;
+        }
+
+        Category getById(int categoryId) {
+            return byId.get(categoryId);
+        }
+    }
+}
@@ -6,14 +6,14 @@ package com.mystrive.dao;
 
 import com.mystrive.model.Category;
 import com.mystrive.util.DBConnection;
+import com.mystrive.util.DataVersions;
+import com.mystrive.util.JmxSupport;
+import com.mystrive.util.LogContext;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,193 +21,165 @@ public class CategoryDAO {
 
     private static final Logger LOGGER = Logger.getLogger(CategoryDAO.class.getName());
 
+    private static final JdbcTemplate JDBC = JdbcTemplate.JDBC;
+
+    // All categories of a user, by name.
+    static final String SQL_SELECT_BY_USER = "SELECT category_id, user_id, category_name, created_at FROM categories WHERE user_id = ? ORDER BY category_name ASC";
+
+    // Shared by every CategoryDAO instance; each servlet creates its own DAO. With token logins another
+    // node may change a user's categories, so entries then expire after a few seconds.
+    private static final CategoryCache CACHE = new CategoryCache(DBConnection.configInt("CATEGORY_CACHE_MAX_USERS", 10000),
+            TimeUnit.SECONDS.toMillis(DBConnection.configLong("CATEGORY_CACHE_TTL_SECONDS", DBConnection.isTokenAuth() ? 5 : 0)));
+
+    static {
+        JmxSupport.register("CategoryCache", CACHE);
+    }
+
+    /**
+     * Returns the category cache, e.g. to report its hit rate.
+     *
+     * @return The shared category cache.
+     */
+    public static CategoryCache getCache() {
+        return CACHE;
+    }
+
     public boolean addCategory(Category category) {
         String SQL_INSERT = "INSERT INTO categories (user_id, category_name) VALUES (?, ?)";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
-                preparedStatement.setInt(1, category.getUserId());
-                preparedStatement.setString(2, category.getCategoryName());
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    // Retrieve auto-generated categoryId
-                    ResultSet rs = preparedStatement.getGeneratedKeys();
-                    if (rs.next()) {
-                        category.setCategoryId(rs.getInt(1));
-                    }
-                    LOGGER.log(Level.INFO, "Category '{0}' added successfully for user ID {1}.",
-                            new Object[]{category.getCategoryName(), category.getUserId()});
-                }
+            Integer categoryId = JDBC.insert(SQL_INSERT, category.getUserId(), category.getCategoryName());
+            if (categoryId != null) {
+                category.setCategoryId(categoryId);
+            }
+            CACHE.invalidate(category.getUserId());
+            DataVersions.bump(category.getUserId());
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Category '{0}' added successfully for user ID {1}.",
+                        category.getCategoryName(), category.getUserId());
             }
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error adding category: " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after adding category.", e);
-            }
+            return false;
         }
-        return success;
     }
 
+    /**
+     * Returns a user's categories ordered by name, served from the category cache when possible.
+     * The returned list is read-only.
+     *
+     * @param userId The user ID.
+     * @return The user's categories (empty if none or on a database error).
+     */
     public List<Category> getAllCategoriesByUserId(int userId) {
-        List<Category> categories = new ArrayList<>();
-        String SQL_SELECT = "SELECT category_id, user_id, category_name, created_at FROM categories WHERE user_id = ? ORDER BY category_name ASC";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
+        return loadUserCategories(userId).getCategories();
+    }
+
+    /**
+     * Returns a category only if it belongs to the given user. Answered from the category cache,
+     * so ownership checks on goal forms and filters no longer cost a query.
+     *
+     * @param categoryId The category ID.
+     * @param userId The user who must own the category.
+     * @return The category, or null if it does not exist or belongs to someone else.
+     */
+    public Category getCategoryByIdForUser(int categoryId, int userId) {
+        return loadUserCategories(userId).getById(categoryId);
+    }
+
+    private CategoryCache.UserCategories loadUserCategories(int userId) {
+        CategoryCache.UserCategories cached = CACHE.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = CACHE.stamp();
+        List<Category> categories = queryCategoriesByUserId(userId);
+        if (categories == null) {
+            // Database error: answer with an empty list but do not cache it.
+            return new CategoryCache.UserCategories(new ArrayList<>());
+        }
+        return CACHE.put(userId, categories, stamp);
+    }
 
+    private List<Category> queryCategoriesByUserId(int userId) {
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, userId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                while (resultSet.next()) {
-                    Category category = new Category();
-                    category.setCategoryId(resultSet.getInt("category_id"));
-                    category.setUserId(resultSet.getInt("user_id"));
-                    category.setCategoryName(resultSet.getString("category_name"));
-                    category.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    categories.add(category);
-                }
-                LOGGER.log(Level.INFO, "{0} categories retrieved for user ID {1}.",
-                        new Object[]{categories.size(), userId});
+            List<Category> categories = JDBC.query(SQL_SELECT_BY_USER, CATEGORY, userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "{0} categories retrieved for user ID {1}.", categories.size(), userId);
             }
+            return categories;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving categories for user ID " + userId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving categories.", e);
-            }
+            return null;
         }
-        return categories;
     }
 
     public Category getCategoryById(int categoryId) {
         String SQL_SELECT = "SELECT category_id, user_id, category_name, created_at FROM categories WHERE category_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        Category category = null;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, categoryId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                if (resultSet.next()) {
-                    category = new Category();
-                    category.setCategoryId(resultSet.getInt("category_id"));
-                    category.setUserId(resultSet.getInt("user_id"));
-                    category.setCategoryName(resultSet.getString("category_name"));
-                    category.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    LOGGER.log(Level.INFO, "Category with ID {0} retrieved successfully.", categoryId);
-                } else {
-                    LOGGER.log(Level.WARNING, "Category with ID {0} not found.", categoryId);
-                }
+            Category category = JDBC.queryForObject(SQL_SELECT, CATEGORY, categoryId);
+            if (category == null) {
+                LOGGER.log(Level.WARNING, "Category with ID {0} not found.", categoryId);
+            } else if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Category with ID {0} retrieved successfully.", categoryId);
             }
+            return category;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving category by ID " + categoryId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving category by ID.", e);
-            }
+            return null;
         }
-        return category;
     }
 
     public boolean updateCategory(Category category) {
         String SQL_UPDATE = "UPDATE categories SET category_name = ? WHERE category_id = ? AND user_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_UPDATE);
-                preparedStatement.setString(1, category.getCategoryName());
-                preparedStatement.setInt(2, category.getCategoryId());
-                preparedStatement.setInt(3, category.getUserId()); // Ensure user owns the category
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "Category ID {0} updated successfully.", category.getCategoryId());
-                } else {
-                    LOGGER.log(Level.WARNING, "Category ID {0} not found or not owned by user {1} for update.",
-                            new Object[]{category.getCategoryId(), category.getUserId()});
+            // The user_id condition ensures the user owns the category.
+            int rowsAffected = JDBC.update(SQL_UPDATE, category.getCategoryName(), category.getCategoryId(), category.getUserId());
+            if (rowsAffected > 0) {
+                CACHE.invalidate(category.getUserId());
+                DataVersions.bump(category.getUserId()); // Category names appear on the dashboard
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Category ID {0} updated successfully.", category.getCategoryId());
                 }
+                return true;
             }
+            LOGGER.log(Level.WARNING, "Category ID {0} not found or not owned by user {1} for update.",
+                    new Object[]{category.getCategoryId(), category.getUserId()});
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error updating category ID " + category.getCategoryId() + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after updating category.", e);
-            }
         }
-        return success;
+        return false;
     }
 
     public boolean deleteCategory(int categoryId, int userId) {
         String SQL_DELETE = "DELETE FROM categories WHERE category_id = ? AND user_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_DELETE);
-                preparedStatement.setInt(1, categoryId);
-                preparedStatement.setInt(2, userId);
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "Category ID {0} deleted successfully for user ID {1}.",
-                            new Object[]{categoryId, userId});
-                } else {
-                    LOGGER.log(Level.WARNING, "Category ID {0} not found or not owned by user {1} for deletion.",
-                            new Object[]{categoryId, userId});
+            int rowsAffected = JDBC.update(SQL_DELETE, categoryId, userId);
+            if (rowsAffected > 0) {
+                CACHE.invalidate(userId);
+                DataVersions.bump(userId);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Category ID {0} deleted successfully for user ID {1}.", categoryId, userId);
                 }
+                return true;
             }
+            LOGGER.log(Level.WARNING, "Category ID {0} not found or not owned by user {1} for deletion.",
+                    new Object[]{categoryId, userId});
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error deleting category ID " + categoryId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after deleting category.", e);
-            }
         }
-        return success;
+        return false;
     }
+
+    /**
+     * Maps a categories row.
+     */
+    static final RowMapper<Category> CATEGORY = RowMapper.of((resultSet, columns) -> {
+        Category category = new Category();
+        category.setCategoryId(resultSet.getInt(columns[0]));
+        category.setUserId(resultSet.getInt(columns[1]));
+        category.setCategoryName(resultSet.getString(columns[2]));
+        category.setCreatedAt(resultSet.getTimestamp(columns[3]));
+        return category;
+    }, "category_id", "user_id", "category_name", "created_at");
 }
@@ -0,0 +1,413 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+import com.mystrive.model.DashboardSummary;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process aggregate behind the dashboard summary, used by {@link GoalDAO} and {@link MilestoneDAO}.
+ * For each cached user it keeps one small record per goal (status, target date, milestone
+ * counts) and running totals over them. The DAOs' write methods update the records and the
+ * totals in place, so the summary is never rebuilt by scanning goals and milestones; a user
+ * is loaded with one grouped query the first time their dashboard is shown and evicted LRU
+ * once more than maxUsers are cached. With a TTL a user is also reloaded once the entry is that
+ * old, for when other nodes write the same users' goals (see CurrentUser). A read costs a copy
+ * of the status counts, except the first read of a user after the date rolls over, which
+ * recounts the overdue and due-soon goals.
+ * <p>
+ * A write and a load of the same user can overlap: the load's query may or may not see the
+ * write. Each user therefore has a write version (striped, so a few thousand counters serve
+ * every user). A writer calls {@link #beginWrite} before its transaction commits and passes
+ * the ticket to the method recording the write; recording moves the version again. A load
+ * is only cached if the version did not move while it ran, and a write is only applied to an
+ * entry loaded before the write began; an entry loaded since is dropped, as it may already
+ * include the write.
+ * Statistics are published over JMX as "com.mystrive:type=DashboardSummaryCache".
+ */
+public class DashboardSummaryCache implements DashboardSummaryCacheMXBean {
+
+    // Display order of the status counts; the same statuses the goal form offers.
+    static final List<String> STATUSES = Collections.unmodifiableList(Arrays.asList(
+            "Not Started", "In Progress", "Completed", "On Hold", "Cancelled"));
+    static final String COMPLETED = "Completed";
+    private static final String CANCELLED = "Cancelled";
+    private static final int DUE_SOON_DAYS = 7;
+
+    // Users sharing a stripe only ever cost each other a load that is not cached.
+    private static final int VERSION_STRIPES = 4096;
+
+    private final int maxUsers;
+    // 0 keeps entries until they are invalidated or evicted.
+    private final long ttlNanos;
+    private final Map<Integer, UserGoals> entries;
+    // Guards entries and the records in them. See DbExecutor for why request-path locks are not synchronized.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public DashboardSummaryCache(int maxUsers, long ttlMillis) {
+        this.maxUsers = maxUsers;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.entries = new LinkedHashMap<Integer, UserGoals>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserGoals> eldest) {
+                if (size() > DashboardSummaryCache.this.maxUsers) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a user's summary as of today, or null if the user is not cached.
+     *
+     * @param userId The user ID.
+     * @return The summary, or null on a miss.
+     */
+    DashboardSummary get(int userId) {
+        UserGoals cached;
+        lock.lock();
+        try {
+            cached = entries.get(userId);
+            if (cached != null && ttlNanos > 0 && System.nanoTime() - cached.loadedNanos >= ttlNanos) {
+                entries.remove(userId);
+                cached = null;
+            }
+            if (cached != null) {
+                hits.increment();
+                return cached.summary(LocalDate.now());
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the stamp to pass to {@link #put} for a load of a user starting now.
+     *
+     * @param userId The user about to be loaded.
+     * @return The user's current write version.
+     */
+    long stamp(int userId) {
+        return versions.get(stripe(userId));
+    }
+
+    /**
+     * Caches a freshly loaded user unless a write of the user began or was recorded since the load began.
+     *
+     * @param userId The user ID.
+     * @param goals The user's goal records, keyed by goal ID.
+     * @param stamp The value of {@link #stamp(int)} taken before the load.
+     * @return The user's summary (whether cached or not).
+     */
+    DashboardSummary put(int userId, Map<Integer, GoalRecord> goals, long stamp) {
+        UserGoals loaded = new UserGoals(goals, stamp);
+        lock.lock();
+        try {
+            if (versions.get(stripe(userId)) == stamp) {
+                entries.put(userId, loaded);
+            }
+            return loaded.summary(LocalDate.now());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Announces a write of a user's goals or milestones. Must be called before the write
+     * commits, so a load whose query might see the write is not cached as if it did not.
+     *
+     * @param userId The owner of the goals written.
+     * @return The ticket to pass to the method recording the write.
+     */
+    long beginWrite(int userId) {
+        return versions.incrementAndGet(stripe(userId));
+    }
+
+    /**
+     * Records an added or edited goal. Milestone counts of an existing goal are kept.
+     */
+    void goalSaved(int userId, long ticket, int goalId, String status, Date targetDate) {
+        lock.lock();
+        try {
+            UserGoals user = entryBefore(userId, ticket);
+            if (user == null) {
+                return;
+            }
+            GoalRecord existing = user.goals.get(goalId);
+            user.put(goalId, new GoalRecord(status, targetDate,
+                    existing == null ? 0 : existing.milestoneTotal, existing == null ? 0 : existing.milestoneCompleted));
+        } finally {
+            lock.unlock();
+        }
+        updates.increment();
+    }
+
+    /**
+     * Records a status change of a goal.
+     */
+    void goalStatusChanged(int userId, long ticket, int goalId, String status) {
+        lock.lock();
+        try {
+            UserGoals user = entryBefore(userId, ticket);
+            GoalRecord existing = user == null ? null : user.goals.get(goalId);
+            if (existing == null) {
+                return;
+            }
+            user.put(goalId, new GoalRecord(status, existing.targetDate, existing.milestoneTotal, existing.milestoneCompleted));
+        } finally {
+            lock.unlock();
+        }
+        updates.increment();
+    }
+
+    /**
+     * Records a deleted goal (its milestones go with it).
+     */
+    void goalDeleted(int userId, long ticket, int goalId) {
+        lock.lock();
+        try {
+            UserGoals user = entryBefore(userId, ticket);
+            if (user == null) {
+                return;
+            }
+            user.remove(goalId);
+        } finally {
+            lock.unlock();
+        }
+        updates.increment();
+    }
+
+    /**
+     * Applies a change of a goal's milestone counters, as made by MilestoneDAO in the database.
+     *
+     * @param userId The owner of the goal.
+     * @param ticket What {@link #beginWrite} returned before the change was committed.
+     * @param goalId The goal the milestones belong to.
+     * @param totalDelta Change of the number of milestones.
+     * @param completedDelta Change of the number of completed milestones.
+     */
+    void milestoneCountsChanged(int userId, long ticket, int goalId, int totalDelta, int completedDelta) {
+        lock.lock();
+        try {
+            UserGoals user = entryBefore(userId, ticket);
+            GoalRecord existing = user == null ? null : user.goals.get(goalId);
+            if (existing == null) {
+                return;
+            }
+            user.put(goalId, new GoalRecord(existing.status, existing.targetDate,
+                    existing.milestoneTotal + totalDelta, existing.milestoneCompleted + completedDelta));
+        } finally {
+            lock.unlock();
+        }
+        updates.increment();
+    }
+
+    /**
+     * Drops a user, e.g. after a write whose effect on the records is unknown. Call after the write commits.
+     */
+    void invalidate(int userId) {
+        lock.lock();
+        try {
+            versions.incrementAndGet(stripe(userId));
+            entries.remove(userId);
+        } finally {
+            lock.unlock();
+        }
+        invalidations.increment();
+    }
+
+    // Caller holds the lock. Returns the user's entry if it was loaded before the write with this
+    // ticket began, so the write is not in it yet. An entry loaded since may already include the
+    // write and is dropped. The version moves either way, so a load still running is not cached.
+    private UserGoals entryBefore(int userId, long ticket) {
+        versions.incrementAndGet(stripe(userId));
+        UserGoals user = entries.get(userId);
+        if (user != null && user.stamp >= ticket) {
+            entries.remove(userId);
+            invalidations.increment();
+            return null;
+        }
+        return user;
+    }
+
+    private static int stripe(int userId) {
+        return Math.floorMod(userId, VERSION_STRIPES);
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getIncrementalUpdates() {
+        return updates.sum();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * What the summary needs to know about one goal. Immutable; replaced on change.
+     */
+    static final class GoalRecord {
+        final String status;
+        final Date targetDate;
+        final int milestoneTotal;
+        final int milestoneCompleted;
+
+        GoalRecord(String status, Date targetDate, int milestoneTotal, int milestoneCompleted) {
+            this.status = status;
+            this.targetDate = targetDate;
+            this.milestoneTotal = milestoneTotal;
+            this.milestoneCompleted = milestoneCompleted;
+        }
+    }
+
+    /**
+     * One user's goal records, running totals over them and the summary last derived from
+     * them. Guarded by the cache's lock.
+     */
+    private static final class UserGoals {
+        private final Map<Integer, GoalRecord> goals;
+        // The user's write version when the load began.
+        private final long stamp;
+        private final long loadedNanos = System.nanoTime();
+        private final Map<String, Integer> statusCounts = new LinkedHashMap<>();
+        private int milestoneTotal;
+        private int milestoneCompleted;
+        // Overdue and due-soon goals as of countedFor; recounted when the date changes.
+        private LocalDate countedFor;
+        private int overdue;
+        private int dueSoon;
+        private DashboardSummary summary;
+
+        UserGoals(Map<Integer, GoalRecord> goals, long stamp) {
+            this.goals = goals;
+            this.stamp = stamp;
+            for (String status : STATUSES) {
+                statusCounts.put(status, 0);
+            }
+            for (GoalRecord goal : goals.values()) {
+                count(goal, 1);
+            }
+        }
+
+        void put(int goalId, GoalRecord record) {
+            GoalRecord previous = goals.put(goalId, record);
+            if (previous != null) {
+                count(previous, -1);
+            }
+            count(record, 1);
+            summary = null;
+        }
+
+        void remove(int goalId) {
+            GoalRecord previous = goals.remove(goalId);
+            if (previous != null) {
+                count(previous, -1);
+                summary = null;
+            }
+        }
+
+        DashboardSummary summary(LocalDate today) {
+            if (!today.equals(countedFor)) {
+                countedFor = today;
+                overdue = 0;
+                dueSoon = 0;
+                for (GoalRecord goal : goals.values()) {
+                    countDates(goal, 1);
+                }
+                summary = null;
+            }
+            if (summary == null) {
+                summary = new DashboardSummary(goals.size(), Collections.unmodifiableMap(new LinkedHashMap<>(statusCounts)),
+                        overdue, dueSoon, milestoneTotal, milestoneCompleted);
+            }
+            return summary;
+        }
+
+        // Adds (sign 1) or removes (sign -1) a goal's share of the totals.
+        private void count(GoalRecord goal, int sign) {
+            if (goal.status != null) {
+                int remaining = statusCounts.merge(goal.status, sign, Integer::sum);
+                if (remaining == 0 && !STATUSES.contains(goal.status)) {
+                    statusCounts.remove(goal.status);
+                }
+            }
+            milestoneTotal += sign * goal.milestoneTotal;
+            milestoneCompleted += sign * goal.milestoneCompleted;
+            if (countedFor != null) {
+                countDates(goal, sign);
+            }
+        }
+
+        private void countDates(GoalRecord goal, int sign) {
+            boolean open = !COMPLETED.equals(goal.status) && !CANCELLED.equals(goal.status);
+            if (!open || goal.targetDate == null) {
+                return;
+            }
+            LocalDate target = goal.targetDate.toLocalDate();
+            if (target.isBefore(countedFor)) {
+                overdue += sign;
+            } else if (!target.isAfter(countedFor.plusDays(DUE_SOON_DAYS))) {
+                dueSoon += sign;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+/**
+ * Dashboard summary cache statistics, published over JMX as "com.mystrive:type=DashboardSummaryCache".
+ */
+public interface DashboardSummaryCacheMXBean {
+
+    int getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getIncrementalUpdates();
+
+    long getInvalidations();
+
+    double getHitRate();
+}
@@ -4,18 +4,29 @@
  */
 package com.mystrive.dao;
 
+import com.mystrive.model.DashboardSummary;
 import com.mystrive.model.Goal;
+import com.mystrive.model.GoalPage;
 import com.mystrive.model.Category;
+import com.mystrive.model.Milestone;
 import com.mystrive.util.DBConnection;
+import com.mystrive.util.DataVersions;
+import com.mystrive.util.JmxSupport;
+import com.mystrive.util.LogContext;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,307 +34,543 @@ public class GoalDAO {
 
     private static final Logger LOGGER = Logger.getLogger(GoalDAO.class.getName());
 
-    public List<Goal> getAllGoalsByUserIdAndCategoryId(int userId, int categoryId) {
-        List<Goal> goals = new ArrayList<>(); // Initialize an empty list to store filtered goals.
-        // SQL query with a LEFT JOIN to get category_name.
-        // It filters by both user_id AND category_id.
-        String SQL_SELECT_FILTERED = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.created_at, g.updated_at, c.category_name "
-                + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
-                + "WHERE g.user_id = ? AND g.category_id = ? "
-                + // New WHERE clause condition
-                "ORDER BY g.target_date ASC, g.goal_id DESC";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
+    private static final JdbcTemplate JDBC = JdbcTemplate.JDBC;
+
+    // Per-user dashboard summaries, kept up to date by the write methods here and in MilestoneDAO.
+    // Writes on other nodes are not seen, so with token logins entries expire after a few seconds.
+    static final DashboardSummaryCache SUMMARIES = new DashboardSummaryCache(DBConnection.configInt("SUMMARY_CACHE_MAX_USERS", 10000),
+            TimeUnit.SECONDS.toMillis(DBConnection.configLong("SUMMARY_CACHE_TTL_SECONDS", DBConnection.isTokenAuth() ? 5 : 0)));
+
+    static {
+        JmxSupport.register("DashboardSummaryCache", SUMMARIES);
+    }
+
+    // What the dashboard summary needs per goal: status, target date and milestone counters.
+    static final String SQL_SUMMARY = "SELECT goal_id, status, target_date, milestone_total, milestone_done FROM goals WHERE user_id = ?";
 
+    // A goal owned by a user joined with its category and milestones (LEFT JOIN so a goal without milestones still yields one row).
+    static final String SQL_SELECT_WITH_MILESTONES = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.milestone_total, g.milestone_done, g.created_at, g.updated_at, c.category_name, "
+            + "m.milestone_id, m.milestone_description, m.due_date, m.status AS milestone_status, m.created_at AS milestone_created_at, m.updated_at AS milestone_updated_at "
+            + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
+            + "LEFT JOIN milestones m ON m.goal_id = g.goal_id "
+            + "WHERE g.goal_id = ? AND g.user_id = ? "
+            + "ORDER BY m.due_date ASC, m.milestone_id ASC";
+
+    // All goals of a user, in dashboard order (target date, then newest first).
+    static final String SQL_SELECT_BY_USER = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.milestone_total, g.milestone_done, g.created_at, g.updated_at, c.category_name "
+            + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
+            + "WHERE g.user_id = ? ORDER BY g.target_date ASC, g.goal_id DESC";
+
+    // Everything of a user for an export: SQL_SELECT_WITH_MILESTONES for all goals, in dashboard order.
+    // The ORDER BY keeps each goal's rows together, which the export relies on.
+    static final String SQL_EXPORT = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.milestone_total, g.milestone_done, g.created_at, g.updated_at, c.category_name, "
+            + "m.milestone_id, m.milestone_description, m.due_date, m.status AS milestone_status, m.created_at AS milestone_created_at, m.updated_at AS milestone_updated_at "
+            + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
+            + "LEFT JOIN milestones m ON m.goal_id = g.goal_id "
+            + "WHERE g.user_id = ? "
+            + "ORDER BY g.target_date ASC, g.goal_id DESC, m.due_date ASC, m.milestone_id ASC";
+
+    // All goals of a user in one category, in dashboard order.
+    static final String SQL_SELECT_BY_USER_AND_CATEGORY = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.milestone_total, g.milestone_done, g.created_at, g.updated_at, c.category_name "
+            + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
+            + "WHERE g.user_id = ? AND g.category_id = ? "
+            + "ORDER BY g.target_date ASC, g.goal_id DESC";
+
+    public List<Goal> getAllGoalsByUserIdAndCategoryId(int userId, int categoryId) {
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT_FILTERED);
-                preparedStatement.setInt(1, userId);     // Set the user_id parameter.
-                preparedStatement.setInt(2, categoryId); // Set the category_id parameter for filtering.
-
-                resultSet = preparedStatement.executeQuery();
-
-                // Iterate through the ResultSet and populate Goal objects.
-                while (resultSet.next()) {
-                    Goal goal = new Goal();
-                    goal.setGoalId(resultSet.getInt("goal_id"));
-                    goal.setUserId(resultSet.getInt("user_id"));
-                    // Check for null category_id from the database using getObject.
-                    if (resultSet.getObject("category_id") != null) {
-                        goal.setCategoryId(resultSet.getInt("category_id"));
-                    } else {
-                        goal.setCategoryId(null); // Explicitly set to null if DB value is null.
-                    }
-                    goal.setGoalDescription(resultSet.getString("goal_description"));
-                    goal.setTargetDate(resultSet.getDate("target_date"));
-                    goal.setStatus(resultSet.getString("status"));
-                    goal.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    goal.setUpdatedAt(resultSet.getTimestamp("updated_at"));
-                    // Set the categoryName from the joined 'categories' table.
-                    goal.setCategoryName(resultSet.getString("category_name"));
-                    goals.add(goal); // Add the populated Goal object to the list.
-                }
-                LOGGER.log(Level.INFO, "{0} goals retrieved for user ID {1} and category ID {2}.",
-                        new Object[]{goals.size(), userId, categoryId});
+            List<Goal> goals = JDBC.query(SQL_SELECT_BY_USER_AND_CATEGORY, GOAL, userId, categoryId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "{0} goals retrieved for user ID {1} and category ID {2}.",
+                        goals.size(), userId, categoryId);
             }
+            return goals;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving goals for user ID " + userId + " and category ID " + categoryId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) {
-                    resultSet.close();
-                }
-                if (preparedStatement != null) {
-                    preparedStatement.close();
-                }
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving filtered goals.", e);
-            }
+            return new ArrayList<>();
         }
-        return goals; // Return the list of filtered goals.
     }
 
     public boolean addGoal(Goal goal) {
         String SQL_INSERT = "INSERT INTO goals (user_id, category_id, goal_description, target_date, status) VALUES (?, ?, ?, ?, ?)";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
-                preparedStatement.setInt(1, goal.getUserId());
-                if (goal.getCategoryId() != null) {
-                    preparedStatement.setInt(2, goal.getCategoryId());
-                } else {
-                    preparedStatement.setNull(2, java.sql.Types.INTEGER);
-                }
-                preparedStatement.setString(3, goal.getGoalDescription());
-                preparedStatement.setDate(4, goal.getTargetDate());
-                preparedStatement.setString(5, goal.getStatus());
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    ResultSet rs = preparedStatement.getGeneratedKeys();
-                    if (rs.next()) {
-                        goal.setGoalId(rs.getInt(1));
-                    }
-                    LOGGER.log(Level.INFO, "Goal '{0}' added successfully for user ID {1}.",
-                            new Object[]{goal.getGoalDescription(), goal.getUserId()});
-                }
+            long ticket = SUMMARIES.beginWrite(goal.getUserId());
+            Integer goalId = JDBC.insert(SQL_INSERT, goal.getUserId(), categoryParameter(goal),
+                    goal.getGoalDescription(), goal.getTargetDate(), goal.getStatus());
+            if (goalId != null) {
+                goal.setGoalId(goalId);
+                SUMMARIES.goalSaved(goal.getUserId(), ticket, goal.getGoalId(), goal.getStatus(), goal.getTargetDate());
+            } else {
+                SUMMARIES.invalidate(goal.getUserId());
             }
+            DataVersions.bump(goal.getUserId());
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Goal '{0}' added successfully for user ID {1}.",
+                        goal.getGoalDescription(), goal.getUserId());
+            }
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error adding goal: " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) {
-                    preparedStatement.close();
-                }
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after adding goal.", e);
-            }
+            return false;
         }
-        return success;
     }
 
     public List<Goal> getAllGoalsByUserId(int userId) {
-        List<Goal> goals = new ArrayList<>();
-        // Join with categories table to get category name
-        String SQL_SELECT = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.created_at, g.updated_at, c.category_name "
-                + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
-                + "WHERE g.user_id = ? ORDER BY g.target_date ASC, g.goal_id DESC"; // Order by target date and then ID
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, userId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                while (resultSet.next()) {
-                    Goal goal = new Goal();
-                    goal.setGoalId(resultSet.getInt("goal_id"));
-                    goal.setUserId(resultSet.getInt("user_id"));
-                    // Check for null category_id from database
-                    if (resultSet.getObject("category_id") != null) {
-                        goal.setCategoryId(resultSet.getInt("category_id"));
-                    } else {
-                        goal.setCategoryId(null);
-                    }
-                    goal.setGoalDescription(resultSet.getString("goal_description"));
-                    goal.setTargetDate(resultSet.getDate("target_date"));
-                    goal.setStatus(resultSet.getString("status"));
-                    goal.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    goal.setUpdatedAt(resultSet.getTimestamp("updated_at"));
-                    goal.setCategoryName(resultSet.getString("category_name")); // Set category name from join
-                    goals.add(goal);
-                }
-                LOGGER.log(Level.INFO, "{0} goals retrieved for user ID {1}.",
-                        new Object[]{goals.size(), userId});
+            List<Goal> goals = JDBC.query(SQL_SELECT_BY_USER, GOAL, userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "{0} goals retrieved for user ID {1}.", goals.size(), userId);
             }
+            return goals;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving goals for user ID " + userId + ": " + e.getMessage(), e);
-        } finally {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns one page of a user's goals in dashboard order (target_date ASC, goal_id DESC),
+     * optionally restricted to one category. Pages are addressed with a keyset cursor on
+     * (target_date, goal_id) instead of an OFFSET, so every page costs the same no matter how
+     * deep into the list it is.
+     *
+     * @param userId The owner of the goals.
+     * @param categoryId The category to filter by, or 0 for all goals.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param pageSize The maximum number of goals on the page.
+     * @return The page, including the cursor of the next page if there is one.
+     */
+    public GoalPage getGoalsPage(int userId, int categoryId, String cursor, int pageSize) {
+        // Decode the cursor: the (target_date, goal_id) of the last goal on the previous page.
+        boolean afterKey = false;
+        Date afterDate = null;
+        int afterGoalId = 0;
+        if (cursor != null && !cursor.isEmpty()) {
             try {
-                if (resultSet != null) {
-                    resultSet.close();
-                }
-                if (preparedStatement != null) {
-                    preparedStatement.close();
-                }
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving goals.", e);
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", -1);
+                afterDate = parts[0].isEmpty() ? null : Date.valueOf(parts[0]);
+                afterGoalId = Integer.parseInt(parts[1]);
+                afterKey = true;
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                LOGGER.log(Level.WARNING, "Ignoring malformed goal cursor ''{0}''; returning the first page.", cursor);
+            }
+        }
+
+        String sql = pageSql(categoryId > 0, afterKey, afterDate == null);
+        List<Object> parameters = new ArrayList<>(6);
+        parameters.add(userId);
+        if (categoryId > 0) {
+            parameters.add(categoryId);
+        }
+        if (afterKey) {
+            if (afterDate != null) {
+                parameters.add(afterDate);
+                parameters.add(afterDate);
             }
+            parameters.add(afterGoalId);
+        }
+        parameters.add(pageSize + 1); // One extra row tells us whether a next page exists
+
+        List<Goal> goals;
+        try {
+            goals = JDBC.withFetchSize(pageSize + 1).query(sql, GOAL, parameters.toArray());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving goal page for user ID " + userId + ": " + e.getMessage(), e);
+            return new GoalPage(new ArrayList<>(), null);
+        }
+        String nextCursor = null;
+        if (goals.size() > pageSize) {
+            goals.remove(pageSize);
+            Goal last = goals.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getTargetDate(), last.getGoalId());
+        }
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "{0} goals retrieved for user ID {1} (category ID {2}, more: {3}).",
+                    goals.size(), userId, categoryId, nextCursor != null);
+        }
+        return new GoalPage(goals, nextCursor);
+    }
+
+    // The six keyset query shapes are built once so each one is a fixed SQL string for the statement cache.
+    static final String[] PAGE_SQL = new String[6];
+
+    static {
+        for (int shape = 0; shape < PAGE_SQL.length; shape++) {
+            boolean byCategory = (shape & 1) != 0;
+            int keyset = shape >> 1; // 0 = first page, 1 = after a dated goal, 2 = after an undated goal
+            StringBuilder sql = new StringBuilder(
+                    "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.milestone_total, g.milestone_done, g.created_at, g.updated_at, c.category_name "
+                    + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
+                    + "WHERE g.user_id = ?");
+            if (byCategory) {
+                sql.append(" AND g.category_id = ?");
+            }
+            if (keyset == 1) {
+                sql.append(" AND (g.target_date > ? OR (g.target_date = ? AND g.goal_id < ?))");
+            } else if (keyset == 2) {
+                // NULL target dates sort first, so after an undated goal come the remaining undated goals, then all dated ones.
+                sql.append(" AND ((g.target_date IS NULL AND g.goal_id < ?) OR g.target_date IS NOT NULL)");
+            }
+            sql.append(" ORDER BY g.target_date ASC, g.goal_id DESC LIMIT ?");
+            PAGE_SQL[shape] = sql.toString();
         }
-        return goals;
+    }
+
+    private static String pageSql(boolean byCategory, boolean afterKey, boolean afterNullDate) {
+        int keyset = !afterKey ? 0 : (afterNullDate ? 2 : 1);
+        return PAGE_SQL[(keyset << 1) | (byCategory ? 1 : 0)];
+    }
+
+    private static String encodeCursor(Date targetDate, int goalId) {
+        String key = (targetDate == null ? "" : targetDate.toString()) + ":" + goalId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the dashboard summary of a user (counts by status, overdue and due-soon goals,
+     * milestone completion). Served from {@link DashboardSummaryCache}; only the first call
+     * for a user, or one after eviction, reads the database.
+     *
+     * @param userId The user ID.
+     * @return The summary, or null if it could not be loaded.
+     */
+    public DashboardSummary getDashboardSummary(int userId) {
+        DashboardSummary cached = SUMMARIES.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = SUMMARIES.stamp(userId);
+        Map<Integer, DashboardSummaryCache.GoalRecord> goals = new HashMap<>();
+        try {
+            for (Map.Entry<Integer, DashboardSummaryCache.GoalRecord> row : JDBC.query(SQL_SUMMARY, SUMMARY_ROW, userId)) {
+                goals.put(row.getKey(), row.getValue());
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading dashboard summary for user ID " + userId + ": " + e.getMessage(), e);
+            return null;
+        }
+        return SUMMARIES.put(userId, goals, stamp);
+    }
+
+    /**
+     * Returns the dashboard summary cache, e.g. to report its hit rate.
+     *
+     * @return The shared summary cache.
+     */
+    public static DashboardSummaryCache getSummaryCache() {
+        return SUMMARIES;
     }
 
     public Goal getGoalById(int goalId) {
-        String SQL_SELECT = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.created_at, g.updated_at, c.category_name "
+        String SQL_SELECT = "SELECT g.goal_id, g.user_id, g.category_id, g.goal_description, g.target_date, g.status, g.milestone_total, g.milestone_done, g.created_at, g.updated_at, c.category_name "
                 + "FROM goals g LEFT JOIN categories c ON g.category_id = c.category_id "
                 + "WHERE g.goal_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        Goal goal = null;
+        try {
+            Goal goal = JDBC.queryForObject(SQL_SELECT, GOAL, goalId);
+            if (goal == null) {
+                LOGGER.log(Level.WARNING, "Goal with ID {0} not found.", goalId);
+            } else if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Goal with ID {0} retrieved successfully.", goalId);
+            }
+            return goal;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving goal by ID " + goalId + ": " + e.getMessage(), e);
+            return null;
+        }
+    }
 
+    /**
+     * Loads a goal owned by the given user together with its category name and all of its
+     * milestones in a single round trip. Ownership is enforced in SQL, so a goal that does not
+     * exist and a goal owned by someone else both come back as null.
+     *
+     * @param goalId The goal to load.
+     * @param userId The user who must own the goal.
+     * @return The goal with its milestones list populated, or null if not found or not owned.
+     */
+    public Goal getGoalWithMilestones(int goalId, int userId) {
+        // LEFT JOIN milestones so a goal without milestones still yields one row (with NULL milestone columns).
+        Goal goal;
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, goalId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                if (resultSet.next()) {
-                    goal = new Goal();
-                    goal.setGoalId(resultSet.getInt("goal_id"));
-                    goal.setUserId(resultSet.getInt("user_id"));
-                    if (resultSet.getObject("category_id") != null) {
-                        goal.setCategoryId(resultSet.getInt("category_id"));
-                    } else {
-                        goal.setCategoryId(null);
-                    }
-                    goal.setGoalDescription(resultSet.getString("goal_description"));
-                    goal.setTargetDate(resultSet.getDate("target_date"));
-                    goal.setStatus(resultSet.getString("status"));
-                    goal.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    goal.setUpdatedAt(resultSet.getTimestamp("updated_at"));
-                    goal.setCategoryName(resultSet.getString("category_name"));
-                    LOGGER.log(Level.INFO, "Goal with ID {0} retrieved successfully.", goalId);
-                } else {
-                    LOGGER.log(Level.WARNING, "Goal with ID {0} not found.", goalId);
+            goal = JDBC.query(SQL_SELECT_WITH_MILESTONES, resultSet -> {
+                if (!resultSet.next()) {
+                    return null;
                 }
+                // The goal columns repeat on every row; map them from the first one only.
+                Goal found = GOAL.read(resultSet, GOAL.resolve(resultSet));
+                List<Milestone> milestones = new ArrayList<>();
+                found.setMilestones(milestones);
+                int[] milestoneColumns = JOINED_MILESTONE.resolve(resultSet);
+                do {
+                    resultSet.getInt(milestoneColumns[0]);
+                    if (!resultSet.wasNull()) {
+                        milestones.add(JOINED_MILESTONE.read(resultSet, milestoneColumns));
+                    }
+                } while (resultSet.next());
+                return found;
+            }, goalId, userId);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving goal details for goal ID " + goalId + ": " + e.getMessage(), e);
+            return null;
+        }
+        if (goal != null) {
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Goal ID {0} retrieved with {1} milestones for user ID {2}.",
+                        goalId, goal.getMilestones().size(), userId);
             }
+        } else {
+            LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1}.", new Object[]{goalId, userId});
+        }
+        return goal;
+    }
+
+    /**
+     * Inserts goals together with their milestones ({@link Goal#getMilestones()}), for an import.
+     * All goals are inserted with one JDBC batch, their generated IDs are set on the goals and
+     * their milestones, and then all milestones are inserted with a second batch; the goals'
+     * milestone counters are written with the goals. Either everything is inserted or, on a
+     * database error, nothing.
+     * <p>
+     * With MySQL the batches are sent as multi-row INSERTs (see rewriteBatchedStatements in
+     * DBConnection), so a chunk of a few hundred goals costs a handful of round trips.
+     *
+     * @param userId The user importing; the goals' own user IDs are ignored.
+     * @param goals The goals, with their category IDs already resolved.
+     * @return True if all goals and milestones were inserted.
+     */
+    public boolean importGoals(int userId, List<Goal> goals) {
+        if (goals.isEmpty()) {
+            return true;
+        }
+        String SQL_INSERT_GOAL = "INSERT INTO goals (user_id, category_id, goal_description, target_date, status, milestone_total, milestone_done) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String SQL_INSERT_MILESTONE = "INSERT INTO milestones (goal_id, milestone_description, due_date, status) VALUES (?, ?, ?, ?)";
+        int[] milestoneCount = new int[1];
+        try {
+            JDBC.inTransaction(transaction -> {
+                List<Integer> goalIds = transaction.batchInsert(SQL_INSERT_GOAL, goals, goal -> {
+                    int done = 0;
+                    for (Milestone milestone : goal.getMilestones()) {
+                        if (MilestoneDAO.COMPLETED.equals(milestone.getStatus())) {
+                            done++;
+                        }
+                    }
+                    return new Object[]{userId, categoryParameter(goal), goal.getGoalDescription(), goal.getTargetDate(),
+                        goal.getStatus(), goal.getMilestones().size(), done};
+                });
+                if (goalIds.size() != goals.size()) {
+                    throw new SQLException("Expected " + goals.size() + " generated goal IDs, got " + goalIds.size() + ".");
+                }
+                // Maps each goal's generated ID to its milestones.
+                List<Milestone> milestones = new ArrayList<>();
+                for (int i = 0; i < goals.size(); i++) {
+                    Goal goal = goals.get(i);
+                    goal.setUserId(userId);
+                    goal.setGoalId(goalIds.get(i));
+                    for (Milestone milestone : goal.getMilestones()) {
+                        milestone.setGoalId(goal.getGoalId());
+                        milestones.add(milestone);
+                    }
+                }
+                if (!milestones.isEmpty()) {
+                    List<Integer> milestoneIds = transaction.batchInsert(SQL_INSERT_MILESTONE, milestones, milestone -> new Object[]{
+                        milestone.getGoalId(), milestone.getMilestoneDescription(), milestone.getDueDate(), milestone.getStatus()});
+                    for (int i = 0; i < milestoneIds.size() && i < milestones.size(); i++) {
+                        milestones.get(i).setMilestoneId(milestoneIds.get(i));
+                    }
+                }
+                milestoneCount[0] = milestones.size();
+                return null;
+            });
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving goal by ID " + goalId + ": " + e.getMessage(), e);
+            LOGGER.log(Level.SEVERE, "Error importing " + goals.size() + " goals for user ID " + userId + ": " + e.getMessage(), e);
+            return false;
         } finally {
-            try {
-                if (resultSet != null) {
-                    resultSet.close();
+            // Rebuilt from the table on the next dashboard view, rather than updated goal by goal.
+            SUMMARIES.invalidate(userId);
+        }
+        DataVersions.bump(userId);
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "{0} goals and {1} milestones imported for user ID {2}.", goals.size(), milestoneCount[0], userId);
+        }
+        return true;
+    }
+
+    /**
+     * Receives an export as it is read: each goal, then its milestones, then the end of the goal.
+     */
+    public interface ExportHandler {
+        void startGoal(Goal goal) throws IOException;
+
+        void milestone(Milestone milestone) throws IOException;
+
+        void endGoal() throws IOException;
+    }
+
+    /**
+     * Streams all goals of a user with their milestones to a handler, in dashboard order and each
+     * goal's milestones in due date order. One query reads everything and its rows are streamed
+     * (see {@link JdbcTemplate#streaming}), so memory use does not grow with the account; the
+     * handler should write each row out rather than collect them.
+     *
+     * @param userId The user whose data is exported.
+     * @param handler Receives the goals and milestones.
+     * @return True if everything was read, false if the database failed (part of the data may
+     *         already have been handed to the handler).
+     * @throws IOException If the handler fails, e.g. because the client went away.
+     */
+    public boolean exportGoalsWithMilestones(int userId, ExportHandler handler) throws IOException {
+        int[] counts = new int[2]; // goals, milestones
+        try {
+            JDBC.streaming().query(SQL_EXPORT, resultSet -> {
+                if (!resultSet.next()) {
+                    return null;
                 }
-                if (preparedStatement != null) {
-                    preparedStatement.close();
+                int[] goalColumns = GOAL.resolve(resultSet);
+                int[] milestoneColumns = JOINED_MILESTONE.resolve(resultSet);
+                int goalId = 0;
+                try {
+                    do {
+                        // The goal columns repeat on each of its milestone rows; map them once per goal.
+                        int rowGoalId = resultSet.getInt(goalColumns[0]);
+                        if (counts[0] == 0 || rowGoalId != goalId) {
+                            if (counts[0] > 0) {
+                                handler.endGoal();
+                            }
+                            goalId = rowGoalId;
+                            counts[0]++;
+                            handler.startGoal(GOAL.read(resultSet, goalColumns));
+                        }
+                        resultSet.getInt(milestoneColumns[0]);
+                        if (!resultSet.wasNull()) {
+                            counts[1]++;
+                            handler.milestone(JOINED_MILESTONE.read(resultSet, milestoneColumns));
+                        }
+                    } while (resultSet.next());
+                    handler.endGoal();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving goal by ID.", e);
-            }
+                return null;
+            }, userId);
+        } catch (UncheckedIOException e) {
+            LOGGER.log(Level.WARNING, "Export for user ID {0} aborted after {1} goals: {2}",
+                    new Object[]{userId, counts[0], e.getCause().getMessage()});
+            throw e.getCause();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error exporting goals for user ID " + userId + " after " + counts[0] + " goals: " + e.getMessage(), e);
+            return false;
         }
-        return goal;
+        LOGGER.log(Level.INFO, "Exported {0} goals and {1} milestones for user ID {2}.", new Object[]{counts[0], counts[1], userId});
+        return true;
     }
 
     public boolean updateGoal(Goal goal) {
         String SQL_UPDATE = "UPDATE goals SET category_id = ?, goal_description = ?, target_date = ?, status = ? WHERE goal_id = ? AND user_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_UPDATE);
-                if (goal.getCategoryId() != null) {
-                    preparedStatement.setInt(1, goal.getCategoryId());
-                } else {
-                    preparedStatement.setNull(1, java.sql.Types.INTEGER);
-                }
-                preparedStatement.setString(2, goal.getGoalDescription());
-                preparedStatement.setDate(3, goal.getTargetDate());
-                preparedStatement.setString(4, goal.getStatus());
-                preparedStatement.setInt(5, goal.getGoalId());
-                preparedStatement.setInt(6, goal.getUserId()); // Ensure user owns the goal
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "Goal ID {0} updated successfully.", goal.getGoalId());
-                } else {
-                    LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for update.",
-                            new Object[]{goal.getGoalId(), goal.getUserId()});
+            long ticket = SUMMARIES.beginWrite(goal.getUserId());
+            // The user_id condition ensures the user owns the goal.
+            int rowsAffected = JDBC.update(SQL_UPDATE, categoryParameter(goal), goal.getGoalDescription(),
+                    goal.getTargetDate(), goal.getStatus(), goal.getGoalId(), goal.getUserId());
+            if (rowsAffected > 0) {
+                SUMMARIES.goalSaved(goal.getUserId(), ticket, goal.getGoalId(), goal.getStatus(), goal.getTargetDate());
+                DataVersions.bump(goal.getUserId());
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Goal ID {0} updated successfully.", goal.getGoalId());
                 }
+                return true;
             }
+            LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for update.",
+                    new Object[]{goal.getGoalId(), goal.getUserId()});
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error updating goal ID " + goal.getGoalId() + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) {
-                    preparedStatement.close();
+        }
+        return false;
+    }
+
+    /**
+     * Changes only the status of a goal (partial update from the JSON API).
+     *
+     * @param goalId The goal to update.
+     * @param userId The current user; goals of other users are not touched.
+     * @param status The new status.
+     * @return True if the goal exists, belongs to the user and was updated.
+     */
+    public boolean updateGoalStatus(int goalId, int userId, String status) {
+        String SQL_UPDATE_STATUS = "UPDATE goals SET status = ? WHERE goal_id = ? AND user_id = ?";
+        try {
+            long ticket = SUMMARIES.beginWrite(userId);
+            if (JDBC.update(SQL_UPDATE_STATUS, status, goalId, userId) > 0) {
+                SUMMARIES.goalStatusChanged(userId, ticket, goalId, status);
+                DataVersions.bump(userId);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Goal ID {0} status set to ''{1}''.", goalId, status);
                 }
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after updating goal.", e);
+                return true;
             }
+            LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for status update.",
+                    new Object[]{goalId, userId});
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error updating status of goal ID " + goalId + ": " + e.getMessage(), e);
         }
-        return success;
+        return false;
     }
 
     public boolean deleteGoal(int goalId, int userId) {
         String SQL_DELETE = "DELETE FROM goals WHERE goal_id = ? AND user_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_DELETE);
-                preparedStatement.setInt(1, goalId);
-                preparedStatement.setInt(2, userId);
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "Goal ID {0} deleted successfully for user ID {1}.",
-                            new Object[]{goalId, userId});
-                } else {
-                    LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for deletion.",
-                            new Object[]{goalId, userId});
+            long ticket = SUMMARIES.beginWrite(userId);
+            if (JDBC.update(SQL_DELETE, goalId, userId) > 0) {
+                SUMMARIES.goalDeleted(userId, ticket, goalId);
+                DataVersions.bump(userId);
+                if (LogContext.isDebugEnabled(LOGGER)) {
+                    LogContext.debug(LOGGER, "Goal ID {0} deleted successfully for user ID {1}.", goalId, userId);
                 }
+                return true;
             }
+            LOGGER.log(Level.WARNING, "Goal ID {0} not found or not owned by user {1} for deletion.",
+                    new Object[]{goalId, userId});
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error deleting goal ID " + goalId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) {
-                    preparedStatement.close();
-                }
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after deleting goal.", e);
-            }
         }
-        return success;
+        return false;
+    }
+
+    // category_id is nullable.
+    private static Object categoryParameter(Goal goal) {
+        return goal.getCategoryId() != null ? goal.getCategoryId() : JdbcTemplate.nullOf(Types.INTEGER);
     }
+
+    /**
+     * Maps the goal columns of a row (goal_id ... updated_at plus the joined category_name).
+     */
+    static final RowMapper<Goal> GOAL = RowMapper.of((resultSet, columns) -> {
+        Goal goal = new Goal();
+        goal.setGoalId(resultSet.getInt(columns[0]));
+        goal.setUserId(resultSet.getInt(columns[1]));
+        // category_id is nullable; getInt would turn NULL into 0.
+        int categoryId = resultSet.getInt(columns[2]);
+        goal.setCategoryId(resultSet.wasNull() ? null : categoryId);
+        goal.setGoalDescription(resultSet.getString(columns[3]));
+        goal.setTargetDate(resultSet.getDate(columns[4]));
+        goal.setStatus(resultSet.getString(columns[5]));
+        goal.setMilestoneTotal(resultSet.getInt(columns[6]));
+        goal.setMilestoneDone(resultSet.getInt(columns[7]));
+        goal.setCreatedAt(resultSet.getTimestamp(columns[8]));
+        goal.setUpdatedAt(resultSet.getTimestamp(columns[9]));
+        goal.setCategoryName(resultSet.getString(columns[10]));
+        return goal;
+    }, "goal_id", "user_id", "category_id", "goal_description", "target_date", "status",
+            "milestone_total", "milestone_done", "created_at", "updated_at", "category_name");
+
+    // A row of SQL_SUMMARY, keyed by goal ID.
+    private static final RowMapper<Map.Entry<Integer, DashboardSummaryCache.GoalRecord>> SUMMARY_ROW = RowMapper.of(
+            (resultSet, columns) -> new AbstractMap.SimpleImmutableEntry<>(resultSet.getInt(columns[0]),
+                    new DashboardSummaryCache.GoalRecord(resultSet.getString(columns[1]), resultSet.getDate(columns[2]),
+                            resultSet.getInt(columns[3]), resultSet.getInt(columns[4]))),
+            "goal_id", "status", "target_date", "milestone_total", "milestone_done");
+
+    // The milestone columns of SQL_SELECT_WITH_MILESTONES; the goal ID is the goal's own.
+    private static final RowMapper<Milestone> JOINED_MILESTONE = MilestoneDAO.MILESTONE.withLabels(
+            "milestone_id", "goal_id", "milestone_description", "due_date",
+            "milestone_status", "milestone_created_at", "milestone_updated_at");
 }
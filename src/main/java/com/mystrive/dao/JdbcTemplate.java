@@ -0,0 +1,340 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+import com.mystrive.util.ConnectionPool;
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.LogContext;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the DAOs' SQL: borrows a pooled connection, prepares the statement (served from the
+ * connection's statement cache), binds the parameters by position, executes, maps the rows with a
+ * {@link RowMapper} and closes everything with try-with-resources. Failures surface as
+ * SQLException; the DAOs decide what a failure means for their callers.
+ * <p>
+ * {@link #JDBC} borrows a connection per call. {@link #inTransaction} runs several calls on one
+ * connection with auto-commit off. Every call is timed here: with debug logging on (or for a
+ * sampled request, see {@link LogContext}) each statement is logged with its duration, including
+ * the wait for a connection.
+ * Per-statement statistics and the slow query log are kept by the pool's statement wrapper, which
+ * names the DAO method calling the template.
+ */
+final class JdbcTemplate {
+
+    private static final Logger LOGGER = Logger.getLogger(JdbcTemplate.class.getName());
+
+    /**
+     * The template used by the DAOs; borrows a pooled connection for each call.
+     */
+    static final JdbcTemplate JDBC = new JdbcTemplate(null, 0);
+
+    static {
+        // Slow queries, leaks and per-method timings are reported under the DAO method, not the template.
+        ConnectionPool.skipInCallerNames(JdbcTemplate.class, RowMapper.class);
+    }
+
+    // Fetch size of streamed queries. MySQL Connector/J reads the whole result into memory unless
+    // the fetch size is Integer.MIN_VALUE (row by row) or the URL has useCursorFetch=true (any
+    // positive size); other drivers take a positive size as the rows per round trip.
+    private static final int STREAMING_FETCH_SIZE = DBConnection.configInt("DB_STREAMING_FETCH_SIZE",
+            DBConnection.config("DB_DRIVER", "com.mysql.cj.jdbc.Driver").contains("mysql")
+            && !DBConnection.config("DB_URL", "").contains("useCursorFetch=true") ? Integer.MIN_VALUE : 1000);
+
+    // Bound by inTransaction; null when each call borrows its own connection.
+    private final Connection connection;
+    private final int fetchSize;
+
+    private JdbcTemplate(Connection connection, int fetchSize) {
+        this.connection = connection;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Handles a whole result set, for results that are not simply a list of rows.
+     *
+     * @param <T> The result type.
+     */
+    @FunctionalInterface
+    interface ResultSetHandler<T> {
+        T handle(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Work done in one transaction.
+     *
+     * @param <T> The result type.
+     */
+    @FunctionalInterface
+    interface TransactionCallback<T> {
+        /**
+         * @param transaction A template bound to the transaction's connection.
+         * @return The result of the work.
+         * @throws SQLException To roll the transaction back.
+         */
+        T doInTransaction(JdbcTemplate transaction) throws SQLException;
+    }
+
+    /**
+     * The parameters of one row of a batch.
+     *
+     * @param <T> The type of the items batched.
+     */
+    @FunctionalInterface
+    interface BatchParameters<T> {
+        Object[] of(T item);
+    }
+
+    @FunctionalInterface
+    private interface StatementCallback<T> {
+        T doInStatement(PreparedStatement preparedStatement) throws SQLException;
+    }
+
+    /**
+     * A NULL parameter of a given SQL type, for nullable columns such as goals.category_id.
+     */
+    static final class SqlNull {
+        private final int sqlType;
+
+        private SqlNull(int sqlType) {
+            this.sqlType = sqlType;
+        }
+    }
+
+    /**
+     * @param sqlType The column type, from java.sql.Types.
+     * @return A parameter binding NULL.
+     */
+    static SqlNull nullOf(int sqlType) {
+        return new SqlNull(sqlType);
+    }
+
+    /**
+     * Returns a template asking the driver to fetch this many rows per round trip,
+     * for queries whose result size is known, such as a LIMITed page.
+     *
+     * @param rows The fetch size hint; 0 leaves the driver's default.
+     * @return A template with the hint, on the same connection as this one.
+     */
+    JdbcTemplate withFetchSize(int rows) {
+        return new JdbcTemplate(connection, rows);
+    }
+
+    /**
+     * Returns a template whose queries stream their rows instead of reading the whole result
+     * into memory, for results of unbounded size such as an export. The handler must read the
+     * result set to the end (or stop early) before the template runs another statement on the
+     * same connection.
+     *
+     * @return A template with the streaming fetch size, on the same connection as this one.
+     */
+    JdbcTemplate streaming() {
+        return withFetchSize(STREAMING_FETCH_SIZE);
+    }
+
+    /**
+     * Runs a query and maps every row.
+     *
+     * @param sql The SQL, with ? placeholders.
+     * @param mapper Maps a row.
+     * @param parameters The parameter values, in placeholder order.
+     * @return The mapped rows; empty if there are none.
+     * @throws SQLException If the query fails or no connection is available.
+     */
+    <T> List<T> query(String sql, RowMapper<T> mapper, Object... parameters) throws SQLException {
+        return query(sql, mapper::readAll, parameters);
+    }
+
+    /**
+     * Runs a query and maps its first row.
+     *
+     * @param sql The SQL, with ? placeholders.
+     * @param mapper Maps a row.
+     * @param parameters The parameter values, in placeholder order.
+     * @return The mapped row, or null if the query returned none.
+     * @throws SQLException If the query fails or no connection is available.
+     */
+    <T> T queryForObject(String sql, RowMapper<T> mapper, Object... parameters) throws SQLException {
+        return query(sql, resultSet -> resultSet.next() ? mapper.read(resultSet, mapper.resolve(resultSet)) : null, parameters);
+    }
+
+    /**
+     * Runs a query and hands the result set to a handler.
+     *
+     * @param sql The SQL, with ? placeholders.
+     * @param handler Reads the result set; it is closed afterwards.
+     * @param parameters The parameter values, in placeholder order.
+     * @return What the handler returned.
+     * @throws SQLException If the query fails or no connection is available.
+     */
+    <T> T query(String sql, ResultSetHandler<T> handler, Object... parameters) throws SQLException {
+        return execute(sql, false, parameters, preparedStatement -> {
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return handler.handle(resultSet);
+            }
+        });
+    }
+
+    /**
+     * Runs an INSERT, UPDATE or DELETE.
+     *
+     * @param sql The SQL, with ? placeholders.
+     * @param parameters The parameter values, in placeholder order.
+     * @return The number of rows affected.
+     * @throws SQLException If the statement fails or no connection is available.
+     */
+    int update(String sql, Object... parameters) throws SQLException {
+        return execute(sql, false, parameters, PreparedStatement::executeUpdate);
+    }
+
+    /**
+     * Runs an INSERT of one row and returns its generated key.
+     *
+     * @param sql The SQL, with ? placeholders.
+     * @param parameters The parameter values, in placeholder order.
+     * @return The generated key, or null if the driver returned none.
+     * @throws SQLException If the statement fails or no connection is available.
+     */
+    Integer insert(String sql, Object... parameters) throws SQLException {
+        return execute(sql, true, parameters, preparedStatement -> {
+            preparedStatement.executeUpdate();
+            try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : null;
+            }
+        });
+    }
+
+    /**
+     * Inserts several rows with one JDBC batch and returns their generated keys.
+     *
+     * @param sql The INSERT, with ? placeholders.
+     * @param items The items to insert.
+     * @param parameters The parameter values of an item, in placeholder order.
+     * @return The generated keys in insertion order; shorter than items if the driver returned fewer.
+     * @throws SQLException If the batch fails or no connection is available.
+     */
+    <T> List<Integer> batchInsert(String sql, List<T> items, BatchParameters<T> parameters) throws SQLException {
+        return execute(sql, true, null, preparedStatement -> {
+            try {
+                for (T item : items) {
+                    bind(preparedStatement, parameters.of(item));
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            } catch (SQLException | RuntimeException e) {
+                // The statement is cached per connection: rows left queued would go out with its next batch.
+                try {
+                    preparedStatement.clearBatch();
+                } catch (SQLException clearFailure) {
+                    e.addSuppressed(clearFailure);
+                }
+                throw e;
+            }
+            List<Integer> keys = new ArrayList<>(items.size());
+            // Keys come back in insertion order, one per batched row.
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    keys.add(generatedKeys.getInt(1));
+                }
+            }
+            return keys;
+        });
+    }
+
+    /**
+     * Runs work in one transaction on one connection: committed if the work returns,
+     * rolled back if it throws.
+     *
+     * @param work The work; it must use the template it is given.
+     * @return What the work returned.
+     * @throws SQLException If the work or the commit fails, or no connection is available.
+     */
+    <T> T inTransaction(TransactionCallback<T> work) throws SQLException {
+        if (connection != null) {
+            return work.doInTransaction(this); // Already in one
+        }
+        try (Connection transactional = borrow()) {
+            transactional.setAutoCommit(false);
+            try {
+                T result = work.doInTransaction(new JdbcTemplate(transactional, fetchSize));
+                transactional.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                rollback(transactional);
+                throw e;
+            }
+            // The pool restores auto-commit when the connection is returned.
+        }
+    }
+
+    private <T> T execute(String sql, boolean generatedKeys, Object[] parameters, StatementCallback<T> action) throws SQLException {
+        long start = System.nanoTime();
+        Connection current = connection != null ? connection : borrow();
+        try (PreparedStatement preparedStatement = generatedKeys
+                ? current.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : current.prepareStatement(sql)) {
+            if (fetchSize != 0) {
+                preparedStatement.setFetchSize(fetchSize);
+            }
+            if (parameters != null) {
+                bind(preparedStatement, parameters);
+            }
+            return action.doInStatement(preparedStatement);
+        } finally {
+            if (connection == null) {
+                DBConnection.closeConnection(current);
+            }
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "SQL took {0} ms: {1}", (System.nanoTime() - start) / 1_000_000.0, sql);
+            }
+        }
+    }
+
+    private static Connection borrow() throws SQLException {
+        return DBConnection.getPool().borrow();
+    }
+
+    // Binds by the value's type so the driver gets setInt/setString rather than a setObject it must inspect.
+    private static void bind(PreparedStatement preparedStatement, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            Object value = parameters[i];
+            int index = i + 1;
+            if (value instanceof Integer) {
+                preparedStatement.setInt(index, (Integer) value);
+            } else if (value instanceof String) {
+                preparedStatement.setString(index, (String) value);
+            } else if (value instanceof Date) {
+                preparedStatement.setDate(index, (Date) value);
+            } else if (value instanceof Long) {
+                preparedStatement.setLong(index, (Long) value);
+            } else if (value instanceof Timestamp) {
+                preparedStatement.setTimestamp(index, (Timestamp) value);
+            } else if (value instanceof SqlNull) {
+                preparedStatement.setNull(index, ((SqlNull) value).sqlType);
+            } else {
+                preparedStatement.setObject(index, value);
+            }
+        }
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error rolling back transaction.", e);
+        }
+    }
+}
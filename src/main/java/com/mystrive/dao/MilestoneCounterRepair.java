@@ -0,0 +1,144 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+import com.mystrive.util.DBConnection;
+import com.mystrive.util.DataVersions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Recomputes goals.milestone_total and milestone_done from the milestones table.
+ * MilestoneDAO keeps the counters exact on its own; this catches anything that changed
+ * milestones behind its back (manual SQL, an import into a migrated database).
+ * Goals are processed in ranges of goal IDs: one short query finds the owners of goals whose
+ * counters are wrong, and only if there are any are those rows written. The owners' cached
+ * dashboard summaries are dropped and their data versions bumped, so pages showing the old
+ * counts are not answered with 304. Runs every MILESTONE_COUNTER_REPAIR_HOURS (default 24, 0 = never).
+ */
+public final class MilestoneCounterRepair {
+
+    private static final Logger LOGGER = Logger.getLogger(MilestoneCounterRepair.class.getName());
+
+    private static final int CHUNK_SIZE = Math.max(1, DBConnection.configInt("MILESTONE_COUNTER_REPAIR_CHUNK", 1000));
+
+    private static final String COUNT_TOTAL = "(SELECT COUNT(*) FROM milestones m WHERE m.goal_id = goals.goal_id)";
+    private static final String COUNT_DONE = "(SELECT COUNT(*) FROM milestones m WHERE m.goal_id = goals.goal_id AND m.status = 'Completed')";
+
+    // updated_at is set to itself so a repair does not count as an edit of the goal.
+    static final String SQL_REPAIR_RANGE = "UPDATE goals SET milestone_total = " + COUNT_TOTAL
+            + ", milestone_done = " + COUNT_DONE + ", updated_at = updated_at "
+            + "WHERE goal_id > ? AND goal_id <= ? "
+            + "AND (milestone_total <> " + COUNT_TOTAL + " OR milestone_done <> " + COUNT_DONE + ")";
+    static final String SQL_WRONG_RANGE_OWNERS = "SELECT DISTINCT user_id FROM goals "
+            + "WHERE goal_id > ? AND goal_id <= ? "
+            + "AND (milestone_total <> " + COUNT_TOTAL + " OR milestone_done <> " + COUNT_DONE + ")";
+    private static final String SQL_MAX_GOAL_ID = "SELECT MAX(goal_id) FROM goals";
+
+    private static ScheduledExecutorService scheduler;
+
+    private MilestoneCounterRepair() {
+    }
+
+    /**
+     * Recomputes the counters of all goals.
+     *
+     * @return The number of goals whose counters were wrong and have been corrected.
+     * @throws SQLException If the database cannot be reached or a statement fails.
+     */
+    public static int repairAll() throws SQLException {
+        Connection connection = DBConnection.getConnection();
+        if (connection == null) {
+            throw new SQLException("No database connection available for the milestone counter repair.");
+        }
+        int repaired = 0;
+        Set<Integer> owners = new LinkedHashSet<>();
+        try {
+            int maxGoalId;
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(SQL_MAX_GOAL_ID)) {
+                maxGoalId = resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+            try (PreparedStatement findOwners = connection.prepareStatement(SQL_WRONG_RANGE_OWNERS);
+                    PreparedStatement repair = connection.prepareStatement(SQL_REPAIR_RANGE)) {
+                for (int from = 0; from < maxGoalId; from += CHUNK_SIZE) {
+                    findOwners.setInt(1, from);
+                    findOwners.setInt(2, from + CHUNK_SIZE);
+                    boolean wrong = false;
+                    try (ResultSet resultSet = findOwners.executeQuery()) {
+                        while (resultSet.next()) {
+                            owners.add(resultSet.getInt(1));
+                            wrong = true;
+                        }
+                    }
+                    if (wrong) {
+                        repair.setInt(1, from);
+                        repair.setInt(2, from + CHUNK_SIZE);
+                        repaired += repair.executeUpdate();
+                    }
+                }
+            }
+        } finally {
+            DBConnection.closeConnection(connection);
+            // Also after a failure part way: the ranges before it may have been corrected.
+            for (Integer userId : owners) {
+                // Their cached dashboard summaries and pages were built from the wrong counters.
+                GoalDAO.SUMMARIES.invalidate(userId);
+                DataVersions.bump(userId);
+            }
+        }
+        if (repaired > 0) {
+            LOGGER.log(Level.WARNING, "Corrected the milestone counters of {0} goals of {1} users.", new Object[]{repaired, owners.size()});
+        } else {
+            LOGGER.log(Level.INFO, "Milestone counters are consistent.");
+        }
+        return repaired;
+    }
+
+    /**
+     * Schedules the periodic repair, unless MILESTONE_COUNTER_REPAIR_HOURS is 0.
+     * The first run is one interval after startup; the V2 migration has just computed the counters.
+     */
+    public static synchronized void start() {
+        long hours = DBConnection.configLong("MILESTONE_COUNTER_REPAIR_HOURS", 24);
+        if (hours <= 0 || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mystrive-counter-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                repairAll();
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Milestone counter repair failed: " + e.getMessage(), e);
+            }
+        }, hours, hours, TimeUnit.HOURS);
+        LOGGER.log(Level.INFO, "Milestone counter repair scheduled every {0} hours.", hours);
+    }
+
+    /**
+     * Stops the periodic repair.
+     */
+    public static synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -5,16 +5,14 @@
 package com.mystrive.dao;
 
 import com.mystrive.model.Milestone;
-import com.mystrive.util.DBConnection;
+import com.mystrive.util.DataVersions;
+import com.mystrive.util.LogContext;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Date;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,204 +21,322 @@ public class MilestoneDAO {
 
     private static final Logger LOGGER = Logger.getLogger(MilestoneDAO.class.getName());
 
-    public boolean addMilestone(Milestone milestone) {
+    private static final JdbcTemplate JDBC = JdbcTemplate.JDBC;
+
+    // All milestones of a goal, by due date.
+    static final String SQL_SELECT_BY_GOAL = "SELECT milestone_id, goal_id, milestone_description, due_date, status, created_at, updated_at FROM milestones WHERE goal_id = ? ORDER BY due_date ASC, milestone_id ASC";
+
+    static final String COMPLETED = "Completed";
+
+    // Keeps goals.milestone_total / milestone_done in step with the milestones, in the same transaction.
+    // updated_at is set to itself so a milestone change does not count as an edit of the goal.
+    static final String SQL_ADJUST_COUNTERS = "UPDATE goals SET milestone_total = milestone_total + ?, "
+            + "milestone_done = milestone_done + ?, updated_at = updated_at WHERE goal_id = ?";
+
+    // The current status of a milestone, locked until the transaction ends, so its counter delta is exact.
+    static final String SQL_LOCK_STATUS = "SELECT status FROM milestones WHERE milestone_id = ? AND goal_id = ? FOR UPDATE";
+
+    /**
+     * Adds a milestone and counts it on its goal.
+     *
+     * @param milestone The milestone; its ID is set from the generated key.
+     * @param userId The owner of the milestone's goal, already checked by the caller.
+     * @return True if the goal exists and the milestone was added.
+     */
+    public boolean addMilestone(Milestone milestone, int userId) {
         String SQL_INSERT = "INSERT INTO milestones (goal_id, milestone_description, due_date, status) VALUES (?, ?, ?, ?)";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
+        int done = COMPLETED.equals(milestone.getStatus()) ? 1 : 0;
 
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
-                preparedStatement.setInt(1, milestone.getGoalId());
-                preparedStatement.setString(2, milestone.getMilestoneDescription());
-                preparedStatement.setDate(3, milestone.getDueDate());
-                preparedStatement.setString(4, milestone.getStatus());
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    ResultSet rs = preparedStatement.getGeneratedKeys();
-                    if (rs.next()) {
-                        milestone.setMilestoneId(rs.getInt(1));
-                    }
-                    LOGGER.log(Level.INFO, "Milestone '{0}' added successfully for goal ID {1}.",
-                            new Object[]{milestone.getMilestoneDescription(), milestone.getGoalId()});
+            long ticket = GoalDAO.SUMMARIES.beginWrite(userId);
+            boolean added = JDBC.inTransaction(transaction -> {
+                // Counters first: the insert's foreign key check takes a shared lock on the goal row, and two
+                // inserts both holding it could not then upgrade to the exclusive lock the counter update needs.
+                if (!adjustCounters(transaction, milestone.getGoalId(), 1, done)) {
+                    return false;
+                }
+                Integer milestoneId = transaction.insert(SQL_INSERT, milestone.getGoalId(),
+                        milestone.getMilestoneDescription(), milestone.getDueDate(), milestone.getStatus());
+                if (milestoneId != null) {
+                    milestone.setMilestoneId(milestoneId);
                 }
+                return true;
+            });
+            if (!added) {
+                LOGGER.log(Level.WARNING, "Goal ID {0} not found; milestone not added.", milestone.getGoalId());
+                return false;
             }
+            GoalDAO.SUMMARIES.milestoneCountsChanged(userId, ticket, milestone.getGoalId(), 1, done);
+            DataVersions.bump(userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Milestone '{0}' added successfully for goal ID {1}.",
+                        milestone.getMilestoneDescription(), milestone.getGoalId());
+            }
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error adding milestone: " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after adding milestone.", e);
-            }
+            return false;
         }
-        return success;
     }
 
-    public List<Milestone> getAllMilestonesByGoalId(int goalId) {
-        List<Milestone> milestones = new ArrayList<>();
-        String SQL_SELECT = "SELECT milestone_id, goal_id, milestone_description, due_date, status, created_at, updated_at FROM milestones WHERE goal_id = ? ORDER BY due_date ASC, milestone_id ASC";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
+    /**
+     * Inserts several milestones with one JDBC batch in a single transaction: either all rows
+     * are added or none. On success each milestone's ID is set from the generated keys.
+     *
+     * @param milestones The milestones to add, typically all for the same goal.
+     * @param userId The owner of the milestones' goals, already checked by the caller.
+     * @return true if every milestone was inserted, false otherwise.
+     */
+    public boolean addMilestones(List<Milestone> milestones, int userId) {
+        if (milestones.isEmpty()) {
+            return true;
+        }
+        String SQL_INSERT = "INSERT INTO milestones (goal_id, milestone_description, due_date, status) VALUES (?, ?, ?, ?)";
+        Map<Integer, int[]> counts = countsPerGoal(milestones);
 
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, goalId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                while (resultSet.next()) {
-                    Milestone milestone = new Milestone();
-                    milestone.setMilestoneId(resultSet.getInt("milestone_id"));
-                    milestone.setGoalId(resultSet.getInt("goal_id"));
-                    milestone.setMilestoneDescription(resultSet.getString("milestone_description"));
-                    milestone.setDueDate(resultSet.getDate("due_date"));
-                    milestone.setStatus(resultSet.getString("status"));
-                    milestone.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    milestone.setUpdatedAt(resultSet.getTimestamp("updated_at"));
-                    milestones.add(milestone);
+            long ticket = GoalDAO.SUMMARIES.beginWrite(userId);
+            List<Integer> keys = JDBC.inTransaction(transaction -> {
+                for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+                    if (!adjustCounters(transaction, entry.getKey(), entry.getValue()[0], entry.getValue()[1])) {
+                        throw new SQLException("Goal ID " + entry.getKey() + " not found.");
+                    }
                 }
-                LOGGER.log(Level.INFO, "{0} milestones retrieved for goal ID {1}.",
-                        new Object[]{milestones.size(), goalId});
+                return transaction.batchInsert(SQL_INSERT, milestones, milestone -> new Object[]{
+                    milestone.getGoalId(), milestone.getMilestoneDescription(), milestone.getDueDate(), milestone.getStatus()});
+            });
+            for (int i = 0; i < keys.size() && i < milestones.size(); i++) {
+                milestones.get(i).setMilestoneId(keys.get(i));
+            }
+            for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+                GoalDAO.SUMMARIES.milestoneCountsChanged(userId, ticket, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
             }
+            DataVersions.bump(userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "{0} milestones added in one batch for goal ID {1}.",
+                        milestones.size(), milestones.get(0).getGoalId());
+            }
+            return true;
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving milestones for goal ID " + goalId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving milestones.", e);
+            LOGGER.log(Level.SEVERE, "Error adding milestones in batch: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    public List<Milestone> getAllMilestonesByGoalId(int goalId) {
+        try {
+            List<Milestone> milestones = JDBC.query(SQL_SELECT_BY_GOAL, MILESTONE, goalId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "{0} milestones retrieved for goal ID {1}.", milestones.size(), goalId);
             }
+            return milestones;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving milestones for goal ID " + goalId + ": " + e.getMessage(), e);
+            return new ArrayList<>();
         }
-        return milestones;
     }
 
     public Milestone getMilestoneById(int milestoneId) {
         String SQL_SELECT = "SELECT milestone_id, goal_id, milestone_description, due_date, status, created_at, updated_at FROM milestones WHERE milestone_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        Milestone milestone = null;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, milestoneId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                if (resultSet.next()) {
-                    milestone = new Milestone();
-                    milestone.setMilestoneId(resultSet.getInt("milestone_id"));
-                    milestone.setGoalId(resultSet.getInt("goal_id"));
-                    milestone.setMilestoneDescription(resultSet.getString("milestone_description"));
-                    milestone.setDueDate(resultSet.getDate("due_date"));
-                    milestone.setStatus(resultSet.getString("status"));
-                    milestone.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    milestone.setUpdatedAt(resultSet.getTimestamp("updated_at"));
-                    LOGGER.log(Level.INFO, "Milestone with ID {0} retrieved successfully.", milestoneId);
-                } else {
-                    LOGGER.log(Level.WARNING, "Milestone with ID {0} not found.", milestoneId);
-                }
+            Milestone milestone = JDBC.queryForObject(SQL_SELECT, MILESTONE, milestoneId);
+            if (milestone == null) {
+                LOGGER.log(Level.WARNING, "Milestone with ID {0} not found.", milestoneId);
+            } else if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Milestone with ID {0} retrieved successfully.", milestoneId);
             }
+            return milestone;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving milestone by ID " + milestoneId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving milestone by ID.", e);
-            }
+            return null;
         }
-        return milestone;
     }
 
-    public boolean updateMilestone(Milestone milestone) {
+    /**
+     * Updates a milestone and adjusts its goal's completed count if the status changed.
+     *
+     * @param milestone The milestone, with its ID and goal ID.
+     * @param userId The owner of the milestone's goal, already checked by the caller.
+     * @return True if the milestone belongs to the goal and was updated.
+     */
+    public boolean updateMilestone(Milestone milestone, int userId) {
         String SQL_UPDATE = "UPDATE milestones SET milestone_description = ?, due_date = ?, status = ? WHERE milestone_id = ? AND goal_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
 
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_UPDATE);
-                preparedStatement.setString(1, milestone.getMilestoneDescription());
-                preparedStatement.setDate(2, milestone.getDueDate());
-                preparedStatement.setString(3, milestone.getStatus());
-                preparedStatement.setInt(4, milestone.getMilestoneId());
-                preparedStatement.setInt(5, milestone.getGoalId()); 
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "Milestone ID {0} updated successfully.", milestone.getMilestoneId());
-                } else {
-                    LOGGER.log(Level.WARNING, "Milestone ID {0} not found or not belonging to goal {1} for update.",
-                            new Object[]{milestone.getMilestoneId(), milestone.getGoalId()});
+            long ticket = GoalDAO.SUMMARIES.beginWrite(userId);
+            Integer doneDelta = JDBC.inTransaction(transaction -> {
+                String oldStatus = lockStatus(transaction, milestone.getMilestoneId(), milestone.getGoalId());
+                if (oldStatus == null) {
+                    return null;
                 }
+                transaction.update(SQL_UPDATE, milestone.getMilestoneDescription(), milestone.getDueDate(),
+                        milestone.getStatus(), milestone.getMilestoneId(), milestone.getGoalId());
+                int delta = doneDelta(oldStatus, milestone.getStatus());
+                adjustCounters(transaction, milestone.getGoalId(), 0, delta);
+                return delta;
+            });
+            if (doneDelta == null) {
+                LOGGER.log(Level.WARNING, "Milestone ID {0} not found or not belonging to goal {1} for update.",
+                        new Object[]{milestone.getMilestoneId(), milestone.getGoalId()});
+                return false;
             }
+            GoalDAO.SUMMARIES.milestoneCountsChanged(userId, ticket, milestone.getGoalId(), 0, doneDelta);
+            DataVersions.bump(userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Milestone ID {0} updated successfully.", milestone.getMilestoneId());
+            }
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error updating milestone ID " + milestone.getMilestoneId() + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after updating milestone.", e);
-            }
+            return false;
         }
-        return success;
     }
 
 
-    public boolean deleteMilestone(int milestoneId, int goalId) {
+    /**
+     * Changes only the status of a milestone (partial update from the JSON API).
+     * Ownership is checked in the same statement through the milestone's goal, so no
+     * separate goal lookup is needed.
+     *
+     * @param milestoneId The milestone to update.
+     * @param userId The current user; milestones of other users' goals are not touched.
+     * @param status The new status.
+     * @return True if the milestone exists, belongs to one of the user's goals and was updated.
+     */
+    public boolean updateMilestoneStatus(int milestoneId, int userId, String status) {
+        String SQL_LOCK_OWNED = "SELECT goal_id, status FROM milestones WHERE milestone_id = ? "
+                + "AND goal_id IN (SELECT goal_id FROM goals WHERE user_id = ?) FOR UPDATE";
+        String SQL_UPDATE_STATUS = "UPDATE milestones SET status = ? WHERE milestone_id = ?";
+
+        try {
+            long ticket = GoalDAO.SUMMARIES.beginWrite(userId);
+            // {goal ID, done delta}, or null if the milestone is not the user's.
+            int[] change = JDBC.inTransaction(transaction -> {
+                Milestone locked = transaction.queryForObject(SQL_LOCK_OWNED, GOAL_AND_STATUS, milestoneId, userId);
+                if (locked == null) {
+                    return null;
+                }
+                transaction.update(SQL_UPDATE_STATUS, status, milestoneId);
+                int delta = doneDelta(locked.getStatus(), status);
+                adjustCounters(transaction, locked.getGoalId(), 0, delta);
+                return new int[]{locked.getGoalId(), delta};
+            });
+            if (change == null) {
+                LOGGER.log(Level.WARNING, "Milestone ID {0} not found or not owned by user {1} for status update.",
+                        new Object[]{milestoneId, userId});
+                return false;
+            }
+            GoalDAO.SUMMARIES.milestoneCountsChanged(userId, ticket, change[0], 0, change[1]);
+            DataVersions.bump(userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Milestone ID {0} status set to ''{1}''.", milestoneId, status);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error updating status of milestone ID " + milestoneId + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a milestone and uncounts it on its goal.
+     *
+     * @param milestoneId The milestone to delete.
+     * @param goalId The goal it must belong to.
+     * @param userId The owner of the goal, already checked by the caller.
+     * @return True if the milestone belonged to the goal and was deleted.
+     */
+    public boolean deleteMilestone(int milestoneId, int goalId, int userId) {
         String SQL_DELETE = "DELETE FROM milestones WHERE milestone_id = ? AND goal_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
 
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_DELETE);
-                preparedStatement.setInt(1, milestoneId);
-                preparedStatement.setInt(2, goalId);
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "Milestone ID {0} deleted successfully for goal ID {1}.",
-                            new Object[]{milestoneId, goalId});
-                } else {
-                    LOGGER.log(Level.WARNING, "Milestone ID {0} not found or not belonging to goal {1} for deletion.",
-                            new Object[]{milestoneId, goalId});
+            long ticket = GoalDAO.SUMMARIES.beginWrite(userId);
+            Integer doneDelta = JDBC.inTransaction(transaction -> {
+                String oldStatus = lockStatus(transaction, milestoneId, goalId);
+                if (oldStatus == null) {
+                    return null;
                 }
+                transaction.update(SQL_DELETE, milestoneId, goalId);
+                int delta = COMPLETED.equals(oldStatus) ? -1 : 0;
+                adjustCounters(transaction, goalId, -1, delta);
+                return delta;
+            });
+            if (doneDelta == null) {
+                LOGGER.log(Level.WARNING, "Milestone ID {0} not found or not belonging to goal {1} for deletion.",
+                        new Object[]{milestoneId, goalId});
+                return false;
             }
+            GoalDAO.SUMMARIES.milestoneCountsChanged(userId, ticket, goalId, -1, doneDelta);
+            DataVersions.bump(userId);
+            if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Milestone ID {0} deleted successfully for goal ID {1}.", milestoneId, goalId);
+            }
+            return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error deleting milestone ID " + milestoneId + ": " + e.getMessage(), e);
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after deleting milestone.", e);
+            return false;
+        }
+    }
+
+    // Number of added and completed milestones per goal, for a batch insert.
+    private static Map<Integer, int[]> countsPerGoal(List<Milestone> milestones) {
+        Map<Integer, int[]> perGoal = new HashMap<>();
+        for (Milestone milestone : milestones) {
+            int[] counts = perGoal.computeIfAbsent(milestone.getGoalId(), id -> new int[2]);
+            counts[0]++;
+            if (COMPLETED.equals(milestone.getStatus())) {
+                counts[1]++;
             }
         }
-        return success;
+        return perGoal;
+    }
+
+    private static int doneDelta(String oldStatus, String newStatus) {
+        return (COMPLETED.equals(newStatus) ? 1 : 0) - (COMPLETED.equals(oldStatus) ? 1 : 0);
+    }
+
+    /**
+     * Changes a goal's milestone counters inside the caller's transaction. Also locks the goal row.
+     *
+     * @param transaction The template of the transaction.
+     * @param goalId The goal.
+     * @param totalDelta Change of milestone_total.
+     * @param doneDelta Change of milestone_done.
+     * @return False if the goal does not exist.
+     * @throws SQLException If the update fails.
+     */
+    private static boolean adjustCounters(JdbcTemplate transaction, int goalId, int totalDelta, int doneDelta) throws SQLException {
+        if (totalDelta == 0 && doneDelta == 0) {
+            return true;
+        }
+        return transaction.update(SQL_ADJUST_COUNTERS, totalDelta, doneDelta, goalId) > 0;
     }
-}
 
+    // Returns the milestone's status, locking its row, or null if it does not belong to the goal.
+    private static String lockStatus(JdbcTemplate transaction, int milestoneId, int goalId) throws SQLException {
+        return transaction.query(SQL_LOCK_STATUS, resultSet -> resultSet.next() ? resultSet.getString(1) : null, milestoneId, goalId);
+    }
+
+    /**
+     * Maps a milestones row (milestone_id ... updated_at).
+     */
+    static final RowMapper<Milestone> MILESTONE = RowMapper.of((resultSet, columns) -> {
+        Milestone milestone = new Milestone();
+        milestone.setMilestoneId(resultSet.getInt(columns[0]));
+        milestone.setGoalId(resultSet.getInt(columns[1]));
+        milestone.setMilestoneDescription(resultSet.getString(columns[2]));
+        milestone.setDueDate(resultSet.getDate(columns[3]));
+        milestone.setStatus(resultSet.getString(columns[4]));
+        milestone.setCreatedAt(resultSet.getTimestamp(columns[5]));
+        milestone.setUpdatedAt(resultSet.getTimestamp(columns[6]));
+        return milestone;
+    }, "milestone_id", "goal_id", "milestone_description", "due_date", "status", "created_at", "updated_at");
+
+    // Just the goal and status of a milestone, as locked for a status change.
+    private static final RowMapper<Milestone> GOAL_AND_STATUS = RowMapper.of((resultSet, columns) -> {
+        Milestone milestone = new Milestone();
+        milestone.setGoalId(resultSet.getInt(columns[0]));
+        milestone.setStatus(resultSet.getString(columns[1]));
+        return milestone;
+    }, "goal_id", "status");
+}
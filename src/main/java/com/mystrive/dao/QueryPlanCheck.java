@@ -0,0 +1,143 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+import com.mystrive.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs EXPLAIN on the DAOs' hot queries and reports any that MySQL would answer with a
+ * table scan or a filesort. Meant for MySQL/MariaDB; on tiny tables the optimizer may
+ * prefer a scan regardless of indexes, so run it against a realistically sized database.
+ * Can be run from the command line (exit status 1 when a plan looks wrong) or at
+ * application startup by setting DB_EXPLAIN_CHECK=true.
+ */
+public class QueryPlanCheck {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryPlanCheck.class.getName());
+
+    private static final Date SAMPLE_DATE = Date.valueOf("2025-06-12");
+
+    private QueryPlanCheck() {
+    }
+
+    // Query name -> SQL and sample parameters. Parameter values only need the right types.
+    private static Map<String, Object[]> queries() {
+        Map<String, Object[]> queries = new LinkedHashMap<>();
+        queries.put("GoalDAO.getAllGoalsByUserId", new Object[]{GoalDAO.SQL_SELECT_BY_USER, 1});
+        queries.put("GoalDAO.getAllGoalsByUserIdAndCategoryId", new Object[]{GoalDAO.SQL_SELECT_BY_USER_AND_CATEGORY, 1, 1});
+        queries.put("GoalDAO.getGoalsPage (first page)", new Object[]{GoalDAO.PAGE_SQL[0], 1, 51});
+        queries.put("GoalDAO.getGoalsPage (first page, category)", new Object[]{GoalDAO.PAGE_SQL[1], 1, 1, 51});
+        queries.put("GoalDAO.getGoalsPage (after dated goal)", new Object[]{GoalDAO.PAGE_SQL[2], 1, SAMPLE_DATE, SAMPLE_DATE, 1, 51});
+        queries.put("GoalDAO.getGoalsPage (after dated goal, category)", new Object[]{GoalDAO.PAGE_SQL[3], 1, 1, SAMPLE_DATE, SAMPLE_DATE, 1, 51});
+        queries.put("GoalDAO.getGoalWithMilestones", new Object[]{GoalDAO.SQL_SELECT_WITH_MILESTONES, 1, 1});
+        queries.put("GoalDAO.getDashboardSummary", new Object[]{GoalDAO.SQL_SUMMARY, 1});
+        queries.put("MilestoneDAO.getAllMilestonesByGoalId", new Object[]{MilestoneDAO.SQL_SELECT_BY_GOAL, 1});
+        queries.put("CategoryDAO.getAllCategoriesByUserId", new Object[]{CategoryDAO.SQL_SELECT_BY_USER, 1});
+        return queries;
+    }
+
+    /**
+     * Explains every hot query and collects the problems found.
+     *
+     * @return One line per query whose plan scans a table or filesorts; empty if all plans are fine.
+     * @throws SQLException If the database cannot be reached or EXPLAIN fails.
+     */
+    public static List<String> run() throws SQLException {
+        List<String> problems = new ArrayList<>();
+        Connection connection = DBConnection.getConnection();
+        if (connection == null) {
+            throw new SQLException("No database connection available for the query plan check.");
+        }
+        try {
+            for (Map.Entry<String, Object[]> query : queries().entrySet()) {
+                Object[] spec = query.getValue();
+                try (PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN " + spec[0])) {
+                    for (int i = 1; i < spec.length; i++) {
+                        preparedStatement.setObject(i, spec[i]);
+                    }
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            String problem = checkRow(resultSet);
+                            if (problem != null) {
+                                problems.add(query.getKey() + ": " + problem);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            DBConnection.closeConnection(connection);
+        }
+        return problems;
+    }
+
+    /**
+     * Runs the check and logs the outcome; used at startup, where a bad plan must not stop the application.
+     */
+    public static void runAndLog() {
+        try {
+            List<String> problems = run();
+            if (problems.isEmpty()) {
+                LOGGER.log(Level.INFO, "Query plan check passed: all hot queries use an index without a filesort.");
+            }
+            for (String problem : problems) {
+                LOGGER.log(Level.WARNING, "Query plan check: {0}", problem);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Query plan check could not run: " + e.getMessage(), e);
+        }
+    }
+
+    // Inspects one EXPLAIN row (one table of the plan).
+    private static String checkRow(ResultSet row) throws SQLException {
+        String table = row.getString("table");
+        String type = row.getString("type");
+        String key = row.getString("key");
+        String extra = row.getString("Extra");
+        if (extra != null && extra.contains("Using filesort")) {
+            return "table " + table + " needs a filesort (key=" + key + ", Extra=" + extra + ")";
+        }
+        // const/system tables are resolved from a primary key before the join runs.
+        boolean constant = "const".equals(type) || "system".equals(type);
+        if (key == null && !constant) {
+            return "table " + table + " is read without an index (type=" + type + ", Extra=" + extra + ")";
+        }
+        return null;
+    }
+
+    /**
+     * Command line entry point; uses the same DB_* settings as the application.
+     *
+     * @param args Ignored.
+     * @throws SQLException If the check cannot run.
+     */
+    public static void main(String[] args) throws SQLException {
+        List<String> problems;
+        try {
+            problems = run();
+        } finally {
+            DBConnection.shutdown();
+        }
+        for (String problem : problems) {
+            System.out.println(problem);
+        }
+        System.out.println(problems.isEmpty() ? "All query plans OK." : problems.size() + " query plan problem(s).");
+        if (!problems.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
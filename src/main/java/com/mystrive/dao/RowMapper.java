@@ -0,0 +1,112 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns result-set rows into objects, reading columns by position. The positions are looked
+ * up from the column labels once per result set, rather than once per row and column as
+ * {@code resultSet.getInt("goal_id")} does, so each value read is a plain index access in
+ * the driver. One mapper serves every query that selects its columns, in any order.
+ *
+ * @param <T> The mapped type.
+ */
+final class RowMapper<T> {
+
+    /**
+     * Reads one row.
+     *
+     * @param <T> The mapped type.
+     */
+    @FunctionalInterface
+    interface Reader<T> {
+        /**
+         * @param resultSet A result set positioned on a row.
+         * @param columns The 1-based positions of the mapper's columns, in the order of its labels.
+         * @return The mapped row.
+         * @throws SQLException If a column cannot be read.
+         */
+        T read(ResultSet resultSet, int[] columns) throws SQLException;
+    }
+
+    private final Reader<T> reader;
+    private final String[] labels;
+
+    private RowMapper(Reader<T> reader, String[] labels) {
+        this.reader = reader;
+        this.labels = labels;
+    }
+
+    /**
+     * @param reader Reads a row; columns[i] is the position of labels[i].
+     * @param labels The column labels the reader uses.
+     * @return The mapper.
+     */
+    static <T> RowMapper<T> of(Reader<T> reader, String... labels) {
+        return new RowMapper<>(reader, labels.clone());
+    }
+
+    /**
+     * The same mapper for a query that selects its columns under other labels, e.g. aliases in a join.
+     *
+     * @param aliases One label per label of this mapper, in the same order.
+     * @return The mapper reading the aliased columns.
+     */
+    RowMapper<T> withLabels(String... aliases) {
+        if (aliases.length != labels.length) {
+            throw new IllegalArgumentException("Expected " + labels.length + " column labels, got " + aliases.length + ".");
+        }
+        return new RowMapper<>(reader, aliases.clone());
+    }
+
+    /**
+     * Looks up the positions of the mapper's columns in a result set.
+     *
+     * @param resultSet The result set.
+     * @return The positions, to be passed to {@link #read}.
+     * @throws SQLException If a column is missing from the result set.
+     */
+    int[] resolve(ResultSet resultSet) throws SQLException {
+        int[] columns = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            columns[i] = resultSet.findColumn(labels[i]);
+        }
+        return columns;
+    }
+
+    /**
+     * Maps the current row.
+     *
+     * @param resultSet A result set positioned on a row.
+     * @param columns The positions returned by {@link #resolve} for this result set.
+     * @return The mapped row.
+     * @throws SQLException If a column cannot be read.
+     */
+    T read(ResultSet resultSet, int[] columns) throws SQLException {
+        return reader.read(resultSet, columns);
+    }
+
+    /**
+     * Maps all remaining rows.
+     *
+     * @param resultSet A result set positioned before the first row to map.
+     * @return The mapped rows; empty if there are none.
+     * @throws SQLException If the rows cannot be read.
+     */
+    List<T> readAll(ResultSet resultSet) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        if (resultSet.next()) {
+            int[] columns = resolve(resultSet);
+            do {
+                rows.add(reader.read(resultSet, columns));
+            } while (resultSet.next());
+        }
+        return rows;
+    }
+}
@@ -5,11 +5,9 @@
 package com.mystrive.dao;
 
 import com.mystrive.model.User;
-import com.mystrive.util.DBConnection;
+import com.mystrive.util.LogContext;
+import com.mystrive.util.PasswordHasher;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,122 +16,116 @@ public class UserDAO {
 
     private static final Logger LOGGER = Logger.getLogger(UserDAO.class.getName());
 
+    private static final JdbcTemplate JDBC = JdbcTemplate.JDBC;
+
+    /**
+     * Stores a new user with a hash of the password (see {@link PasswordHasher}).
+     * The password is hashed before a connection is borrowed, so the pool is not held during the hashing.
+     *
+     * @param user The user, with the password as entered.
+     * @return True if the user was stored.
+     * @throws java.util.concurrent.RejectedExecutionException If the password hashing pool is saturated.
+     */
     public boolean registerUser(User user) {
         String SQL_INSERT = "INSERT INTO users (username, password, email) VALUES (?, ?, ?)";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        boolean success = false;
-
+        String passwordHash = PasswordHasher.get().hash(user.getPassword());
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_INSERT);
-                preparedStatement.setString(1, user.getUsername());
-                preparedStatement.setString(2, user.getPassword()); // Remember to hash passwords in a real app!
-                preparedStatement.setString(3, user.getEmail());
-
-                int rowsAffected = preparedStatement.executeUpdate();
-                if (rowsAffected > 0) {
-                    success = true;
-                    LOGGER.log(Level.INFO, "User {0} registered successfully.", user.getUsername());
-                }
+            if (JDBC.update(SQL_INSERT, user.getUsername(), passwordHash, user.getEmail()) > 0) {
+                LOGGER.log(Level.INFO, "User {0} registered successfully.", user.getUsername());
+                return true;
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error registering user: " + e.getMessage(), e);
             // Handle specific errors like duplicate username/email if needed
-        } finally {
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after user registration.", e);
-            }
         }
-        return success;
+        return false;
     }
 
 
-    public User loginUser(String username, String password) {
-        String SQL_SELECT = "SELECT user_id, username, password, email, created_at FROM users WHERE username = ? AND password = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        User user = null;
+    /**
+     * Checks a username and password. The user row is read first and the password verified
+     * afterwards, without holding a connection; a password stored in plain text or with an
+     * older cost is replaced by a fresh hash once it has been verified.
+     *
+     * @param username The username entered.
+     * @param password The password entered.
+     * @return The user, or null if the username or password is wrong.
+     * @throws SQLException If the user could not be read; unlike a wrong password, nothing is known about the credentials.
+     * @throws java.util.concurrent.RejectedExecutionException If the password hashing pool is saturated.
+     */
+    public User loginUser(String username, String password) throws SQLException {
+        String SQL_SELECT = "SELECT user_id, username, password, email, created_at FROM users WHERE username = ?";
+        User user = JDBC.queryForObject(SQL_SELECT, USER, username);
+
+        PasswordHasher hasher = PasswordHasher.get();
+        String stored = user != null ? user.getPassword() : null;
+        if (!hasher.verify(password, stored)) { // Also takes the time of a hash when the user does not exist
+            LOGGER.log(Level.WARNING, "Login failed for user: {0}. Invalid credentials.", username);
+            return null;
+        }
+        if (hasher.needsRehash(stored)) {
+            String newHash = hasher.hash(password);
+            if (updatePasswordHash(user.getUserId(), stored, newHash)) {
+                hasher.recordRehash();
+                user.setPassword(newHash);
+            }
+        }
+        if (LogContext.isDebugEnabled(LOGGER)) {
+            LogContext.debug(LOGGER, "User {0} logged in successfully.", username);
+        }
+        return user;
+    }
 
+    /**
+     * Replaces a user's stored password, unless it was changed since it was read.
+     *
+     * @param userId The user.
+     * @param expected The stored value the new hash replaces.
+     * @param passwordHash The new hash.
+     * @return True if the row was updated.
+     */
+    private boolean updatePasswordHash(int userId, String expected, String passwordHash) {
+        String SQL_UPDATE = "UPDATE users SET password = ? WHERE user_id = ? AND password = ?";
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setString(1, username);
-                preparedStatement.setString(2, password); // Again, use hashed passwords in a real app!
-
-                resultSet = preparedStatement.executeQuery();
-
-                if (resultSet.next()) {
-                    user = new User();
-                    user.setUserId(resultSet.getInt("user_id"));
-                    user.setUsername(resultSet.getString("username"));
-                    user.setPassword(resultSet.getString("password"));
-                    user.setEmail(resultSet.getString("email"));
-                    user.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    LOGGER.log(Level.INFO, "User {0} logged in successfully.", username);
-                } else {
-                    LOGGER.log(Level.WARNING, "Login failed for user: {0}. Invalid credentials.", username);
-                }
+            boolean success = JDBC.update(SQL_UPDATE, passwordHash, userId, expected) > 0;
+            if (success && LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "Password of user ID {0} rehashed.", userId);
             }
+            return success;
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error during user login: " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after user login.", e);
-            }
+            // The login itself succeeded; the rehash is retried on the next one.
+            LOGGER.log(Level.WARNING, "Error rehashing the password of user ID " + userId + ": " + e.getMessage(), e);
+            return false;
         }
-        return user;
     }
 
 
     public User getUserById(int userId) {
         String SQL_SELECT = "SELECT user_id, username, password, email, created_at FROM users WHERE user_id = ?";
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        User user = null;
-
         try {
-            connection = DBConnection.getConnection();
-            if (connection != null) {
-                preparedStatement = connection.prepareStatement(SQL_SELECT);
-                preparedStatement.setInt(1, userId);
-
-                resultSet = preparedStatement.executeQuery();
-
-                if (resultSet.next()) {
-                    user = new User();
-                    user.setUserId(resultSet.getInt("user_id"));
-                    user.setUsername(resultSet.getString("username"));
-                    user.setPassword(resultSet.getString("password"));
-                    user.setEmail(resultSet.getString("email"));
-                    user.setCreatedAt(resultSet.getTimestamp("created_at"));
-                    LOGGER.log(Level.INFO, "User with ID {0} retrieved successfully.", userId);
-                } else {
-                    LOGGER.log(Level.WARNING, "User with ID {0} not found.", userId);
-                }
+            User user = JDBC.queryForObject(SQL_SELECT, USER, userId);
+            if (user == null) {
+                LOGGER.log(Level.WARNING, "User with ID {0} not found.", userId);
+            } else if (LogContext.isDebugEnabled(LOGGER)) {
+                LogContext.debug(LOGGER, "User with ID {0} retrieved successfully.", userId);
             }
+            return user;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving user by ID: " + e.getMessage(), e);
-        } finally {
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                DBConnection.closeConnection(connection);
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing resources after retrieving user by ID.", e);
-            }
+            return null;
         }
-        return user;
     }
+
+    /**
+     * Maps a users row, including the stored password hash.
+     */
+    static final RowMapper<User> USER = RowMapper.of((resultSet, columns) -> {
+        User user = new User();
+        user.setUserId(resultSet.getInt(columns[0]));
+        user.setUsername(resultSet.getString(columns[1]));
+        user.setPassword(resultSet.getString(columns[2]));
+        user.setEmail(resultSet.getString(columns[3]));
+        user.setCreatedAt(resultSet.getTimestamp(columns[4]));
+        return user;
+    }, "user_id", "username", "password", "email", "created_at");
 }
@@ -0,0 +1,70 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.model;
+
+import java.util.Map;
+
+/**
+ * Counts shown in the dashboard's summary panel, across all of a user's goals.
+ * Built by GoalDAO from an in-memory per-user aggregate; instances are immutable.
+ */
+public class DashboardSummary {
+    private final int totalGoals;
+    private final Map<String, Integer> statusCounts;
+    private final int overdueGoals;
+    private final int dueSoonGoals;
+    private final int milestoneTotal;
+    private final int milestoneCompleted;
+
+    public DashboardSummary(int totalGoals, Map<String, Integer> statusCounts, int overdueGoals, int dueSoonGoals,
+            int milestoneTotal, int milestoneCompleted) {
+        this.totalGoals = totalGoals;
+        this.statusCounts = statusCounts;
+        this.overdueGoals = overdueGoals;
+        this.dueSoonGoals = dueSoonGoals;
+        this.milestoneTotal = milestoneTotal;
+        this.milestoneCompleted = milestoneCompleted;
+    }
+
+    public int getTotalGoals() {
+        return totalGoals;
+    }
+
+    /**
+     * @return Number of goals per status, in the order the forms list the statuses.
+     */
+    public Map<String, Integer> getStatusCounts() {
+        return statusCounts;
+    }
+
+    /**
+     * @return Open goals (not Completed or Cancelled) whose target date has passed.
+     */
+    public int getOverdueGoals() {
+        return overdueGoals;
+    }
+
+    /**
+     * @return Open goals whose target date is today or within the next 7 days.
+     */
+    public int getDueSoonGoals() {
+        return dueSoonGoals;
+    }
+
+    public int getMilestoneTotal() {
+        return milestoneTotal;
+    }
+
+    public int getMilestoneCompleted() {
+        return milestoneCompleted;
+    }
+
+    /**
+     * @return Completed milestones as a percentage of all milestones (0 when there are none).
+     */
+    public int getMilestoneCompletionPercent() {
+        return milestoneTotal == 0 ? 0 : milestoneCompleted * 100 / milestoneTotal;
+    }
+}
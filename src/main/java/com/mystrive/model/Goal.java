@@ -6,6 +6,7 @@ package com.mystrive.model;
 
 import java.sql.Date;
 import java.sql.Timestamp;
+import java.util.List;
 
 
 public class Goal {
@@ -17,9 +18,13 @@ public class Goal {
     private String status;
     private Timestamp createdAt;
     private Timestamp updatedAt;
+    private int milestoneTotal; // Maintained by MilestoneDAO
+    private int milestoneDone;
 
     private String categoryName;
 
+    private List<Milestone> milestones; // Only populated by GoalDAO.getGoalWithMilestones
+
     public Goal() {
     }
 
@@ -106,6 +111,29 @@ public class Goal {
         this.updatedAt = updatedAt;
     }
 
+    public int getMilestoneTotal() {
+        return milestoneTotal;
+    }
+
+    public void setMilestoneTotal(int milestoneTotal) {
+        this.milestoneTotal = milestoneTotal;
+    }
+
+    public int getMilestoneDone() {
+        return milestoneDone;
+    }
+
+    public void setMilestoneDone(int milestoneDone) {
+        this.milestoneDone = milestoneDone;
+    }
+
+    /**
+     * @return The percentage of this goal's milestones that are completed, 0 if it has none.
+     */
+    public int getProgressPercent() {
+        return milestoneTotal == 0 ? 0 : milestoneDone * 100 / milestoneTotal;
+    }
+
     public String getCategoryName() {
         return categoryName;
     }
@@ -113,5 +141,13 @@ public class Goal {
     public void setCategoryName(String categoryName) {
         this.categoryName = categoryName;
     }
+
+    public List<Milestone> getMilestones() {
+        return milestones;
+    }
+
+    public void setMilestones(List<Milestone> milestones) {
+        this.milestones = milestones;
+    }
 }
 
@@ -0,0 +1,35 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.model;
+
+import java.util.List;
+
+/**
+ * One page of a user's goals, as returned by GoalDAO's keyset-paginated listing.
+ */
+public class GoalPage {
+    private final List<Goal> goals;
+    private final String nextCursor;
+
+    public GoalPage(List<Goal> goals, String nextCursor) {
+        this.goals = goals;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Goal> getGoals() {
+        return goals;
+    }
+
+    /**
+     * @return The opaque cursor of the following page, or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+}
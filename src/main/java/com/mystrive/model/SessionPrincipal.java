@@ -0,0 +1,67 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.model;
+
+import java.io.Serializable;
+
+/**
+ * The logged-in user as kept in the session (or rebuilt from the auth token): only the ID the
+ * servlets query by and the name the header shows. Immutable and serializable, so sessions
+ * holding it can be saved across a restart or replicated; the password hash, email and creation
+ * date stay in the database.
+ */
+public final class SessionPrincipal implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int userId;
+    private final String username;
+
+    public SessionPrincipal(int userId, String username) {
+        this.userId = userId;
+        this.username = username;
+    }
+
+    /**
+     * @param user An authenticated user.
+     * @return The principal for the user.
+     */
+    public static SessionPrincipal of(User user) {
+        return new SessionPrincipal(user.getUserId(), user.getUsername());
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return The username, shown as the display name.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof SessionPrincipal)) {
+            return false;
+        }
+        SessionPrincipal that = (SessionPrincipal) other;
+        return userId == that.userId && username.equals(that.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * userId + username.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionPrincipal[userId=" + userId + ", username=" + username + "]";
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Takes log writing off the request threads. publish() only stamps the record with the current
+ * request's correlation ID and puts it into a bounded ring buffer; a single daemon thread formats
+ * the records with {@link LogFormatter} and writes them to the console in batches.
+ * <ul>
+ * <li>A full buffer never blocks the caller: the record is dropped and counted instead.</li>
+ * <li>Each request may log at most LOG_MAX_RECORDS_PER_REQUEST records below WARNING (see {@link LogContext}).</li>
+ * <li>The time spent in publish() and the records per request are published over JMX and on /metrics.</li>
+ * </ul>
+ * Installed on the "com.mystrive" logger by {@link #install()} unless LOG_ASYNC=false; the buffer
+ * holds LOG_BUFFER_SIZE records (default 8192). Records still buffered when the JVM dies are lost,
+ * so warnings about a crash may be missing; shutting down through the listener writes them all.
+ */
+public class AsyncLogHandler extends Handler implements AsyncLogHandlerMXBean {
+
+    private static final String APP_LOGGER = "com.mystrive";
+    private static final int BATCH_SIZE = 256;
+    private static final long SHUTDOWN_WAIT_MILLIS = 2000;
+
+    // Held so the logger, and the handler configured on it, are not garbage collected.
+    private static Logger appLogger;
+    private static AsyncLogHandler installed;
+
+    private final ArrayBlockingQueue<Entry> buffer;
+    private final PrintStream out;
+    private final Thread writer;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder droppedBufferFull = new LongAdder();
+    private final LongAdder droppedOverBudget = new LongAdder();
+    private final LongAdder publishNanos = new LongAdder();
+
+    /**
+     * Creates a handler and starts its writer thread.
+     *
+     * @param out Where formatted records are written.
+     * @param capacity The number of records the buffer holds.
+     */
+    public AsyncLogHandler(PrintStream out, int capacity) {
+        this.out = out;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(16, capacity));
+        setLevel(Level.ALL);
+        setFormatter(new LogFormatter());
+        writer = new Thread(this::writeLoop, "mystrive-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Routes the application's loggers through an asynchronous handler, unless LOG_ASYNC=false.
+     */
+    public static synchronized void install() {
+        if (installed != null || !Boolean.parseBoolean(DBConnection.config("LOG_ASYNC", "true"))) {
+            return;
+        }
+        installed = new AsyncLogHandler(System.err, DBConnection.configInt("LOG_BUFFER_SIZE", 8192));
+        appLogger = Logger.getLogger(APP_LOGGER);
+        appLogger.addHandler(installed);
+        appLogger.setUseParentHandlers(false);
+        JmxSupport.register("Logging", installed);
+    }
+
+    /**
+     * Writes out what is still buffered and gives the application's loggers back to the parent handlers.
+     */
+    public static synchronized void uninstall() {
+        if (installed == null) {
+            return;
+        }
+        appLogger.removeHandler(installed);
+        appLogger.setUseParentHandlers(true);
+        installed.close();
+        JmxSupport.unregister("Logging");
+        installed = null;
+        appLogger = null;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            LogContext context = LogContext.current();
+            int level = record.getLevel().intValue();
+            if (context != null && level < Level.WARNING.intValue() && !context.takeRecord()) {
+                droppedOverBudget.increment();
+                return;
+            }
+            Entry entry = new Entry(record, context != null ? context.getRequestId() : null,
+                    level < Level.INFO.intValue() && context != null && context.isSampled());
+            if (buffer.offer(entry)) {
+                published.increment();
+            } else {
+                droppedBufferFull.increment();
+            }
+        } finally {
+            publishNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder text = new StringBuilder(16 * 1024);
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            buffer.drainTo(batch, BATCH_SIZE - 1);
+            write(batch, text);
+        }
+        buffer.drainTo(batch);
+        write(batch, text);
+    }
+
+    private void write(List<Entry> batch, StringBuilder text) {
+        Formatter formatter = getFormatter();
+        for (Entry entry : batch) {
+            try {
+                text.append(formatter instanceof LogFormatter
+                        ? ((LogFormatter) formatter).format(entry.record, entry.requestId, entry.sampled)
+                        : formatter.format(entry.record));
+            } catch (RuntimeException e) {
+                reportError("Could not format a log record.", e, ErrorManager.FORMAT_FAILURE);
+            }
+        }
+        out.print(text);
+        out.flush();
+        written.add(batch.size());
+        batch.clear();
+        text.setLength(0);
+    }
+
+    /**
+     * Does nothing: records are written by the writer thread as soon as it gets to them.
+     */
+    @Override
+    public void flush() {
+        // Nothing to do on the caller's thread.
+    }
+
+    /**
+     * Stops the writer thread once it has written everything buffered.
+     */
+    @Override
+    public void close() {
+        writer.interrupt();
+        try {
+            writer.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long getPublished() {
+        return published.sum();
+    }
+
+    @Override
+    public long getWritten() {
+        return written.sum();
+    }
+
+    @Override
+    public long getDroppedBufferFull() {
+        return droppedBufferFull.sum();
+    }
+
+    @Override
+    public long getDroppedOverBudget() {
+        return droppedOverBudget.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffer.size() + buffer.remainingCapacity();
+    }
+
+    @Override
+    public double getAveragePublishNanos() {
+        long count = published.sum() + droppedBufferFull.sum() + droppedOverBudget.sum();
+        return count == 0 ? 0.0 : (double) publishNanos.sum() / count;
+    }
+
+    @Override
+    public double getRecordsPerRequest() {
+        long requests = LogContext.requestCount();
+        return requests == 0 ? 0.0 : (double) published.sum() / requests;
+    }
+
+    /**
+     * A record waiting to be written, with what had to be captured on the logging thread.
+     */
+    private static final class Entry {
+        private final LogRecord record;
+        private final String requestId;
+        private final boolean sampled;
+
+        private Entry(LogRecord record, String requestId, boolean sampled) {
+            this.record = record;
+            this.requestId = requestId;
+            this.sampled = sampled;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+/**
+ * Logging pipeline statistics, published over JMX as "com.mystrive:type=Logging".
+ */
+public interface AsyncLogHandlerMXBean {
+
+    long getPublished();
+
+    long getWritten();
+
+    long getDroppedBufferFull();
+
+    long getDroppedOverBudget();
+
+    int getQueueDepth();
+
+    int getCapacity();
+
+    double getAveragePublishNanos();
+
+    double getRecordsPerRequest();
+}
@@ -0,0 +1,572 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A small bounded JDBC connection pool.
+ * Connections handed out by {@link #borrow()} are proxies: calling close() on them
+ * returns the physical connection to the pool instead of closing the socket.
+ * A housekeeping thread evicts idle connections above the minimum size, tops the
+ * pool back up to the minimum, replaces connections discarded while borrowers wait and
+ * reports borrowers that hold a connection too long (with the borrowing stack trace only
+ * when leak tracing is on, as capturing it on every borrow is not free).
+ * Each physical connection keeps its own {@link StatementCache}, so the fixed DAO SQL
+ * strings are prepared once per connection rather than once per call. The time each
+ * borrower holds its connection is reported to {@link Metrics}, and every prepared statement
+ * is timed for {@link SqlStatistics} and the slow query log. The borrowing method is only
+ * looked up when something is reported about it, or on every borrow when the per-method
+ * timings are switched on (METRICS_DAO_METHODS=true).
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    // Classes whose frames callerName() looks past, with their nested classes.
+    private static final Set<String> SKIPPED_CLASSES = ConcurrentHashMap.newKeySet();
+
+    static {
+        skipInCallerNames(ConnectionPool.class, StatementCache.class, TimedStatement.class,
+                SqlStatistics.class, DBConnection.class);
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final long leakThresholdMillis;
+    private final boolean leakTrace;
+    private final int statementCacheSize;
+
+    // Idle connections, most recently returned first so warm connections are reused.
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    // Statistics used to size the pool.
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final SqlStatistics sqlStatistics;
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String username, String password, int minSize, int maxSize,
+            long borrowTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis,
+            long leakThresholdMillis, boolean leakTrace, long housekeepingIntervalMillis, int statementCacheSize,
+            SqlStatistics sqlStatistics) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.leakTrace = leakTrace && leakThresholdMillis > 0;
+        this.statementCacheSize = statementCacheSize;
+        this.sqlStatistics = sqlStatistics;
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mystrive-db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingIntervalMillis,
+                housekeepingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured borrow timeout when the pool is exhausted.
+     *
+     * @return A pooled connection; closing it returns it to the pool.
+     * @throws SQLException If no connection could be obtained in time or the database is unreachable.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        while (true) {
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null) {
+                pooled = createIfBelowMax();
+            }
+            if (pooled == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeoutCount.increment();
+                    throw new SQLException("Timed out after " + borrowTimeoutMillis
+                            + " ms waiting for a database connection (active=" + borrowed.size()
+                            + ", max=" + maxSize + ").");
+                }
+                // Only a borrower actually blocked on the pool counts as waiting.
+                waiters.incrementAndGet();
+                try {
+                    // Checked again now that this borrower is counted: destroy() only replaces a
+                    // discarded connection for waiters it can see, so capacity freed just before would be missed.
+                    pooled = createIfBelowMax();
+                    if (pooled == null) {
+                        pooled = idle.pollFirst(remaining, TimeUnit.NANOSECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection.", e);
+                } finally {
+                    waiters.decrementAndGet();
+                }
+                if (pooled == null) {
+                    continue;
+                }
+            }
+            if (!isUsable(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            long waited = System.nanoTime() - start;
+            recordWait(waited);
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowedNanos = System.nanoTime();
+            pooled.borrowWaitNanos = waited;
+            pooled.borrower = Metrics.DAO_METHODS ? callerName() : null;
+            // Capturing the stack costs more than the rest of the borrow, so it is only done on request.
+            pooled.borrowSite = leakTrace ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        }
+    }
+
+    /**
+     * Makes {@link #callerName()} look past the given classes, e.g. the DAOs' own JDBC helpers,
+     * so database work is named after the DAO method that asked for it.
+     *
+     * @param classes Classes that only pass database calls through; their nested classes are skipped too.
+     */
+    public static void skipInCallerNames(Class<?>... classes) {
+        for (Class<?> skipped : classes) {
+            SKIPPED_CLASSES.add(skipped.getName());
+        }
+    }
+
+    /**
+     * Names the method using the database on the current thread. Walks the stack, so it is only
+     * called when the name is needed.
+     *
+     * @return The first caller outside the pool, its statement wrappers, DBConnection and the
+     *         classes passed to {@link #skipInCallerNames}, e.g. "GoalDAO.getGoalsPage". Lambdas are
+     *         skipped too, so work done in a transaction is named after the method that started it.
+     */
+    static String callerName() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> !isSkipped(frame.getClassName(), frame.getMethodName()))
+                .findFirst()
+                .map(frame -> shortName(frame.getClassName(), frame.getMethodName()))
+                .orElse("unknown"));
+    }
+
+    // The same for a captured stack, e.g. where a leaked connection was borrowed.
+    private static String callerName(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (!isSkipped(frame.getClassName(), frame.getMethodName())) {
+                return shortName(frame.getClassName(), frame.getMethodName());
+            }
+        }
+        return "unknown";
+    }
+
+    private static boolean isSkipped(String className, String methodName) {
+        if (methodName.startsWith("lambda$") || className.contains("$Proxy")) {
+            return true;
+        }
+        int nested = className.indexOf('$');
+        return SKIPPED_CLASSES.contains(nested < 0 ? className : className.substring(0, nested));
+    }
+
+    private static String shortName(String className, String methodName) {
+        return className.substring(className.lastIndexOf('.') + 1) + "." + methodName;
+    }
+
+    private PooledConnection createIfBelowMax() throws SQLException {
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= maxSize) {
+                return null;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                try {
+                    return new PooledConnection(DriverManager.getConnection(url, username, password));
+                } catch (SQLException | RuntimeException e) {
+                    totalConnections.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Only connections that sat idle for a while are validated, which keeps the common borrow cheap.
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.lastReturnedAt >= validationIntervalMillis) {
+                return pooled.physical.isValid(2);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding pooled connection that failed validation: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void recordWait(long waitedNanos) {
+        borrowCount.increment();
+        totalWaitNanos.add(waitedNanos);
+        long max;
+        while (waitedNanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, waitedNanos)) {
+                break;
+            }
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        pooled.borrowSite = null;
+        if (Metrics.ENABLED) {
+            Metrics.recordDao(pooled.borrower, System.nanoTime() - pooled.borrowedNanos);
+            pooled.borrower = null;
+        }
+        if (pooled.statements != null) {
+            pooled.statements.releaseAll();
+        }
+        boolean reusable = !closed;
+        try {
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                // Never hand a half-finished transaction to the next borrower.
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            reusable = reusable && !pooled.physical.isClosed();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding pooled connection that could not be reset: " + e.getMessage(), e);
+            reusable = false;
+        }
+        if (reusable) {
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing physical connection: " + e.getMessage(), e);
+        }
+        if (waiters.get() > 0 && !closed) {
+            // Borrowers parked on the idle queue would otherwise sleep until their timeout. The
+            // replacement is opened on the housekeeping thread so the caller does not wait for a handshake.
+            try {
+                housekeeper.execute(this::replaceForWaiters);
+            } catch (RejectedExecutionException e) {
+                LOGGER.log(Level.FINE, "Pool is shutting down; discarded connection not replaced.");
+            }
+        }
+    }
+
+    private void replaceForWaiters() {
+        if (closed || waiters.get() == 0) {
+            return;
+        }
+        try {
+            PooledConnection created = createIfBelowMax();
+            if (created != null) {
+                created.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(created);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not replace a discarded connection for waiting borrowers: " + e.getMessage(), e);
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // Evict connections idle for too long, but never shrink below the minimum size.
+            for (PooledConnection pooled : idle) {
+                if (totalConnections.get() <= minSize) {
+                    break;
+                }
+                if (now - pooled.lastReturnedAt >= idleTimeoutMillis && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+
+            // Top the pool back up so the first requests after a quiet period do not pay for a handshake.
+            while (!closed && totalConnections.get() < minSize) {
+                PooledConnection created = createIfBelowMax();
+                if (created == null) {
+                    break;
+                }
+                created.lastReturnedAt = System.currentTimeMillis();
+                idle.offerLast(created);
+            }
+
+            if (leakThresholdMillis > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    long borrowedAt = pooled.borrowedAt;
+                    if (!pooled.leakReported && now - borrowedAt >= leakThresholdMillis) {
+                        pooled.leakReported = true;
+                        leakCount.increment();
+                        Throwable site = pooled.borrowSite;
+                        String borrower = pooled.borrower != null ? pooled.borrower
+                                : site != null ? callerName(site.getStackTrace()) : null;
+                        LOGGER.log(Level.WARNING, "Possible connection leak: connection held for "
+                                + (now - borrowedAt) + " ms (threshold " + leakThresholdMillis + " ms)"
+                                + (borrower != null ? " by " + borrower + "."
+                                        : ". Set DB_POOL_LEAK_TRACE=true to log where it was borrowed."), site);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Connection pool housekeeping could not open a connection: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Unexpected error during connection pool housekeeping.", e);
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeping thread.
+     * Connections still borrowed are closed when their borrowers return them.
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        LOGGER.log(Level.INFO, "Connection pool shut down. {0}", this);
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return maxSize;
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return waiters.get();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0.0 : totalWaitNanos.sum() / (borrows * 1_000_000.0);
+    }
+
+    @Override
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementCounters.hits.sum();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementCounters.misses.sum();
+    }
+
+    @Override
+    public long getStatementCacheEvictions() {
+        return statementCounters.evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveConnections() + ", idle=" + getIdleConnections()
+                + ", max=" + maxSize + ", waiters=" + getWaitingThreads() + ", borrows=" + getBorrowCount()
+                + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis())
+                + ", timeouts=" + getTimeoutCount() + ", leaks=" + getLeakCount()
+                + ", stmtHits=" + getStatementCacheHits() + ", stmtMisses=" + getStatementCacheMisses() + "]";
+    }
+
+    /**
+     * A physical connection owned by the pool plus its borrow bookkeeping.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile long borrowedNanos;
+        private volatile long borrowWaitNanos;
+        // The DAO method holding the connection, only looked up for the per-method timings in Metrics.
+        private volatile String borrower;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCounters) : null;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    /**
+     * The borrower's view of a pooled connection. A fresh handle is created per borrow so a
+     * stale reference closed twice cannot return the same physical connection twice.
+     */
+    private final class Handle implements InvocationHandler {
+        private PooledConnection pooled;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (pooled != null) {
+                        PooledConnection returning = pooled;
+                        pooled = null;
+                        release(returning);
+                    }
+                    return null;
+                case "isClosed":
+                    return pooled == null || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (pooled == null ? "closed" : pooled.physical) + "]";
+                default:
+                    break;
+            }
+            if (pooled == null) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            if ("prepareStatement".equals(name)) {
+                PreparedStatement statement = pooled.statements != null ? prepareCached((Connection) proxy, args) : null;
+                if (statement == null) {
+                    statement = (PreparedStatement) invokePhysical(method, args);
+                }
+                return sqlStatistics == null ? statement
+                        : TimedStatement.wrap(statement, (String) args[0], sqlStatistics, pooled.borrowWaitNanos, pooled.borrower);
+            }
+            return invokePhysical(method, args);
+        }
+
+        private Object invokePhysical(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // Only prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are cached;
+        // the cursor-type and column-index overloads go straight to the driver.
+        private PreparedStatement prepareCached(Connection proxy, Object[] args) throws SQLException {
+            if (args.length == 1) {
+                return pooled.statements.prepare((String) args[0], null, proxy);
+            }
+            if (args.length == 2 && args[1] instanceof Integer) {
+                return pooled.statements.prepare((String) args[0], (Integer) args[1], proxy);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV (RFC 4180) one record at a time, so a large upload is never held in memory as a
+ * whole. Fields may be quoted; quoted fields may contain commas, doubled quotes and line
+ * breaks. Records end with CRLF or LF. A byte order mark at the start, as spreadsheet programs
+ * write it, is skipped.
+ * <p>
+ * A record with a field longer than the limit or with too many fields is read to its end and
+ * then reported with a {@link RecordTooLargeException}; the next call carries on with the
+ * following record. Only a quoted field that is never closed leaves the rest of the input unreadable.
+ * <pre>
+ * CsvReader csv = new CsvReader(reader, 65535);
+ * for (String[] record; (record = csv.next()) != null; ) { ... }
+ * </pre>
+ */
+public class CsvReader {
+
+    private static final int BUFFER_CHARS = 8192;
+    private static final int MAX_FIELDS = 256;
+
+    private final Reader in;
+    private final int maxFieldChars;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private int position;
+    private int limit;
+    private boolean started;
+    private long line = 1;
+    private long recordLine;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    // Why the record being read is skipped, once it is known to be too large; null otherwise.
+    private String tooLarge;
+
+    /**
+     * @param in The CSV text; buffered here, so it need not be a BufferedReader.
+     * @param maxFieldChars Upper limit on the length of a field.
+     */
+    public CsvReader(Reader in, int maxFieldChars) {
+        this.in = in;
+        this.maxFieldChars = maxFieldChars;
+    }
+
+    /**
+     * Reads the next record. An empty line is a record with one empty field.
+     *
+     * @return The fields of the record, or null at the end of the input.
+     * @throws IOException If reading fails.
+     * @throws RecordTooLargeException If the record has a field that is too long or too many
+     *         fields; the record has been skipped and reading may go on.
+     * @throws IllegalArgumentException If a quoted field is not closed; the message names the line.
+     */
+    public String[] next() throws IOException {
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                c = read();
+            }
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        fields.clear();
+        tooLarge = null;
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = quoted();
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    append((char) c);
+                    c = read();
+                }
+            }
+            if (fields.size() == MAX_FIELDS) {
+                if (tooLarge == null) {
+                    tooLarge = "has more than " + MAX_FIELDS + " fields";
+                }
+            } else if (tooLarge == null) {
+                fields.add(field.toString());
+            }
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            if (c != -1) {
+                line++;
+            }
+            if (tooLarge != null) {
+                throw new RecordTooLargeException(recordLine, tooLarge);
+            }
+            return fields.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * @return The line on which the record last returned by {@link #next} starts (1-based).
+     */
+    public long getLine() {
+        return recordLine;
+    }
+
+    // Reads a quoted field after its opening quote; returns the character following it.
+    private int quoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IllegalArgumentException("Line " + recordLine + " has a quoted field that is never closed.");
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    // Text between the closing quote and the delimiter is kept, as spreadsheet programs do.
+                    while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                        append((char) c);
+                        c = read();
+                    }
+                    return c;
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            append((char) c);
+        }
+    }
+
+    // Once the record is too large the rest of it is only read, not kept.
+    private void append(char c) {
+        if (tooLarge != null) {
+            return;
+        }
+        if (field.length() == maxFieldChars) {
+            tooLarge = "has a field longer than " + maxFieldChars + " characters";
+            return;
+        }
+        field.append(c);
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * A record that was skipped because it is too large. The reader has moved on to the next
+     * record, so {@link #next} can be called again.
+     */
+    public static final class RecordTooLargeException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long line;
+        private final String reason;
+
+        RecordTooLargeException(long line, String reason) {
+            super("Line " + line + " " + reason + ".");
+            this.line = line;
+            this.reason = reason;
+        }
+
+        /**
+         * @return The line on which the skipped record starts.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * @return What is wrong with the record, e.g. "has more than 256 fields".
+         */
+        public String getReason() {
+            return reason;
+        }
+    }
+}
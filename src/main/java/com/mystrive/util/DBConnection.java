@@ -5,7 +5,6 @@
 package com.mystrive.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -14,42 +13,161 @@ import java.util.logging.Logger;
 public class DBConnection {
 
     // Database connection parameters
-private static final String JDBC_URL = System.getenv("DB_URL");
-private static final String JDBC_USERNAME = System.getenv("DB_USER");
-private static final String JDBC_PASSWORD = System.getenv("DB_PASS");
+    private static final String JDBC_URL = config("DB_URL", null);
+    private static final String JDBC_USERNAME = config("DB_USER", null);
+    private static final String JDBC_PASSWORD = config("DB_PASS", null);
 
     // JDBC Driver Name
-    private static final String JDBC_DRIVER = "com.mysql.cj.jdbc.Driver";
+    private static final String JDBC_DRIVER = config("DB_DRIVER", "com.mysql.cj.jdbc.Driver");
+
+    // Connection pool sizing and housekeeping
+    private static final int POOL_MIN_SIZE = configInt("DB_POOL_MIN_SIZE", 2);
+    private static final int POOL_MAX_SIZE = configInt("DB_POOL_MAX_SIZE", 10);
+    private static final long POOL_BORROW_TIMEOUT_MS = configLong("DB_POOL_BORROW_TIMEOUT_MS", 5000);
+    private static final long POOL_IDLE_TIMEOUT_MS = configLong("DB_POOL_IDLE_TIMEOUT_MS", 10 * 60 * 1000);
+    private static final long POOL_VALIDATION_INTERVAL_MS = configLong("DB_POOL_VALIDATION_INTERVAL_MS", 30 * 1000);
+    private static final long POOL_LEAK_THRESHOLD_MS = configLong("DB_POOL_LEAK_THRESHOLD_MS", 60 * 1000);
+    // Records the stack of every borrow so a leak report shows where the connection was taken
+    private static final boolean POOL_LEAK_TRACE = Boolean.parseBoolean(config("DB_POOL_LEAK_TRACE", "false"));
+    private static final long POOL_HOUSEKEEPING_INTERVAL_MS = configLong("DB_POOL_HOUSEKEEPING_INTERVAL_MS", 30 * 1000);
+    // Prepared statements kept per pooled connection (0 disables the cache)
+    private static final int STATEMENT_CACHE_SIZE = configInt("DB_STATEMENT_CACHE_SIZE", 64);
+    // Per-statement timings, and the threshold of the slow query log (0 disables the log)
+    private static final boolean STATEMENT_STATS = Boolean.parseBoolean(config("DB_STATEMENT_STATS", "true"));
+    private static final long SLOW_QUERY_MS = configLong("DB_SLOW_QUERY_MS", 500);
+    // MySQL Connector/J sends a JDBC batch as one INSERT per row unless rewriteBatchedStatements is on;
+    // with it, batched INSERTs go out as multi-row INSERTs. Added to a MySQL DB_URL that does not set it.
+    private static final boolean REWRITE_BATCHED_STATEMENTS = Boolean.parseBoolean(config("DB_REWRITE_BATCHED_STATEMENTS", "true"));
 
     private static final Logger LOGGER = Logger.getLogger(DBConnection.class.getName());
 
+    private static volatile ConnectionPool pool;
 
+    /**
+     * Borrows a connection from the shared pool.
+     * Callers must hand it back with {@link #closeConnection(Connection)} (or close()).
+     *
+     * @return A pooled connection, or null if none could be obtained.
+     */
     public static Connection getConnection() {
-        Connection connection = null;
         try {
-            // Register JDBC driver
-            Class.forName(JDBC_DRIVER);
-
-            // Open a connection
-            LOGGER.log(Level.INFO, "Connecting to database...");
-            connection = DriverManager.getConnection(JDBC_URL,JDBC_USERNAME,JDBC_PASSWORD);
-            LOGGER.log(Level.INFO, "Database connection established successfully.");
-        } catch (ClassNotFoundException e) {
-            LOGGER.log(Level.SEVERE, "MySQL JDBC Driver not found. Make sure the JAR is in WEB-INF/lib.", e);
+            return getPool().borrow();
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to connect to database: " + e.getMessage(), e);
+            LOGGER.log(Level.SEVERE, "Failed to obtain database connection: " + e.getMessage(), e);
         }
-        return connection;
+        return null;
     }
 
     public static void closeConnection(Connection connection) {
         if (connection != null) {
             try {
-                connection.close();
-                LOGGER.log(Level.INFO, "Database connection closed.");
+                connection.close(); // Returns the connection to the pool
             } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error closing database connection: " + e.getMessage(), e);
+                LOGGER.log(Level.SEVERE, "Error returning database connection to the pool: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the shared pool, creating it on first use.
+     *
+     * @return The application's connection pool.
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DBConnection.class) {
+                current = pool;
+                if (current == null) {
+                    current = createPool();
+                    pool = current;
+                }
             }
         }
+        return current;
+    }
+
+    /**
+     * Shuts the pool down if it was ever created. Called when the web application stops.
+     */
+    public static void shutdown() {
+        synchronized (DBConnection.class) {
+            if (pool != null) {
+                pool.shutdown();
+                JmxSupport.unregister("ConnectionPool");
+                JmxSupport.unregister("SqlStatistics");
+                pool = null;
+            }
+        }
+    }
+
+    private static ConnectionPool createPool() {
+        try {
+            // Register JDBC driver
+            Class.forName(JDBC_DRIVER);
+        } catch (ClassNotFoundException e) {
+            LOGGER.log(Level.SEVERE, "JDBC Driver " + JDBC_DRIVER + " not found. Make sure the JAR is in WEB-INF/lib.", e);
+        }
+        SqlStatistics sqlStatistics = STATEMENT_STATS ? new SqlStatistics(SLOW_QUERY_MS) : null;
+        ConnectionPool created = new ConnectionPool(jdbcUrl(), JDBC_USERNAME, JDBC_PASSWORD,
+                POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS,
+                POOL_VALIDATION_INTERVAL_MS, POOL_LEAK_THRESHOLD_MS, POOL_LEAK_TRACE, POOL_HOUSEKEEPING_INTERVAL_MS,
+                STATEMENT_CACHE_SIZE, sqlStatistics);
+        JmxSupport.register("ConnectionPool", created);
+        if (sqlStatistics != null) {
+            JmxSupport.register("SqlStatistics", sqlStatistics);
+        }
+        LOGGER.log(Level.INFO, "Connection pool created (min={0}, max={1}).", new Object[]{POOL_MIN_SIZE, POOL_MAX_SIZE});
+        return created;
+    }
+
+    private static String jdbcUrl() {
+        if (JDBC_URL == null || !REWRITE_BATCHED_STATEMENTS || !JDBC_URL.startsWith("jdbc:mysql:")
+                || JDBC_URL.contains("rewriteBatchedStatements")) {
+            return JDBC_URL;
+        }
+        return JDBC_URL + (JDBC_URL.indexOf('?') < 0 ? "?" : "&") + "rewriteBatchedStatements=true";
+    }
+
+    /**
+     * Whether logins are signed tokens (AUTH_MODE=token), which lets a user's requests be served
+     * by any of several nodes. Caches and versions kept per node can then miss another node's writes.
+     *
+     * @return True with AUTH_MODE=token.
+     */
+    public static boolean isTokenAuth() {
+        return "token".equalsIgnoreCase(config("AUTH_MODE", "session"));
+    }
+
+    /**
+     * Reads a setting from the environment, falling back to a system property of the same name.
+     *
+     * @param name The setting name, e.g. DB_URL.
+     * @param defaultValue The value used when the setting is absent.
+     * @return The configured value or the default.
+     */
+    public static String config(String name, String defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            value = System.getProperty(name);
+        }
+        return (value == null || value.isEmpty()) ? defaultValue : value;
+    }
+
+    public static int configInt(String name, int defaultValue) {
+        return (int) configLong(name, defaultValue);
+    }
+
+    public static long configLong(String name, long defaultValue) {
+        String value = config(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid value ''{0}'' for {1}; using default {2}.", new Object[]{value, name, defaultValue});
+            return defaultValue;
+        }
     }
 }
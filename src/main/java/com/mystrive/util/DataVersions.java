@@ -0,0 +1,94 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory version number per user, bumped whenever one of the user's goals,
+ * milestones or categories is written through the application. The DAOs' write methods
+ * bump it once the write has succeeded, next to their dashboard summary updates, so every
+ * write path is covered without the servlets having to remember it. Pages built only from
+ * the user's own data can then tell whether they changed without querying the database.
+ * <p>
+ * Versions start again when the application restarts; the start time is part of every
+ * version, so nothing issued before a restart is mistaken for current. Writes made
+ * outside this application instance (another instance, or SQL run by hand) are not seen;
+ * conditional GET is therefore off with AUTH_MODE=token, and HTTP_CONDITIONAL_GET=false
+ * turns it off when such writes happen with sessions.
+ */
+public class DataVersions {
+
+    // Users who have not written since startup share this version.
+    private static final long STARTED_AT = System.currentTimeMillis();
+    private static final Version INITIAL = new Version(0, roundUpToSecond(STARTED_AT));
+
+    private static final ConcurrentHashMap<Integer, Version> VERSIONS = new ConcurrentHashMap<>();
+
+    private DataVersions() {
+    }
+
+    /**
+     * Returns the current version of a user's data.
+     *
+     * @param userId The user.
+     * @return The version; never null.
+     */
+    public static Version current(int userId) {
+        return VERSIONS.getOrDefault(userId, INITIAL);
+    }
+
+    /**
+     * Records that a user's data changed. Called by the DAOs after a successful write.
+     *
+     * @param userId The user whose goals, milestones or categories were written.
+     */
+    public static void bump(int userId) {
+        VERSIONS.compute(userId, (id, previous) -> {
+            Version base = previous == null ? INITIAL : previous;
+            // Last-Modified has one-second resolution, so each change must move it forward by at least a second.
+            long lastModified = Math.max(roundUpToSecond(System.currentTimeMillis()), base.lastModified + 1000);
+            return new Version(base.counter + 1, lastModified);
+        });
+    }
+
+    /**
+     * Returns an identifier of the running application instance, used in ETags.
+     *
+     * @return The start time in base 36.
+     */
+    public static String instanceId() {
+        return Long.toString(STARTED_AT, 36);
+    }
+
+    private static long roundUpToSecond(long millis) {
+        return TimeUnit.SECONDS.toMillis((millis + 999) / 1000);
+    }
+
+    /**
+     * A user's data version: a change counter and the time of the last change.
+     */
+    public static final class Version {
+        private final long counter;
+        private final long lastModified;
+
+        Version(long counter, long lastModified) {
+            this.counter = counter;
+            this.lastModified = lastModified;
+        }
+
+        public long getCounter() {
+            return counter;
+        }
+
+        /**
+         * @return The time of the last change in milliseconds, a whole number of seconds.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
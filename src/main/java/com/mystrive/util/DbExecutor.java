@@ -0,0 +1,274 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded thread pool for request work that talks to the database, so that Tomcat's
+ * request threads are not held while JDBC calls block.
+ * It has as many threads as the connection pool has connections (more would only queue
+ * inside the pool) and a fixed-size queue in front of them. When the queue is full new
+ * work is refused at once, which the servlets turn into a fast 503 instead of letting
+ * requests pile up behind a slow database.
+ * <p>
+ * With DB_EXECUTION_MODE=virtual (Java 21 or later) every task gets its own virtual thread
+ * instead. A fair semaphore with DB_EXECUTOR_THREADS permits then bounds how many tasks use
+ * the database at once, and tasks waiting for a permit count against the same queue limit,
+ * so the overload behaviour is the same as in the default "platform" mode. The locks a task
+ * can wait on (the pool's queue, CategoryCache, DashboardSummaryCache, LoginThrottle) are
+ * java.util.concurrent locks, so a waiting virtual thread releases its carrier; synchronized
+ * is left only on one-time initialization and shutdown. MySQL Connector/J 8.0 still
+ * synchronizes internally and pins the carrier for the duration of each JDBC call. On older
+ * JVMs the setting falls back to platform.
+ * <p>
+ * ExecutionModeBenchmark on JDK 21.0.1 (one CPU, fake driver with a 1 ms round trip, 10
+ * connections, 64 callers) measured 8.2 ops/ms for platform and 7.8 ops/ms for virtual, both
+ * at the pool's limit, with p50/p99 latency of 9.0/21.2 ms and 7.7/16.6 ms. The virtual mode
+ * has not been run against a real MySQL server.
+ * <p>
+ * Settings: DB_ASYNC (default true), DB_EXECUTION_MODE (platform or virtual, default platform),
+ * DB_EXECUTOR_THREADS (default DB_POOL_MAX_SIZE), DB_EXECUTOR_QUEUE_SIZE (default 100) and
+ * DB_REQUEST_TIMEOUT_MS (default 30000).
+ */
+public class DbExecutor implements DbExecutorMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(DbExecutor.class.getName());
+
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(DBConnection.config("DB_ASYNC", "true"));
+    private static final String MODE = DBConnection.config("DB_EXECUTION_MODE", MODE_PLATFORM).trim().toLowerCase();
+    private static final int QUEUE_SIZE = Math.max(1, DBConnection.configInt("DB_EXECUTOR_QUEUE_SIZE", 100));
+    private static final long REQUEST_TIMEOUT_MS = Math.max(1, DBConnection.configLong("DB_REQUEST_TIMEOUT_MS", 30 * 1000));
+
+    private static volatile DbExecutor instance;
+
+    private final ExecutorService executor;
+    // Only in platform mode; virtual mode has no shared threads to report on.
+    private final ThreadPoolExecutor platformExecutor;
+    // Only in virtual mode: database permits and the number of tasks admitted but not finished.
+    private final Semaphore permits;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final String mode;
+    private final int threads;
+    private final int queueSize;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private DbExecutor(int threads, int queueSize, ExecutorService virtualExecutor) {
+        this.threads = threads;
+        this.queueSize = queueSize;
+        if (virtualExecutor != null) {
+            this.mode = MODE_VIRTUAL;
+            this.executor = virtualExecutor;
+            this.platformExecutor = null;
+            this.permits = new Semaphore(threads, true);
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), runnable -> {
+                        Thread thread = new Thread(runnable, "mystrive-db-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // Let threads go away when the application is idle; they are recreated on demand.
+            pool.allowCoreThreadTimeOut(true);
+            this.mode = MODE_PLATFORM;
+            this.executor = pool;
+            this.platformExecutor = pool;
+            this.permits = null;
+        }
+    }
+
+    /**
+     * Returns the shared executor, creating it on first use.
+     *
+     * @return The executor, or null if asynchronous processing is switched off (DB_ASYNC=false).
+     */
+    public static DbExecutor get() {
+        if (!ENABLED) {
+            return null;
+        }
+        DbExecutor current = instance;
+        if (current == null) {
+            synchronized (DbExecutor.class) {
+                current = instance;
+                if (current == null) {
+                    int threads = DBConnection.configInt("DB_EXECUTOR_THREADS", DBConnection.getPool().getMaxConnections());
+                    current = new DbExecutor(Math.max(1, threads), QUEUE_SIZE, MODE_VIRTUAL.equals(MODE) ? newVirtualExecutor() : null);
+                    JmxSupport.register("DbExecutor", current);
+                    LOGGER.log(Level.INFO, "Database executor created (mode={0}, threads={1}, queue={2}, timeout={3} ms).",
+                            new Object[]{current.mode, current.threads, QUEUE_SIZE, REQUEST_TIMEOUT_MS});
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor. Looked up reflectively because the
+     * application is compiled for Java 11.
+     *
+     * @return The executor, or null if this JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.log(Level.WARNING, "DB_EXECUTION_MODE=virtual needs Java 21 or later (running on {0}); using platform threads.",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    /**
+     * Stops the executor if it was ever created. Called when the web application stops.
+     * Work still running gets a few seconds to finish before it is interrupted.
+     */
+    public static void shutdown() {
+        synchronized (DbExecutor.class) {
+            if (instance != null) {
+                instance.executor.shutdown();
+                try {
+                    if (!instance.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                        instance.executor.shutdownNow();
+                    }
+                } catch (InterruptedException e) {
+                    instance.executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+                JmxSupport.unregister("DbExecutor");
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Queues a task.
+     *
+     * @param task The work to run.
+     * @return The task's future, which can be used to cancel it.
+     * @throws RejectedExecutionException If the queue is full or the executor is shutting down.
+     */
+    public Future<?> submit(Runnable task) {
+        if (permits != null) {
+            return submitVirtual(task);
+        }
+        try {
+            return executor.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    completed.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    // Admits at most threads + queueSize tasks; each then waits for a database permit on its own virtual thread.
+    private Future<?> submitVirtual(Runnable task) {
+        if (admitted.incrementAndGet() > threads + queueSize) {
+            admitted.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Database executor queue is full.");
+        }
+        try {
+            return executor.submit(() -> {
+                try {
+                    permits.acquire();
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                        completed.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Cancelled while waiting for a permit
+                } finally {
+                    admitted.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admitted.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns how long a request may wait for and run on this executor before it is answered with a 503.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public long getRequestTimeoutMillis() {
+        return REQUEST_TIMEOUT_MS;
+    }
+
+    /**
+     * Counts a request that hit its timeout.
+     */
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    @Override
+    public String getMode() {
+        return mode;
+    }
+
+    @Override
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return permits != null ? threads - permits.availablePermits() : platformExecutor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return permits != null ? Math.max(0, admitted.get() - getActiveThreads()) : platformExecutor.getQueue().size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueSize;
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return completed.get();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+/**
+ * Database executor statistics, published over JMX as "com.mystrive:type=DbExecutor".
+ */
+public interface DbExecutorMXBean {
+
+    String getMode();
+
+    int getThreads();
+
+    int getActiveThreads();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    long getCompletedTasks();
+
+    long getRejectedCount();
+
+    long getTimeoutCount();
+}
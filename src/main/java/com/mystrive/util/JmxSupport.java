@@ -0,0 +1,62 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers the application's statistics beans with the platform MBean server,
+ * and with {@link Metrics} so their attributes also appear on /metrics.
+ */
+public class JmxSupport {
+
+    private static final Logger LOGGER = Logger.getLogger(JmxSupport.class.getName());
+
+    private JmxSupport() {
+    }
+
+    /**
+     * Registers a bean under "com.mystrive:type=&lt;type&gt;", replacing one left over from a previous deployment.
+     *
+     * @param type The type key of the object name.
+     * @param bean The MXBean implementation.
+     */
+    public static void register(String type, Object bean) {
+        Metrics.registerBean(type, bean);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.mystrive:type=" + type);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(bean, name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register MBean " + type + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Unregisters a bean so the web application's class loader can be collected after undeploy.
+     *
+     * @param type The type key of the object name.
+     */
+    public static void unregister(String type) {
+        Metrics.unregisterBean(type);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.mystrive:type=" + type);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not unregister MBean " + type + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses the small request bodies the JSON API accepts: a single flat object whose
+ * values are strings, numbers, booleans or null, e.g. {"status":"Completed"}.
+ * Numbers and booleans are returned as their text. Nested objects and arrays are rejected.
+ */
+public class JsonReader {
+
+    private final Reader in;
+    private final int maxChars;
+    private int read;
+    private int peeked = -2;
+
+    private JsonReader(Reader in, int maxChars) {
+        this.in = in;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Reads one flat JSON object.
+     *
+     * @param in The body to parse.
+     * @param maxChars Upper limit on the body size.
+     * @return Member names mapped to their values (null for JSON null), in body order.
+     * @throws IOException If reading fails.
+     * @throws IllegalArgumentException If the body is not a flat JSON object or is too long.
+     */
+    public static Map<String, String> readObject(Reader in, int maxChars) throws IOException {
+        JsonReader reader = new JsonReader(in, maxChars);
+        Map<String, String> members = new LinkedHashMap<>();
+        reader.expect('{');
+        if (reader.peekSignificant() == '}') {
+            reader.next();
+        } else {
+            while (true) {
+                reader.expect('"');
+                String name = reader.string();
+                reader.expect(':');
+                members.put(name, reader.value());
+                int c = reader.nextSignificant();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Expected ',' or '}' in JSON object.");
+                }
+            }
+        }
+        if (reader.nextSignificant() != -1) {
+            throw new IllegalArgumentException("Unexpected content after the JSON object.");
+        }
+        return members;
+    }
+
+    private String value() throws IOException {
+        int c = nextSignificant();
+        if (c == '"') {
+            return string();
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("Nested JSON values are not supported.");
+        }
+        StringBuilder literal = new StringBuilder();
+        while (c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+            literal.append((char) c);
+            if (!isLiteralChar(peek())) {
+                break;
+            }
+            c = next();
+        }
+        String text = literal.toString();
+        if (text.equals("null")) {
+            return null;
+        }
+        if (text.equals("true") || text.equals("false") || text.matches("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?")) {
+            return text;
+        }
+        throw new IllegalArgumentException("Invalid JSON value.");
+    }
+
+    private static boolean isLiteralChar(int c) {
+        return c != -1 && (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.');
+    }
+
+    // Reads the rest of a string whose opening quote has been consumed.
+    private String string() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int c = next();
+            if (c == -1) {
+                throw new IllegalArgumentException("Unterminated JSON string.");
+            }
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c != '\\') {
+                text.append((char) c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    text.append((char) c);
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0) {
+                            throw new IllegalArgumentException("Invalid \\u escape in JSON string.");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    text.append((char) code);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid escape in JSON string.");
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextSignificant() != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' in JSON body.");
+        }
+    }
+
+    private int nextSignificant() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+
+    private int peekSignificant() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+            next();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = in.read();
+        }
+        return peeked;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        peeked = -2;
+        if (c != -1 && ++read > maxChars) {
+            throw new IllegalArgumentException("JSON body is larger than " + maxChars + " characters.");
+        }
+        return c;
+    }
+}
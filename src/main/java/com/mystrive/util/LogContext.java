@@ -0,0 +1,181 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * The logging context of the request being handled by the current thread: its correlation ID,
+ * whether its debug messages are sampled, and how many records it has logged so far.
+ * <ul>
+ * <li>RequestContextFilter starts a context per request; AsyncDbServlet carries it over to
+ * the executor thread and the async dispatch.</li>
+ * <li>{@link AsyncLogHandler} tags every record with the ID, so all lines of one request
+ * can be found with one search, and enforces LOG_MAX_RECORDS_PER_REQUEST (default 100)
+ * for records below WARNING.</li>
+ * <li>Debug messages go through {@link #debug}: they are logged when the logger is at FINE,
+ * and otherwise for a sample of requests (LOG_DEBUG_SAMPLE_RATE, default 0.01) through the
+ * "com.mystrive.sampled" logger, so production logs keep a trickle of complete request traces.</li>
+ * </ul>
+ * Call sites guard with {@link #isDebugEnabled} so no parameter array is built when nothing is logged.
+ */
+public final class LogContext {
+
+    /**
+     * Request attribute holding the context, for threads that continue the request.
+     */
+    public static final String ATTRIBUTE = LogContext.class.getName();
+
+    /**
+     * Header carrying the correlation ID from a proxy or client, and back in the response.
+     */
+    public static final String HEADER = "X-Request-Id";
+
+    private static final Logger SAMPLED = Logger.getLogger("com.mystrive.sampled");
+
+    private static final double SAMPLE_RATE = sampleRate();
+    private static final int MAX_RECORDS = DBConnection.configInt("LOG_MAX_RECORDS_PER_REQUEST", 100);
+
+    private static final ThreadLocal<LogContext> CURRENT = new ThreadLocal<>();
+    private static final LongAdder REQUESTS = new LongAdder();
+
+    static {
+        // Sampled records are FINE; the logger itself must let them through unless configured otherwise
+        // (com.mystrive.sampled.level=OFF in logging.properties stops the channel).
+        if (SAMPLED.getLevel() == null) {
+            SAMPLED.setLevel(Level.ALL);
+        }
+    }
+
+    private final String requestId;
+    private final boolean sampled;
+    private final AtomicInteger records = new AtomicInteger();
+
+    private LogContext(String requestId, boolean sampled) {
+        this.requestId = requestId;
+        this.sampled = sampled;
+    }
+
+    private static double sampleRate() {
+        String value = DBConnection.config("LOG_DEBUG_SAMPLE_RATE", "0.01");
+        try {
+            return Math.max(0.0, Math.min(1.0, Double.parseDouble(value.trim())));
+        } catch (NumberFormatException e) {
+            return 0.01;
+        }
+    }
+
+    /**
+     * Starts the context of a new request on the current thread.
+     *
+     * @param requestId The correlation ID; a new one is generated when null.
+     * @return The context, to be stored with the request for {@link #attach}.
+     */
+    public static LogContext start(String requestId) {
+        LogContext context = new LogContext(requestId != null ? requestId : newRequestId(),
+                SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE);
+        REQUESTS.increment();
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * Makes a request's context current on this thread, e.g. on the thread that continues it.
+     *
+     * @param context The context; null clears the current one.
+     */
+    public static void attach(LogContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    /**
+     * Clears the current context, before the thread goes back to its pool.
+     */
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return The context of the request on this thread, or null outside a request.
+     */
+    public static LogContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return A random 16-character hexadecimal ID.
+     */
+    public static String newRequestId() {
+        long random = ThreadLocalRandom.current().nextLong();
+        String hex = Long.toHexString(random);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Tells whether a debug message for this logger would be logged, so the caller can skip
+     * building its parameters.
+     *
+     * @param logger The caller's logger.
+     * @return True if the logger is at FINE or the current request is sampled.
+     */
+    public static boolean isDebugEnabled(Logger logger) {
+        if (logger.isLoggable(Level.FINE)) {
+            return true;
+        }
+        LogContext context = CURRENT.get();
+        return context != null && context.sampled;
+    }
+
+    /**
+     * Logs a debug message at FINE, or through the sampled channel when the request is sampled.
+     *
+     * @param logger The caller's logger; its name is kept on sampled records.
+     * @param message The message, in java.util.logging's {0} format.
+     * @param parameters The message parameters.
+     */
+    public static void debug(Logger logger, String message, Object... parameters) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, message, parameters);
+            return;
+        }
+        LogContext context = CURRENT.get();
+        if (context != null && context.sampled) {
+            LogRecord record = new LogRecord(Level.FINE, message);
+            record.setParameters(parameters);
+            record.setLoggerName(logger.getName());
+            SAMPLED.log(record);
+        }
+    }
+
+    static long requestCount() {
+        return REQUESTS.sum();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Counts one more record below WARNING for this request.
+     *
+     * @return False once the request has used up its budget.
+     */
+    boolean takeRecord() {
+        return MAX_RECORDS <= 0 || records.incrementAndGet() <= MAX_RECORDS;
+    }
+}
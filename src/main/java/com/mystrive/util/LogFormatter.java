@@ -0,0 +1,74 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats records as one logfmt line each, e.g.
+ * <pre>ts=2024-05-01T10:15:30.123Z level=WARNING logger=com.mystrive.dao.GoalDAO req=3f9c0a1b2c3d4e5f msg="Error updating goal"</pre>
+ * followed by the stack trace of an attached exception. The logger name stands in for the
+ * source class: working out the calling method would mean a stack walk per record.
+ */
+public class LogFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+        LogContext context = LogContext.current();
+        return format(record, context != null ? context.getRequestId() : null, false);
+    }
+
+    /**
+     * Formats a record captured on another thread.
+     *
+     * @param record The record.
+     * @param requestId The correlation ID of the request that logged it, or null.
+     * @param sampled Whether it came through the sampled debug channel.
+     * @return The line, ending with a line separator.
+     */
+    public String format(LogRecord record, String requestId, boolean sampled) {
+        StringBuilder line = new StringBuilder(160);
+        line.append("ts=").append(Instant.ofEpochMilli(record.getMillis()))
+                .append(" level=").append(record.getLevel().getName())
+                .append(" logger=").append(record.getLoggerName());
+        if (requestId != null) {
+            line.append(" req=").append(requestId);
+        }
+        if (sampled) {
+            line.append(" sampled=true");
+        }
+        line.append(" msg=\"");
+        appendEscaped(line, formatMessage(record));
+        line.append('"').append(System.lineSeparator());
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+        return line.toString();
+    }
+
+    private static void appendEscaped(StringBuilder line, String message) {
+        if (message == null) {
+            return;
+        }
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c == '\r') {
+                line.append("\\r");
+            } else {
+                line.append(c);
+            }
+        }
+    }
+}
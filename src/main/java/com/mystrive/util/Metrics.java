@@ -0,0 +1,314 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application metrics, exported in the Prometheus text format by MetricsServlet.
+ * <ul>
+ * <li>Request latency, database time and view rendering time per servlet and action
+ * (recorded by MetricsFilter), as {@link LatencyHistogram}s.</li>
+ * <li>Database time per SQL statement (see {@link SqlStatistics}) and, with METRICS_DAO_METHODS=true,
+ * per DAO method, measured by the connection pool from borrow to return. Naming the method walks
+ * the stack on every borrow, so it is off by default.</li>
+ * <li>Response counts per status code and the number of requests in flight.</li>
+ * <li>Every statistics MXBean registered through {@link JmxSupport}, one series per numeric attribute.</li>
+ * </ul>
+ * The recording side is lock-free; the cost of formatting is paid by the scrape.
+ * Disabled with METRICS_ENABLED=false.
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+
+    public static final boolean ENABLED = Boolean.parseBoolean(DBConnection.config("METRICS_ENABLED", "true"));
+
+    /**
+     * Whether database time is also recorded per DAO method.
+     */
+    public static final boolean DAO_METHODS = ENABLED
+            && Boolean.parseBoolean(DBConnection.config("METRICS_DAO_METHODS", "false"));
+
+    // Label values beyond this many series per family are folded into "other", so a client
+    // sending made-up action names cannot grow the registry without bound.
+    private static final int MAX_SERIES_PER_FAMILY = 500;
+    private static final String OTHER = "other";
+
+    // Histogram bucket bounds in seconds, the usual Prometheus defaults shifted towards web latencies.
+    private static final double[] BUCKET_SECONDS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private static final List<Family<?>> FAMILIES = new CopyOnWriteArrayList<>();
+
+    public static final Family<LatencyHistogram> HTTP_REQUEST_SECONDS = histogram("mystrive_http_request_duration_seconds",
+            "Time from the start of a request to its completion.", "servlet", "action");
+    public static final Family<LatencyHistogram> HTTP_DB_SECONDS = histogram("mystrive_http_request_db_seconds",
+            "Time a request spent holding database connections.", "servlet", "action");
+    public static final Family<LatencyHistogram> VIEW_RENDER_SECONDS = histogram("mystrive_view_render_seconds",
+            "Time spent rendering a JSP.", "view");
+    public static final Family<LongAdder> HTTP_RESPONSES = counter("mystrive_http_responses_total",
+            "Completed requests by status code.", "servlet", "status");
+    public static final Family<LatencyHistogram> DAO_SECONDS = histogram("mystrive_dao_call_duration_seconds",
+            "Time a DAO method held its database connection.", "method");
+    public static final Family<LatencyHistogram> SQL_SECONDS = histogram("mystrive_sql_statement_duration_seconds",
+            "Time to execute a prepared statement and fetch its rows, per normalized SQL.", "sql");
+
+    private static final LongAdder IN_FLIGHT = new LongAdder();
+
+    private static final ConcurrentMap<String, Object> BEANS = new ConcurrentHashMap<>();
+
+    // Database time of the request being handled by the current thread, while one is being timed.
+    private static final ThreadLocal<long[]> DB_NANOS = new ThreadLocal<>();
+
+    private Metrics() {
+    }
+
+    private static Family<LatencyHistogram> histogram(String name, String help, String... labels) {
+        Family<LatencyHistogram> family = new Family<>(name, help, "histogram", labels);
+        FAMILIES.add(family);
+        return family;
+    }
+
+    private static Family<LongAdder> counter(String name, String help, String... labels) {
+        Family<LongAdder> family = new Family<>(name, help, "counter", labels);
+        FAMILIES.add(family);
+        return family;
+    }
+
+    public static void requestStarted() {
+        IN_FLIGHT.increment();
+    }
+
+    public static void requestFinished() {
+        IN_FLIGHT.decrement();
+    }
+
+    /**
+     * Starts adding up the database time of the current thread (see {@link #recordDao}).
+     */
+    public static void beginDbTiming() {
+        DB_NANOS.set(new long[1]);
+    }
+
+    /**
+     * Stops adding up database time on the current thread.
+     *
+     * @return The database time since {@link #beginDbTiming()}, in nanoseconds (0 if it was not called).
+     */
+    public static long endDbTiming() {
+        long[] total = DB_NANOS.get();
+        DB_NANOS.remove();
+        return total == null ? 0 : total[0];
+    }
+
+    /**
+     * Records the time a DAO method held a connection, and adds it to the current request's database time.
+     *
+     * @param method The DAO method, e.g. "GoalDAO.getGoalsPage"; null when per-method timings are off.
+     * @param nanos The duration in nanoseconds.
+     */
+    public static void recordDao(String method, long nanos) {
+        if (method != null) {
+            DAO_SECONDS.labels(method).record(nanos);
+        }
+        long[] total = DB_NANOS.get();
+        if (total != null) {
+            total[0] += nanos;
+        }
+    }
+
+    /**
+     * Exports the numeric attributes of a statistics bean, e.g. ConnectionPool's getActiveConnections
+     * becomes mystrive_connection_pool_active_connections.
+     *
+     * @param type The bean's type, as passed to {@link JmxSupport#register}.
+     * @param bean The bean.
+     */
+    static void registerBean(String type, Object bean) {
+        BEANS.put(type, bean);
+    }
+
+    static void unregisterBean(String type) {
+        BEANS.remove(type);
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @param out Where to write.
+     * @throws IOException If writing fails.
+     */
+    public static void writePrometheus(Writer out) throws IOException {
+        for (Family<?> family : FAMILIES) {
+            family.write(out);
+        }
+        out.write("# HELP mystrive_http_requests_in_flight Requests started and not yet completed.\n");
+        out.write("# TYPE mystrive_http_requests_in_flight gauge\n");
+        out.write("mystrive_http_requests_in_flight " + IN_FLIGHT.sum() + "\n");
+        for (Map.Entry<String, Object> bean : BEANS.entrySet()) {
+            writeBean(out, bean.getKey(), bean.getValue());
+        }
+    }
+
+    // Attributes mix counters and levels, so they are exported untyped.
+    private static void writeBean(Writer out, String type, Object bean) throws IOException {
+        String prefix = "mystrive_" + snakeCase(type) + "_";
+        for (Class<?> beanInterface : bean.getClass().getInterfaces()) {
+            if (!beanInterface.getSimpleName().endsWith("MXBean")) {
+                continue;
+            }
+            Method[] methods = beanInterface.getMethods();
+            Arrays.sort(methods, (a, b) -> a.getName().compareTo(b.getName()));
+            for (Method method : methods) {
+                if (method.getParameterCount() != 0 || !method.getName().startsWith("get")) {
+                    continue;
+                }
+                Object value;
+                try {
+                    value = method.invoke(bean);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Could not read " + type + "." + method.getName() + ": " + e.getMessage(), e);
+                    continue;
+                }
+                if (value instanceof Number) {
+                    String name = prefix + snakeCase(method.getName().substring(3));
+                    out.write("# TYPE " + name + " untyped\n");
+                    out.write(name + " " + formatNumber(((Number) value).doubleValue()) + "\n");
+                }
+            }
+        }
+    }
+
+    static String snakeCase(String camelCase) {
+        StringBuilder snake = new StringBuilder();
+        for (int i = 0; i < camelCase.length(); i++) {
+            char c = camelCase.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0 && !Character.isUpperCase(camelCase.charAt(i - 1))) {
+                    snake.append('_');
+                }
+                snake.append(Character.toLowerCase(c));
+            } else {
+                snake.append(c);
+            }
+        }
+        return snake.toString();
+    }
+
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * A named metric with a fixed set of labels; one series per combination of label values.
+     *
+     * @param <T> LatencyHistogram for histograms, LongAdder for counters.
+     */
+    public static final class Family<T> {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final String[] labelNames;
+        private final ConcurrentMap<List<String>, T> series = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, String type, String... labelNames) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+        }
+
+        /**
+         * Returns the series for the given label values, creating it on first use.
+         *
+         * @param values One value per label, in declaration order; null counts as "".
+         * @return The series.
+         */
+        public T labels(String... values) {
+            List<String> key = Arrays.asList(values);
+            T existing = series.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (series.size() >= MAX_SERIES_PER_FAMILY) {
+                String[] folded = new String[values.length];
+                Arrays.fill(folded, OTHER);
+                key = Arrays.asList(folded);
+            } else {
+                key = new ArrayList<>(key.size());
+                for (String value : values) {
+                    key.add(value == null ? "" : value);
+                }
+            }
+            return series.computeIfAbsent(key, k -> newSeries());
+        }
+
+        @SuppressWarnings("unchecked")
+        private T newSeries() {
+            return (T) ("histogram".equals(type) ? new LatencyHistogram() : new LongAdder());
+        }
+
+        private void write(Writer out) throws IOException {
+            if (series.isEmpty()) {
+                return;
+            }
+            out.write("# HELP " + name + " " + help + "\n");
+            out.write("# TYPE " + name + " " + type + "\n");
+            for (Map.Entry<List<String>, T> entry : series.entrySet()) {
+                String labels = labelText(entry.getKey());
+                if (entry.getValue() instanceof LongAdder) {
+                    out.write(name + "{" + labels + "} " + ((LongAdder) entry.getValue()).sum() + "\n");
+                    continue;
+                }
+                LatencyHistogram histogram = (LatencyHistogram) entry.getValue();
+                // Buckets are read after the count and capped at it, so a scrape racing with
+                // recording never shows a bucket larger than +Inf.
+                long count = histogram.getCount();
+                double sumSeconds = histogram.getSumNanos() / 1e9;
+                String separator = labels.isEmpty() ? "" : ",";
+                for (double bound : BUCKET_SECONDS) {
+                    long micros = Math.round(bound * 1_000_000);
+                    out.write(name + "_bucket{" + labels + separator + "le=\"" + bound + "\"} "
+                            + Math.min(count, histogram.countAtOrBelow(micros)) + "\n");
+                }
+                out.write(name + "_bucket{" + labels + separator + "le=\"+Inf\"} " + count + "\n");
+                out.write(name + "_sum{" + labels + "} " + sumSeconds + "\n");
+                out.write(name + "_count{" + labels + "} " + count + "\n");
+            }
+        }
+
+        private String labelText(List<String> values) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    text.append(',');
+                }
+                text.append(labelNames[i]).append("=\"").append(escape(values.get(i))).append('"');
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and verifies passwords with PBKDF2-HMAC-SHA256 from the JDK. Stored hashes look like
+ * <pre>pbkdf2-sha256$&lt;iterations&gt;$&lt;base64 salt&gt;$&lt;base64 hash&gt;</pre>
+ * so the cost can be raised later: {@link #needsRehash} tells the login code to store a new hash
+ * for a password hashed with fewer iterations, or still stored in plain text.
+ * <p>
+ * Each hash deliberately costs tens of milliseconds of CPU. So that a flood of logins cannot take
+ * every core, hashing runs on a small dedicated pool with a bounded queue; when the queue is full
+ * the caller gets a RejectedExecutionException at once, which the servlets answer with 503.
+ * <p>
+ * Settings: PASSWORD_HASH_ITERATIONS (default 210000), PASSWORD_HASH_THREADS (default half the
+ * processors), PASSWORD_HASH_QUEUE_SIZE (default 32) and PASSWORD_ACCEPT_PLAINTEXT (default true:
+ * rows stored before hashing was introduced can still log in, and are rehashed when they do).
+ */
+public class PasswordHasher implements PasswordHasherMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(PasswordHasher.class.getName());
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final int ITERATIONS = Math.max(1000, DBConnection.configInt("PASSWORD_HASH_ITERATIONS", 210000));
+    private static final boolean ACCEPT_PLAINTEXT = Boolean.parseBoolean(DBConnection.config("PASSWORD_ACCEPT_PLAINTEXT", "true"));
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private static volatile PasswordHasher instance;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueSize;
+    private final SecureRandom random = new SecureRandom();
+    // Verified against when the username does not exist, so the answer takes as long as for a wrong password.
+    private final String dummyHash;
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rehashes = new LongAdder();
+
+    private PasswordHasher(int threads, int queueSize) {
+        this.queueSize = queueSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "mystrive-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        dummyHash = format(ITERATIONS, salt(), pbkdf2("not a password", salt(), ITERATIONS));
+    }
+
+    /**
+     * Returns the shared hasher, creating it on first use.
+     *
+     * @return The hasher.
+     */
+    public static PasswordHasher get() {
+        PasswordHasher current = instance;
+        if (current == null) {
+            synchronized (PasswordHasher.class) {
+                current = instance;
+                if (current == null) {
+                    int threads = Math.max(1, DBConnection.configInt("PASSWORD_HASH_THREADS",
+                            Runtime.getRuntime().availableProcessors() / 2));
+                    int queueSize = Math.max(1, DBConnection.configInt("PASSWORD_HASH_QUEUE_SIZE", 32));
+                    current = new PasswordHasher(threads, queueSize);
+                    JmxSupport.register("PasswordHasher", current);
+                    LOGGER.log(Level.INFO, "Password hasher created (PBKDF2-SHA256, iterations={0}, threads={1}, queue={2}).",
+                            new Object[]{ITERATIONS, threads, queueSize});
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stops the hashing threads if the hasher was ever created. Called when the web application stops.
+     */
+    public static void shutdown() {
+        synchronized (PasswordHasher.class) {
+            if (instance != null) {
+                instance.executor.shutdownNow();
+                JmxSupport.unregister("PasswordHasher");
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Hashes a password with a new random salt and the configured cost.
+     *
+     * @param password The password.
+     * @return The hash to store.
+     * @throws RejectedExecutionException If too many hashes are already waiting.
+     */
+    public String hash(String password) {
+        byte[] salt = salt();
+        return format(ITERATIONS, salt, derive(password, salt, ITERATIONS));
+    }
+
+    /**
+     * Checks a password against what is stored for the user.
+     *
+     * @param password The password entered.
+     * @param stored The stored hash (or a plain-text password from before hashing); null if
+     *               the user does not exist, in which case a dummy hash is checked so that
+     *               the time taken does not tell whether the username exists.
+     * @return True if the password matches.
+     * @throws RejectedExecutionException If too many hashes are already waiting.
+     */
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            verify(password, dummyHash);
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return ACCEPT_PLAINTEXT && MessageDigest.isEqual(
+                    password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            LOGGER.log(Level.WARNING, "Malformed password hash; treating it as not matching.");
+            return false;
+        }
+        int iterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            iterations = Integer.parseInt(parts[1]);
+            salt = DECODER.decode(parts[2]);
+            expected = DECODER.decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Malformed password hash; treating it as not matching.");
+            return false;
+        }
+        return MessageDigest.isEqual(derive(password, salt, iterations), expected);
+    }
+
+    /**
+     * Tells whether a stored password should be replaced by a fresh hash after a successful login.
+     *
+     * @param stored The stored hash or plain-text password.
+     * @return True if it is plain text or was hashed with fewer iterations than configured now.
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Counts a stored password that was replaced by a fresh hash.
+     */
+    public void recordRehash() {
+        rehashes.increment();
+    }
+
+    // Runs the key derivation on the hashing pool and waits for it.
+    private byte[] derive(String password, byte[] salt, int iterations) {
+        Future<byte[]> result;
+        try {
+            result = executor.submit(() -> pbkdf2(password, salt, iterations));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a password hash.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed.", e.getCause());
+        }
+    }
+
+    private byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        long start = System.nanoTime();
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available.", e);
+        } finally {
+            spec.clearPassword();
+            hashes.increment();
+            hashNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private byte[] salt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static String format(int iterations, byte[] salt, byte[] hash) {
+        return PREFIX + iterations + "$" + ENCODER.encodeToString(salt) + "$" + ENCODER.encodeToString(hash);
+    }
+
+    @Override
+    public int getIterations() {
+        return ITERATIONS;
+    }
+
+    @Override
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueSize;
+    }
+
+    @Override
+    public long getHashCount() {
+        return hashes.sum();
+    }
+
+    @Override
+    public double getAverageHashMillis() {
+        long count = hashes.sum();
+        return count == 0 ? 0.0 : hashNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getRehashCount() {
+        return rehashes.sum();
+    }
+}
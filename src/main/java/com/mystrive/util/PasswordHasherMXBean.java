@@ -0,0 +1,29 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+/**
+ * Password hashing statistics, published over JMX as "com.mystrive:type=PasswordHasher".
+ */
+public interface PasswordHasherMXBean {
+
+    int getIterations();
+
+    int getThreads();
+
+    int getActiveThreads();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    long getHashCount();
+
+    double getAverageHashMillis();
+
+    long getRejectedCount();
+
+    long getRehashCount();
+}
@@ -0,0 +1,205 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies versioned schema migrations on top of mystrive_db.sql.
+ * Migrations are SQL scripts under /db/migration on the classpath, listed in {@link #MIGRATIONS}
+ * in the order they must run. Each applied version is recorded in the schema_version table,
+ * so a script runs once per database. On MySQL/MariaDB a named lock keeps two application
+ * instances starting at the same time from applying the same script twice.
+ */
+public class SchemaMigrator {
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final String LOCK_NAME = "mystrive_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // Append new migrations at the end; never renumber or edit one that has shipped.
+    static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            new Migration(1, "composite indexes for dashboard and milestone queries", "V1__composite_indexes.sql"),
+            new Migration(2, "milestone counters on goals", "V2__goal_milestone_counters.sql")
+    ));
+
+    private static final String SQL_CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version ("
+            + "version INT NOT NULL PRIMARY KEY, "
+            + "description VARCHAR(200) NOT NULL, "
+            + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+    private static final String SQL_SELECT_VERSION = "SELECT MAX(version) FROM schema_version";
+    private static final String SQL_INSERT_VERSION = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Brings the schema up to the latest version.
+     *
+     * @return The number of migrations applied by this call.
+     * @throws SQLException If the database cannot be reached or a migration fails.
+     */
+    public static int migrate() throws SQLException {
+        Connection connection = DBConnection.getConnection();
+        if (connection == null) {
+            throw new SQLException("No database connection available for schema migration.");
+        }
+        boolean mysql = isMySql(connection);
+        boolean locked = false;
+        try {
+            if (mysql) {
+                locked = acquireLock(connection);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(SQL_CREATE_VERSION_TABLE);
+            }
+            int current = currentVersion(connection);
+            int applied = 0;
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                LOGGER.log(Level.INFO, "Applying schema migration V{0}: {1}", new Object[]{migration.version, migration.description});
+                apply(connection, migration);
+                applied++;
+            }
+            if (applied == 0) {
+                LOGGER.log(Level.INFO, "Schema is up to date at version {0}.", current);
+            }
+            return applied;
+        } finally {
+            if (locked) {
+                releaseLock(connection);
+            }
+            DBConnection.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the highest migration version this build knows about.
+     *
+     * @return The latest version number.
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    static boolean isMySql(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        return product != null && (product.contains("MySQL") || product.contains("MariaDB"));
+    }
+
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(SQL_SELECT_VERSION)) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        List<String> statements = readStatements(migration.resource);
+        // MySQL commits DDL implicitly, so a script is not atomic there; keep each script to statements
+        // that are safe to fix up by hand if one fails halfway. The version row is written last.
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Schema migration V" + migration.version + " failed: " + e.getMessage(), e.getSQLState(), e);
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(SQL_INSERT_VERSION)) {
+            preparedStatement.setInt(1, migration.version);
+            preparedStatement.setString(2, migration.description);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Splits a migration script into statements. Statements end with a semicolon at the end
+     * of a line; lines starting with "--" are comments.
+     */
+    static List<String> readStatements(String resource) throws SQLException {
+        InputStream in = SchemaMigrator.class.getResourceAsStream("/db/migration/" + resource);
+        if (in == null) {
+            throw new SQLException("Migration script not found on classpath: " + resource);
+        }
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder current = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String sql = current.toString().trim();
+                    statements.add(sql.substring(0, sql.length() - 1));
+                    current.setLength(0);
+                }
+            }
+            if (current.toString().trim().length() > 0) {
+                statements.add(current.toString().trim());
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + resource + ": " + e.getMessage(), e);
+        }
+        return statements;
+    }
+
+    private static boolean acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next() && resultSet.getInt(1) == 1) {
+                    return true;
+                }
+            }
+        }
+        throw new SQLException("Timed out waiting for the schema migration lock.");
+    }
+
+    private static void releaseLock(Connection connection) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.executeQuery().close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not release the schema migration lock: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * One numbered migration script.
+     */
+    static final class Migration {
+        final int version;
+        final String description;
+        final String resource;
+
+        Migration(int version, String description, String resource) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+        }
+    }
+}
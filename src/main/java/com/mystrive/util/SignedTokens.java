@@ -0,0 +1,136 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs short strings with HMAC-SHA256 so they can be handed to the browser and trusted
+ * when they come back, without keeping anything on the server. A token is
+ * <pre>base64url(payload) "." base64url(HMAC(payload))</pre>
+ * and is safe to use as a cookie value.
+ * <p>
+ * Each use of tokens has its own instance ({@link #AUTH}, {@link #FLASH}) signing with its own
+ * key, HMAC(secret, purpose), so a token issued for one purpose is never accepted for another,
+ * e.g. a flash message cookie whose text happens to look like a login.
+ * <p>
+ * The secret is AUTH_TOKEN_SECRET (at least 32 characters), which must be the same on every
+ * node behind the load balancer. AUTH_TOKEN_PREVIOUS_SECRET is still accepted when
+ * verifying, so the secret can be changed without logging everybody out. Without a secret a
+ * random one is generated: tokens then only work on this node until it restarts.
+ */
+public final class SignedTokens {
+
+    private static final Logger LOGGER = Logger.getLogger(SignedTokens.class.getName());
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final SecretKeySpec SECRET = secret(DBConnection.config("AUTH_TOKEN_SECRET", null), true);
+    private static final SecretKeySpec PREVIOUS_SECRET = secret(DBConnection.config("AUTH_TOKEN_PREVIOUS_SECRET", null), false);
+
+    /**
+     * Tokens of the auth cookie (see CurrentUser).
+     */
+    public static final SignedTokens AUTH = new SignedTokens("auth");
+
+    /**
+     * Tokens of the flash message cookie (see Flash).
+     */
+    public static final SignedTokens FLASH = new SignedTokens("flash");
+
+    private final SecretKeySpec key;
+    private final SecretKeySpec previousKey;
+
+    // Mac.getInstance looks the provider up each time; one initialized instance per thread is reused instead.
+    private final ThreadLocal<Mac> mac;
+
+    private SignedTokens(String purpose) {
+        this.key = derive(SECRET, purpose);
+        this.previousKey = PREVIOUS_SECRET == null ? null : derive(PREVIOUS_SECRET, purpose);
+        this.mac = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    private static SecretKeySpec secret(String secret, boolean generateIfMissing) {
+        if (secret != null && secret.length() < MIN_SECRET_LENGTH) {
+            LOGGER.log(Level.SEVERE, "Ignoring an auth token secret shorter than {0} characters.", MIN_SECRET_LENGTH);
+            secret = null;
+        }
+        if (secret != null) {
+            return new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        }
+        if (!generateIfMissing) {
+            return null;
+        }
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        LOGGER.log(Level.WARNING, "AUTH_TOKEN_SECRET is not set; signed tokens will only be accepted by this node until it restarts.");
+        return new SecretKeySpec(random, ALGORITHM);
+    }
+
+    private static SecretKeySpec derive(SecretKeySpec secret, String purpose) {
+        return new SecretKeySpec(newMac(secret).doFinal(purpose.getBytes(StandardCharsets.UTF_8)), ALGORITHM);
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+        }
+    }
+
+    /**
+     * Signs a payload.
+     *
+     * @param payload The text to protect; it is encoded, not encrypted, so the browser can read it.
+     * @return The token.
+     */
+    public String sign(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(mac.get().doFinal(bytes));
+    }
+
+    /**
+     * Checks a token's signature and returns what was signed.
+     *
+     * @param token A token from {@link #sign} of this instance, possibly tampered with; may be null.
+     * @return The payload, or null if the token is malformed or was not signed with a current key for this purpose.
+     */
+    public String verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // MessageDigest.isEqual takes the same time however many bytes match.
+        boolean valid = MessageDigest.isEqual(mac.get().doFinal(payload), signature)
+                || (previousKey != null && MessageDigest.isEqual(newMac(previousKey).doFinal(payload), signature));
+        return valid ? new String(payload, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of the aggregates of one SQL shape, as listed by {@link SqlStatisticsMXBean#getStatements()}.
+ */
+public class SqlStatementStats {
+
+    private final String sql;
+    private final long executions;
+    private final double totalMillis;
+    private final double maxMillis;
+    private final long rows;
+    private final long slowExecutions;
+
+    @ConstructorProperties({"sql", "executions", "totalMillis", "maxMillis", "rows", "slowExecutions"})
+    public SqlStatementStats(String sql, long executions, double totalMillis, double maxMillis, long rows,
+            long slowExecutions) {
+        this.sql = sql;
+        this.executions = executions;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.rows = rows;
+        this.slowExecutions = slowExecutions;
+    }
+
+    /**
+     * @return The normalized SQL text: whitespace collapsed, literals and IN lists replaced by placeholders.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getAverageMillis() {
+        return executions == 0 ? 0.0 : totalMillis / executions;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return Rows returned by queries plus rows affected by updates.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public double getAverageRows() {
+        return executions == 0 ? 0.0 : (double) rows / executions;
+    }
+
+    public long getSlowExecutions() {
+        return slowExecutions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d x %.3f ms avg (max %.3f ms, %.1f rows avg, %d slow): %s",
+                executions, getAverageMillis(), maxMillis, getAverageRows(), slowExecutions, sql);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Timings of every prepared statement executed through the connection pool, aggregated per
+ * SQL shape (the SQL with literals and IN lists normalized away), plus the slow query log:
+ * an execution that takes at least DB_SLOW_QUERY_MS is logged with its SQL, bound parameters,
+ * rows and the time its caller waited for the connection. Parameters bound to password
+ * columns are never logged.
+ * The statements are timed by {@link TimedStatement}; the time of an execution includes
+ * fetching its rows, but not the caller's work between fetches.
+ */
+public class SqlStatistics implements SqlStatisticsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(SqlStatistics.class.getName());
+
+    // A DAO building SQL with unexpected variety must not grow these maps without bound.
+    private static final int MAX_SHAPES = 500;
+    private static final int MAX_CACHED_SQL = 2000;
+    private static final String OTHER = "other";
+
+    // Parameter values longer than this are cut in the log.
+    private static final int MAX_LOGGED_VALUE = 100;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern VALUES_LIST = Pattern.compile("(\\(\\?(?:, \\?)*\\))(?:\\s*,\\s*\\(\\?(?:, \\?)*\\))+");
+    private static final Pattern INSERT_COLUMNS = Pattern.compile(
+            "(?i)^\\s*INSERT\\s+INTO\\s+[\\w`.]+\\s*\\(([^)]*)\\)\\s*VALUES\\s*");
+    private static final Pattern COMPARED_COLUMN = Pattern.compile(
+            "(?i)([\\w`]+)\\s*(?:=|<>|!=|<=|>=|<|>|\\bLIKE)\\s*$");
+    private static final Pattern SENSITIVE_NAME = Pattern.compile("(?i)password|secret|token");
+
+    private final long slowThresholdNanos;
+    private final ConcurrentMap<String, Shape> shapesBySql = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder slowExecutions = new LongAdder();
+
+    /**
+     * @param slowThresholdMillis Executions at least this long are logged; 0 disables the slow query log.
+     */
+    public SqlStatistics(long slowThresholdMillis) {
+        this.slowThresholdNanos = slowThresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis) : 0;
+    }
+
+    /**
+     * Looks up the shape of a statement, normalizing the SQL on first use.
+     *
+     * @param sql The SQL as passed to prepareStatement.
+     * @return The shape whose aggregates executions of this SQL are added to.
+     */
+    Shape shapeOf(String sql) {
+        Shape shape = shapesBySql.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        String text = normalize(sql);
+        shape = shapes.get(text);
+        if (shape == null) {
+            if (shapes.size() >= MAX_SHAPES) {
+                text = OTHER;
+            }
+            shape = shapes.computeIfAbsent(text, Shape::new);
+        }
+        if (shapesBySql.size() < MAX_CACHED_SQL) {
+            shapesBySql.putIfAbsent(sql, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Adds one execution to its shape and logs it when it was slow.
+     *
+     * @param execution The finished execution.
+     */
+    void record(TimedStatement.Execution execution) {
+        Shape shape = execution.shape;
+        long nanos = execution.nanos;
+        executions.increment();
+        shape.executions.increment();
+        shape.totalNanos.add(nanos);
+        shape.rows.add(Math.max(0, execution.rows));
+        long max;
+        while (nanos > (max = shape.maxNanos.get())) {
+            if (shape.maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+        if (shape.latency != null) {
+            shape.latency.record(nanos);
+        }
+        if (slowThresholdNanos > 0 && nanos >= slowThresholdNanos) {
+            slowExecutions.increment();
+            shape.slowExecutions.increment();
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Slow SQL: {0} ms, {1} rows, {2} ms waiting for the connection, in {3}: {4} parameters {5}",
+                        new Object[]{millis(nanos), execution.rows < 0 ? "?" : execution.rows,
+                            millis(execution.connectionWaitNanos),
+                            execution.caller != null ? execution.caller : ConnectionPool.callerName(), execution.sql,
+                            formatParameters(execution.parameters, sensitiveParameters(execution.sql))});
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    @Override
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    @Override
+    public long getSlowExecutions() {
+        return slowExecutions.sum();
+    }
+
+    @Override
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    @Override
+    public int getStatementShapes() {
+        return shapes.size();
+    }
+
+    @Override
+    public List<SqlStatementStats> getStatements() {
+        List<SqlStatementStats> statements = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes.values()) {
+            long count = shape.executions.sum();
+            if (count > 0) {
+                statements.add(new SqlStatementStats(shape.text, count, shape.totalNanos.sum() / 1_000_000.0,
+                        shape.maxNanos.get() / 1_000_000.0, shape.rows.sum(), shape.slowExecutions.sum()));
+            }
+        }
+        statements.sort(Comparator.comparingDouble(SqlStatementStats::getTotalMillis).reversed());
+        return statements;
+    }
+
+    @Override
+    public void reset() {
+        for (Shape shape : shapes.values()) {
+            shape.executions.reset();
+            shape.totalNanos.reset();
+            shape.rows.reset();
+            shape.slowExecutions.reset();
+            shape.maxNanos.set(0);
+        }
+        LOGGER.log(Level.INFO, "SQL statistics reset.");
+    }
+
+    /**
+     * Reduces SQL to its shape: whitespace collapsed, string and number literals replaced by ?,
+     * and lists of placeholders (IN lists, multi-row VALUES) shortened, so statements that only
+     * differ in the number of bound values are aggregated together.
+     *
+     * @param sql The SQL text.
+     * @return The normalized SQL.
+     */
+    static String normalize(String sql) {
+        String text = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        text = STRING_LITERAL.matcher(text).replaceAll("?");
+        text = NUMBER_LITERAL.matcher(text).replaceAll("?");
+        text = PLACEHOLDER_LIST.matcher(text).replaceAll("?, ...");
+        return VALUES_LIST.matcher(text).replaceAll("$1, ...");
+    }
+
+    /**
+     * Finds the parameters bound to sensitive columns: those compared with a password column
+     * ("password = ?") and those inserted into one. A placeholder whose column cannot be told is
+     * treated as sensitive when the statement mentions a password at all.
+     *
+     * @param sql The SQL text.
+     * @return The 1-based indexes of the parameters that must not be logged.
+     */
+    static BitSet sensitiveParameters(String sql) {
+        BitSet sensitive = new BitSet();
+        if (!SENSITIVE_NAME.matcher(sql).find()) {
+            return sensitive;
+        }
+        String[] insertColumns = null;
+        int valuesStart = -1;
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        if (insert.find()) {
+            insertColumns = insert.group(1).split(",");
+            valuesStart = insert.end();
+        }
+        int index = 0;
+        boolean inLiteral = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            }
+            if (inLiteral || c != '?') {
+                continue;
+            }
+            index++;
+            String column = null;
+            if (insertColumns != null && i >= valuesStart) {
+                column = insertColumns[(index - 1) % insertColumns.length];
+            } else {
+                Matcher compared = COMPARED_COLUMN.matcher(sql.substring(0, i));
+                if (compared.find()) {
+                    column = compared.group(1);
+                }
+            }
+            if (column == null || SENSITIVE_NAME.matcher(column).find()) {
+                sensitive.set(index);
+            }
+        }
+        return sensitive;
+    }
+
+    private static String formatParameters(List<Object> parameters, BitSet sensitive) {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            Object value = parameters.get(i);
+            if (sensitive.get(i + 1)) {
+                text.append("<redacted>");
+            } else if (value == null || value == TimedStatement.NULL) {
+                text.append("NULL");
+            } else if (value instanceof CharSequence) {
+                String string = value.toString();
+                text.append('\'').append(string.length() > MAX_LOGGED_VALUE
+                        ? string.substring(0, MAX_LOGGED_VALUE) + "..." : string).append('\'');
+            } else if (value instanceof byte[]) {
+                text.append('<').append(((byte[]) value).length).append(" bytes>");
+            } else if (value instanceof Number || value instanceof Boolean || value instanceof java.util.Date) {
+                text.append(value);
+            } else {
+                text.append('<').append(value.getClass().getSimpleName()).append('>');
+            }
+        }
+        return text.append(']').toString();
+    }
+
+    /**
+     * The aggregates of one SQL shape.
+     */
+    static final class Shape {
+        final String text;
+        // The shape's series in Metrics, looked up once.
+        private final LatencyHistogram latency;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder slowExecutions = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Shape(String text) {
+            this.text = text;
+            this.latency = Metrics.ENABLED ? Metrics.SQL_SECONDS.labels(text) : null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.util.List;
+
+/**
+ * Per-statement SQL timings, published over JMX as "com.mystrive:type=SqlStatistics".
+ */
+public interface SqlStatisticsMXBean {
+
+    long getExecutions();
+
+    long getSlowExecutions();
+
+    long getSlowThresholdMillis();
+
+    int getStatementShapes();
+
+    /**
+     * @return One entry per SQL shape, the most expensive in total first.
+     */
+    List<SqlStatementStats> getStatements();
+
+    /**
+     * Clears the per-statement aggregates, e.g. before measuring a release against a fresh baseline.
+     */
+    void reset();
+}
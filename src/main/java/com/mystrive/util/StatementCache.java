@@ -0,0 +1,243 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache of prepared statements belonging to one pooled connection, keyed by SQL text.
+ * The DAOs keep calling prepareStatement()/close() as before; close() on a cached statement
+ * only clears its parameters and any unexecuted batch, and puts back the fetch size, max rows and query timeout if the
+ * borrower changed them, so the next borrower of the connection can reuse it as if freshly prepared.
+ * A cache is only ever used by the thread currently holding its connection, so it is not synchronized.
+ */
+class StatementCache {
+
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Counters counters;
+    private final Map<String, CachedStatement> statements;
+    private final List<CachedStatement> checkedOut = new ArrayList<>();
+
+    StatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                counters.evictions.increment();
+                CachedStatement evicted = eldest.getValue();
+                evicted.evicted = true;
+                if (!evicted.inUse) {
+                    closeQuietly(evicted.physical);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a statement for the given SQL, reusing a cached one when it is not already in use.
+     *
+     * @param sql The SQL text.
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or NO_GENERATED_KEYS; null for the plain overload.
+     * @param owner The connection proxy reported by getConnection().
+     * @return A logical statement whose close() returns it to the cache.
+     * @throws SQLException If the driver cannot prepare the statement.
+     */
+    PreparedStatement prepare(String sql, Integer autoGeneratedKeys, Connection owner) throws SQLException {
+        String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached == null || cached.inUse) {
+            counters.misses.increment();
+            PreparedStatement statement = autoGeneratedKeys == null
+                    ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+            CachedStatement created = new CachedStatement(statement);
+            if (cached == null) {
+                statements.put(key, created);
+            } else {
+                created.evicted = true; // Same SQL prepared twice at once: the second copy is not kept.
+            }
+            cached = created;
+        } else {
+            counters.hits.increment();
+        }
+        cached.inUse = true;
+        checkedOut.add(cached);
+        return cached.newLogical(owner);
+    }
+
+    /**
+     * Invalidates statements the borrower forgot to close. Called when the connection returns to the pool.
+     */
+    void releaseAll() {
+        if (checkedOut.isEmpty()) {
+            return;
+        }
+        for (CachedStatement cached : new ArrayList<>(checkedOut)) {
+            cached.checkIn();
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    void closeAll() {
+        for (Iterator<CachedStatement> it = statements.values().iterator(); it.hasNext();) {
+            closeQuietly(it.next().physical);
+            it.remove();
+        }
+        checkedOut.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing cached statement: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Hit/miss counters shared by all caches of one pool.
+     */
+    static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+    }
+
+    private final class CachedStatement {
+        private final PreparedStatement physical;
+        private boolean inUse;
+        private boolean evicted;
+        private Logical current;
+        // The driver's settings as prepared, read the first time a borrower changes one of them.
+        private int[] defaults;
+        private boolean tuned;
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        // Called before a borrower changes a setting that would outlive its use of the statement.
+        private void beforeTuning() throws SQLException {
+            if (defaults == null) {
+                defaults = new int[]{physical.getFetchSize(), physical.getMaxRows(), physical.getQueryTimeout()};
+            }
+            tuned = true;
+        }
+
+        private PreparedStatement newLogical(Connection owner) {
+            current = new Logical(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, current);
+        }
+
+        private void checkIn() {
+            if (current != null) {
+                current.closed = true;
+                current = null;
+            }
+            inUse = false;
+            checkedOut.remove(this);
+            if (evicted) {
+                closeQuietly(physical);
+                return;
+            }
+            try {
+                physical.clearParameters();
+                // A batch the borrower never executed must not be sent by the next one, maybe for another user.
+                physical.clearBatch();
+                physical.clearWarnings();
+                if (tuned) {
+                    // e.g. a streaming fetch size must not turn the next plain query into a streamed one.
+                    physical.setMaxRows(defaults[1]); // First: some drivers refuse a fetch size above max rows
+                    physical.setFetchSize(defaults[0]);
+                    physical.setQueryTimeout(defaults[2]);
+                    tuned = false;
+                }
+            } catch (SQLException e) {
+                // A statement that cannot be reset is dropped rather than reused.
+                statements.values().remove(this);
+                closeQuietly(physical);
+            }
+        }
+    }
+
+    /**
+     * The DAO's view of a cached statement.
+     */
+    private static final class Logical implements InvocationHandler {
+        // Setters whose values the statement keeps across executions, reset on check-in.
+        private static final Set<String> TUNING_METHODS = Set.of(
+                "setFetchSize", "setMaxRows", "setLargeMaxRows", "setQueryTimeout");
+
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean closed;
+
+        private Logical(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        cached.checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed.");
+            }
+            if (TUNING_METHODS.contains(method.getName())) {
+                cached.beforeTuning();
+            }
+            try {
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
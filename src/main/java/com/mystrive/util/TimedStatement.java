@@ -0,0 +1,258 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.mystrive.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wraps a prepared statement handed out by the pool and reports each execution to {@link SqlStatistics}.
+ * A query is reported when its result set (or the statement) is closed, with the time spent in
+ * executeQuery and in ResultSet.next, and the number of rows fetched; updates and batches are
+ * reported when they return. Bound parameters are remembered for the slow query log only while
+ * that log is enabled.
+ */
+final class TimedStatement implements InvocationHandler {
+
+    /**
+     * Stands for a parameter bound with setNull.
+     */
+    static final Object NULL = new Object();
+
+    private final PreparedStatement delegate;
+    private final String sql;
+    private final SqlStatistics.Shape shape;
+    private final SqlStatistics statistics;
+    private final long connectionWaitNanos;
+    private final String caller;
+    private final List<Object> parameters;
+    private PreparedStatement self;
+    // The query whose rows are still being fetched.
+    private Execution pending;
+
+    private TimedStatement(PreparedStatement delegate, String sql, SqlStatistics statistics,
+            long connectionWaitNanos, String caller) {
+        this.delegate = delegate;
+        this.sql = sql;
+        this.shape = statistics.shapeOf(sql);
+        this.statistics = statistics;
+        this.connectionWaitNanos = connectionWaitNanos;
+        this.caller = caller;
+        this.parameters = statistics.getSlowThresholdMillis() > 0 ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Wraps a statement.
+     *
+     * @param statement The statement from the driver or the statement cache.
+     * @param sql The SQL it was prepared with.
+     * @param statistics Where executions are reported.
+     * @param connectionWaitNanos How long the borrower waited for the connection, for the slow query log.
+     * @param caller The borrowing method if the pool already knows it, otherwise null.
+     * @return The timed statement.
+     */
+    static PreparedStatement wrap(PreparedStatement statement, String sql, SqlStatistics statistics,
+            long connectionWaitNanos, String caller) {
+        TimedStatement handler = new TimedStatement(statement, sql, statistics, connectionWaitNanos, caller);
+        handler.self = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, handler);
+        return handler.self;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        int argCount = args == null ? 0 : args.length;
+        if (argCount == 0) {
+            switch (name) {
+                case "executeQuery":
+                    return executeQuery();
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                case "execute":
+                    return executeUpdate(method);
+                case "clearParameters":
+                    if (parameters != null) {
+                        parameters.clear();
+                    }
+                    break;
+                case "close":
+                    finishPending();
+                    break;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+        } else if (parameters != null && argCount >= 2 && name.startsWith("set") && args[0] instanceof Integer) {
+            remember((Integer) args[0], "setNull".equals(name) ? NULL : args[1]);
+        } else if ("equals".equals(name)) {
+            return proxy == args[0];
+        }
+        return call(delegate, method, args);
+    }
+
+    private ResultSet executeQuery() throws Throwable {
+        finishPending();
+        Execution execution = newExecution();
+        long start = System.nanoTime();
+        try {
+            ResultSet resultSet = delegate.executeQuery();
+            execution.nanos = System.nanoTime() - start;
+            execution.rows = 0;
+            pending = execution;
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new Rows(resultSet, execution));
+        } catch (Throwable e) {
+            execution.nanos = System.nanoTime() - start;
+            finish(execution);
+            throw e;
+        }
+    }
+
+    private Object executeUpdate(Method method) throws Throwable {
+        finishPending();
+        Execution execution = newExecution();
+        long start = System.nanoTime();
+        try {
+            Object result = call(delegate, method, null);
+            execution.rows = affectedRows(result);
+            return result;
+        } finally {
+            execution.nanos = System.nanoTime() - start;
+            finish(execution);
+        }
+    }
+
+    // Update counts; -1 when unknown, i.e. for execute() returning a result set or a failed statement.
+    private long affectedRows(Object result) throws Throwable {
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof Boolean) {
+            return (Boolean) result ? -1 : delegate.getUpdateCount();
+        }
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+        }
+        return rows;
+    }
+
+    private void remember(int index, Object value) {
+        while (parameters.size() < index) {
+            parameters.add(null);
+        }
+        parameters.set(index - 1, value);
+    }
+
+    private Execution newExecution() {
+        Execution execution = new Execution(shape, sql, connectionWaitNanos, caller);
+        if (parameters != null) {
+            // Not copied: the values are only read when the execution is reported, before they can be rebound.
+            execution.parameters = parameters;
+        }
+        return execution;
+    }
+
+    private void finishPending() {
+        if (pending != null) {
+            finish(pending);
+        }
+    }
+
+    private void finish(Execution execution) {
+        if (pending == execution) {
+            pending = null;
+        }
+        if (!execution.finished) {
+            execution.finished = true;
+            statistics.record(execution);
+        }
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * One execution of the statement, reported once it is finished.
+     */
+    static final class Execution {
+        final SqlStatistics.Shape shape;
+        final String sql;
+        final long connectionWaitNanos;
+        final String caller;
+        List<Object> parameters = Collections.emptyList();
+        long nanos;
+        long rows = -1;
+        private boolean finished;
+
+        private Execution(SqlStatistics.Shape shape, String sql, long connectionWaitNanos, String caller) {
+            this.shape = shape;
+            this.sql = sql;
+            this.connectionWaitNanos = connectionWaitNanos;
+            this.caller = caller;
+        }
+    }
+
+    /**
+     * The caller's view of a query's result set: counts rows and adds the time spent fetching them.
+     */
+    private final class Rows implements InvocationHandler {
+        private final ResultSet delegate;
+        private final Execution execution;
+
+        private Rows(ResultSet delegate, Execution execution) {
+            this.delegate = delegate;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long start = System.nanoTime();
+                    boolean more = delegate.next();
+                    execution.nanos += System.nanoTime() - start;
+                    if (more) {
+                        execution.rows++;
+                    }
+                    return more;
+                case "close":
+                    finish(execution);
+                    break;
+                case "getStatement":
+                    return self;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return call(delegate, method, args);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+-- Composite indexes matching the WHERE / ORDER BY of the hot DAO queries,
+-- so MySQL can read rows in index order instead of filesorting them.
+
+-- GoalDAO: WHERE user_id = ? ORDER BY target_date ASC, goal_id DESC (dashboard list and keyset pages).
+-- DESC key parts need MySQL 8.0+ / MariaDB 10.8+; older servers build an ascending index and scan it backwards per date.
+CREATE INDEX idx_goals_user_target ON goals (user_id, target_date, goal_id DESC);
+
+-- GoalDAO: WHERE user_id = ? AND category_id = ? ORDER BY target_date ASC, goal_id DESC (category filter).
+CREATE INDEX idx_goals_user_category_target ON goals (user_id, category_id, target_date, goal_id DESC);
+
+-- MilestoneDAO / GoalDAO.getGoalWithMilestones: WHERE goal_id = ? ORDER BY due_date ASC, milestone_id ASC.
+CREATE INDEX idx_milestones_goal_due ON milestones (goal_id, due_date, milestone_id);
+
+-- CategoryDAO: WHERE user_id = ? ORDER BY category_name ASC.
+CREATE INDEX idx_categories_user_name ON categories (user_id, category_name);
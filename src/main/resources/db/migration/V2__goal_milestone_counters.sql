@@ -0,0 +1,13 @@
+-- Denormalized milestone counters on goals, so the dashboard can show each goal's progress
+-- without counting milestones per row. MilestoneDAO keeps them up to date in the same
+-- transaction as the milestone change; MilestoneCounterRepair recomputes them in bulk.
+
+ALTER TABLE goals ADD COLUMN milestone_total INT NOT NULL DEFAULT 0;
+
+ALTER TABLE goals ADD COLUMN milestone_done INT NOT NULL DEFAULT 0;
+
+-- Backfill. updated_at is set to itself so the ON UPDATE clause does not touch every goal.
+UPDATE goals SET
+    milestone_total = (SELECT COUNT(*) FROM milestones m WHERE m.goal_id = goals.goal_id),
+    milestone_done = (SELECT COUNT(*) FROM milestones m WHERE m.goal_id = goals.goal_id AND m.status = 'Completed'),
+    updated_at = updated_at;
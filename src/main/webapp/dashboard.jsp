@@ -1,4 +1,4 @@
-<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
 <%--
@@ -43,17 +43,24 @@
 
             <li style="border-top: 1px solid #ddd; margin-top: 10px; padding-top: 5px;"></li>
             <li><a href="${pageContext.request.contextPath}/categories"><i class="fas fa-tags"></i> Manage Categories</a></li>
+            <li><a href="${pageContext.request.contextPath}/export?format=csv"><i class="fas fa-file-export"></i> Export (CSV)</a></li>
+            <li>
+                <form action="${pageContext.request.contextPath}/import" method="post" enctype="multipart/form-data" style="padding: 10px 15px;">
+                    <label for="importFile"><i class="fas fa-file-import"></i> Import (CSV)</label>
+                    <input type="file" id="importFile" name="file" accept=".csv,text/csv" required style="margin: 5px 0; max-width: 100%;">
+                    <button type="submit" class="btn btn-secondary btn-sm">Import</button>
+                </form>
+            </li>
         </ul>
     </div>
 
     <div class="content-area">
         <h2 style="color: var(--secondary-color); margin-bottom: 25px;">My Goals</h2>
 
-        <c:if test="${not empty sessionScope.successMessage}">
+        <c:if test="${not empty requestScope.successMessage}">
             <div class="message success-message">
-                <p><c:out value="${sessionScope.successMessage}"/></p>
+                <p><c:out value="${requestScope.successMessage}"/></p>
             </div>
-            <c:remove var="successMessage" scope="session"/>
         </c:if>
 
         <c:if test="${not empty requestScope.errorMessage}">
@@ -62,6 +69,34 @@
             </div>
         </c:if>
 
+        <%-- Summary over all of the user's goals, whatever category or page is shown below. --%>
+        <c:if test="${not empty requestScope.summary and requestScope.summary.totalGoals > 0}">
+            <div class="summary-panel">
+                <div class="summary-item">
+                    <span class="summary-value"><c:out value="${summary.totalGoals}"/></span>
+                    <span class="summary-label">Goals</span>
+                </div>
+                <c:forEach var="statusCount" items="${summary.statusCounts}">
+                    <div class="summary-item">
+                        <span class="summary-value"><c:out value="${statusCount.value}"/></span>
+                        <span class="summary-label"><c:out value="${statusCount.key}"/></span>
+                    </div>
+                </c:forEach>
+                <div class="summary-item <c:if test="${summary.overdueGoals > 0}">summary-alert</c:if>">
+                    <span class="summary-value"><c:out value="${summary.overdueGoals}"/></span>
+                    <span class="summary-label">Overdue</span>
+                </div>
+                <div class="summary-item">
+                    <span class="summary-value"><c:out value="${summary.dueSoonGoals}"/></span>
+                    <span class="summary-label">Due in 7 Days</span>
+                </div>
+                <div class="summary-item">
+                    <span class="summary-value"><c:out value="${summary.milestoneCompletionPercent}"/>%</span>
+                    <span class="summary-label">Milestones Done (<c:out value="${summary.milestoneCompleted}"/>/<c:out value="${summary.milestoneTotal}"/>)</span>
+                </div>
+            </div>
+        </c:if>
+
         <div style="margin-bottom: 20px; text-align: right;">
             <a href="${pageContext.request.contextPath}/goals?action=add" class="btn btn-primary">
                 <i class="fas fa-plus"></i> Add New Goal
@@ -77,6 +112,7 @@
                             <th>Category</th>
                             <th>Target Date</th>
                             <th>Status</th>
+                            <th>Progress</th>
                             <th>Actions</th>
                         </tr>
                     </thead>
@@ -91,6 +127,18 @@
                                 <td data-label="Category"><c:out value="${goal.categoryName != null ? goal.categoryName : 'N/A'}"/></td>
                                 <td data-label="Target Date"><fmt:formatDate value="${goal.targetDate}" pattern="yyyy-MM-dd"/></td>
                                 <td data-label="Status"><c:out value="${goal.status}"/></td>
+                                <td data-label="Progress">
+                                    <%-- Read from the goal's milestone counters; no per-row query. --%>
+                                    <c:choose>
+                                        <c:when test="${goal.milestoneTotal > 0}">
+                                            <div class="progress-bar" title="${goal.milestoneDone} of ${goal.milestoneTotal} milestones completed">
+                                                <div class="progress-fill" style="width: ${goal.progressPercent}%;"></div>
+                                            </div>
+                                            <span class="progress-label"><c:out value="${goal.progressPercent}"/>%</span>
+                                        </c:when>
+                                        <c:otherwise>&ndash;</c:otherwise>
+                                    </c:choose>
+                                </td>
                                 <td data-label="Actions" class="actions">
                                     <a href="${pageContext.request.contextPath}/goals?action=edit&goalId=<c:out value="${goal.goalId}"/>" class="btn btn-secondary btn-sm">
                                         <i class="fas fa-edit"></i> Edit
@@ -103,6 +151,35 @@
                         </c:forEach>
                     </tbody>
                 </table>
+
+                <%-- Keyset pagination: "Next" carries the cursor of the last goal on this page. --%>
+                <c:if test="${not empty requestScope.nextCursor or not requestScope.firstPage}">
+                    <div class="pagination" style="margin-top: 20px; display: flex; justify-content: space-between;">
+                        <c:url var="firstPageUrl" value="/goals">
+                            <c:param name="action" value="list"/>
+                            <c:if test="${requestScope.selectedCategoryId > 0}">
+                                <c:param name="categoryId" value="${requestScope.selectedCategoryId}"/>
+                            </c:if>
+                        </c:url>
+                        <span>
+                            <c:if test="${not requestScope.firstPage}">
+                                <a href="${firstPageUrl}" class="btn btn-secondary btn-sm"><i class="fas fa-angle-double-left"></i> First Page</a>
+                            </c:if>
+                        </span>
+                        <span>
+                            <c:if test="${not empty requestScope.nextCursor}">
+                                <c:url var="nextPageUrl" value="/goals">
+                                    <c:param name="action" value="list"/>
+                                    <c:if test="${requestScope.selectedCategoryId > 0}">
+                                        <c:param name="categoryId" value="${requestScope.selectedCategoryId}"/>
+                                    </c:if>
+                                    <c:param name="cursor" value="${requestScope.nextCursor}"/>
+                                </c:url>
+                                <a href="${nextPageUrl}" class="btn btn-secondary btn-sm">Next Page <i class="fas fa-angle-right"></i></a>
+                            </c:if>
+                        </span>
+                    </div>
+                </c:if>
             </c:when>
             <c:otherwise>
                 <div class="message">
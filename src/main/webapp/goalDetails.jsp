@@ -1,4 +1,4 @@
-<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
 
@@ -7,11 +7,10 @@
 
 <div class="container">
     <%-- Display server-side success message if present --%>
-    <c:if test="${not empty sessionScope.successMessage}">
+    <c:if test="${not empty requestScope.successMessage}">
         <div class="message success-message">
-            <p><c:out value="${sessionScope.successMessage}"/></p>
+            <p><c:out value="${requestScope.successMessage}"/></p>
         </div>
-        <c:remove var="successMessage" scope="session"/>
     </c:if>
 
     <%-- Display server-side error message if present --%>
@@ -28,6 +27,10 @@
             <p><strong>Category:</strong> <c:out value="${requestScope.goal.categoryName != null ? requestScope.goal.categoryName : 'N/A'}"/></p>
             <p><strong>Target Date:</strong> <fmt:formatDate value="${requestScope.goal.targetDate}" pattern="yyyy-MM-dd"/></p>
             <p><strong>Status:</strong> <c:out value="${requestScope.goal.status}"/></p>
+            <p><strong>Progress:</strong> <c:out value="${requestScope.goal.milestoneDone}"/> of <c:out value="${requestScope.goal.milestoneTotal}"/> milestones completed</p>
+            <div class="progress-bar" title="${requestScope.goal.progressPercent}%">
+                <div class="progress-fill" style="width: ${requestScope.goal.progressPercent}%;"></div>
+            </div>
             <p><strong>Created On:</strong> <fmt:formatDate value="${requestScope.goal.createdAt}" pattern="yyyy-MM-dd HH:mm"/></p>
             <p><strong>Last Updated:</strong> <fmt:formatDate value="${requestScope.goal.updatedAt}" pattern="yyyy-MM-dd HH:mm"/></p>
 
@@ -92,6 +95,70 @@
                 </form>
             </div>
 
+            <%-- Form for adding several milestones at once (hidden while editing a milestone) --%>
+            <c:if test="${requestScope.milestone == null || requestScope.milestone.milestoneId == 0}">
+                <div class="form-card" style="margin-top: 20px; margin-bottom: 30px;">
+                    <h4 style="color: var(--secondary-color); margin-bottom: 20px;">Add Several Milestones</h4>
+                    <form action="${pageContext.request.contextPath}/milestones" method="post" id="bulkMilestoneForm">
+                        <input type="hidden" name="goalId" value="${requestScope.goal.goalId}">
+                        <input type="hidden" name="action" value="bulkAdd">
+
+                        <table class="data-table">
+                            <thead>
+                                <tr>
+                                    <th>Description</th>
+                                    <th>Due Date</th>
+                                    <th>Status</th>
+                                </tr>
+                            </thead>
+                            <tbody id="bulkMilestoneRows">
+                                <c:choose>
+                                    <c:when test="${not empty requestScope.bulkMilestones}">
+                                        <c:forEach var="row" items="${requestScope.bulkMilestones}">
+                                            <tr>
+                                                <td><input type="text" name="milestoneDescription" value="<c:out value="${row.milestoneDescription}"/>"></td>
+                                                <td><input type="date" name="dueDate" value="<fmt:formatDate value="${row.dueDate}" pattern="yyyy-MM-dd"/>"></td>
+                                                <td>
+                                                    <select name="status">
+                                                        <option value="Not Started" <c:if test="${row.status eq 'Not Started'}">selected</c:if>>Not Started</option>
+                                                        <option value="In Progress" <c:if test="${row.status eq 'In Progress'}">selected</c:if>>In Progress</option>
+                                                        <option value="Completed" <c:if test="${row.status eq 'Completed'}">selected</c:if>>Completed</option>
+                                                        <option value="On Hold" <c:if test="${row.status eq 'On Hold'}">selected</c:if>>On Hold</option>
+                                                        <option value="Cancelled" <c:if test="${row.status eq 'Cancelled'}">selected</c:if>>Cancelled</option>
+                                                    </select>
+                                                </td>
+                                            </tr>
+                                        </c:forEach>
+                                    </c:when>
+                                    <c:otherwise>
+                                        <c:forEach begin="1" end="3">
+                                            <tr>
+                                                <td><input type="text" name="milestoneDescription"></td>
+                                                <td><input type="date" name="dueDate"></td>
+                                                <td>
+                                                    <select name="status">
+                                                        <option value="Not Started">Not Started</option>
+                                                        <option value="In Progress">In Progress</option>
+                                                        <option value="Completed">Completed</option>
+                                                        <option value="On Hold">On Hold</option>
+                                                        <option value="Cancelled">Cancelled</option>
+                                                    </select>
+                                                </td>
+                                            </tr>
+                                        </c:forEach>
+                                    </c:otherwise>
+                                </c:choose>
+                            </tbody>
+                        </table>
+
+                        <div class="form-actions">
+                            <button type="button" class="btn btn-secondary" id="addMilestoneRow"><i class="fas fa-plus"></i> Add Row</button>
+                            <button type="submit" class="btn btn-primary">Save Milestones</button>
+                        </div>
+                    </form>
+                </div>
+            </c:if>
+
             <%-- List of Milestones --%>
             <c:choose>
                 <c:when test="${not empty requestScope.milestones}">
@@ -155,6 +222,18 @@
                 }
             });
         }
+
+        // Rows left empty are ignored by the server, so adding a row just copies a blank one
+        const addRowButton = document.getElementById('addMilestoneRow');
+        if (addRowButton) {
+            addRowButton.addEventListener('click', function() {
+                const rows = document.getElementById('bulkMilestoneRows');
+                const row = rows.rows[rows.rows.length - 1].cloneNode(true);
+                row.querySelectorAll('input').forEach(function(input) { input.value = ''; });
+                row.querySelector('select').selectedIndex = 0;
+                rows.appendChild(row);
+            });
+        }
     });
 </script>
 
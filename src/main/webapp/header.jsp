@@ -1,4 +1,4 @@
-<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" session="false"%>
 <%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
 
 <!DOCTYPE html>
@@ -19,13 +19,13 @@
                     <li><a href="${pageContext.request.contextPath}/goals"><i class="fas fa-bullseye"></i> Goals</a></li>
                     <li><a href="${pageContext.request.contextPath}/categories"><i class="fas fa-tags"></i> Categories</a></li>
                 </ul>
-                <c:if test="${sessionScope.currentUser != null}">
+                <c:if test="${requestScope.currentUser != null}">
                     <div class="user-info">
-                        <i class="fas fa-user-circle"></i> Hello, <c:out value="${sessionScope.currentUser.username}"/>
+                        <i class="fas fa-user-circle"></i> Hello, <c:out value="${requestScope.currentUser.username}"/>
                         <a href="${pageContext.request.contextPath}/logout"><i class="fas fa-sign-out-alt"></i> Logout</a>
                     </div>
                 </c:if>
-                <c:if test="${sessionScope.currentUser == null}">
+                <c:if test="${requestScope.currentUser == null}">
                     <div class="user-info">
                         <a href="${pageContext.request.contextPath}/login.jsp"><i class="fas fa-sign-in-alt"></i> Login</a>
                         <a href="${pageContext.request.contextPath}/register.jsp"><i class="fas fa-user-plus"></i> Register</a>